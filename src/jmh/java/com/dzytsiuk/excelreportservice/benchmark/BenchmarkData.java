@@ -0,0 +1,92 @@
+package com.dzytsiuk.excelreportservice.benchmark;
+
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.entity.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BenchmarkData {
+    private static final String[] GENRES = {"drama", "comedy", "sci-fi, action", "thriller", "drama, crime"};
+    private static final LocalDateTime START = LocalDateTime.of(2018, 1, 1, 0, 0);
+
+    private BenchmarkData() {
+    }
+
+    public static ReportMovie movie(int id) {
+        ReportMovie movie = new ReportMovie();
+        movie.setId(id);
+        movie.setNameNative("Movie " + id);
+        movie.setNameRussian("Film " + id);
+        movie.setDescription("Description of movie " + id + " long enough to look like a real synopsis");
+        movie.setGenres(GENRES[id % GENRES.length]);
+        movie.setPrice(id % 7 == 0 ? null : 100.0 + id % 50);
+        movie.setRating(id % 11 == 0 ? Double.NaN : 5.0 + id % 5);
+        movie.setAddDate(START.plusMinutes(id));
+        movie.setLastModifiedDate(START.plusMinutes(id).plusSeconds(30));
+        movie.setReviewCount(id % 100);
+        return movie;
+    }
+
+    public static List<ReportMovie> movies(int from, int to) {
+        List<ReportMovie> movies = new ArrayList<>(to - from);
+        for (int id = from; id < to; id++) {
+            movies.add(movie(id));
+        }
+        return movies;
+    }
+
+    public static User user(int id) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail("user" + id + "@movieland.com");
+        user.setReviewCount(id % 300);
+        user.setAverageRating(1.0 + id % 9 / 2.0);
+        return user;
+    }
+
+    public static String[] dateStrings(int count) {
+        String[] dates = new String[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = START.plusSeconds(i * 7919L).toString();
+        }
+        return dates;
+    }
+
+    // dates as Movieland sends them, ISO local date time strings
+    public static byte[] moviePageJson(ObjectMapper objectMapper, int rows) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            for (ReportMovie movie : movies(0, rows)) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", movie.getId());
+                generator.writeStringField("nameNative", movie.getNameNative());
+                generator.writeStringField("nameRussian", movie.getNameRussian());
+                generator.writeStringField("description", movie.getDescription());
+                writeDouble(generator, "rating", movie.getRating());
+                writeDouble(generator, "price", movie.getPrice());
+                generator.writeStringField("addDate", movie.getAddDate().toString());
+                generator.writeStringField("lastModifiedDate", movie.getLastModifiedDate().toString());
+                generator.writeNumberField("reviewCount", movie.getReviewCount());
+                generator.writeStringField("genres", movie.getGenres());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void writeDouble(JsonGenerator generator, String field, Double value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(field);
+        } else {
+            generator.writeNumberField(field, value);
+        }
+    }
+}
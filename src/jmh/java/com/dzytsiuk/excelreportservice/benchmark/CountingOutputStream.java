@@ -0,0 +1,22 @@
+package com.dzytsiuk.excelreportservice.benchmark;
+
+import java.io.OutputStream;
+
+// Discards everything written to it, keeps the byte count so the JIT cannot drop the writes
+public class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
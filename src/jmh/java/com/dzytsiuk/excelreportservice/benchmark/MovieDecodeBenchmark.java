@@ -0,0 +1,120 @@
+package com.dzytsiuk.excelreportservice.benchmark;
+
+import com.dzytsiuk.excelreportservice.config.LocalDateTimeDeserializer;
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.JsonMovieReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Per page decode time and allocation: Feign's default path (whole body into List<ReportMovie>)
+// against the streaming reader with a reused chunk buffer, plus the date parsing on its own.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieDecodeBenchmark {
+    private static final int DATES = 1000;
+    private static final int CHUNK_SIZE = 256;
+    private static final TypeReference<List<ReportMovie>> MOVIE_LIST = new TypeReference<List<ReportMovie>>() {
+    };
+
+    @Param({"50", "1000", "10000"})
+    public int pageSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LocalDateTimeDeserializer localDateTimeDeserializer = new LocalDateTimeDeserializer();
+    private final MovieColumns buffer = new MovieColumns(CHUNK_SIZE);
+    private byte[] page;
+    private byte[] dates;
+
+    @Setup
+    public void setUp() throws IOException {
+        page = BenchmarkData.moviePageJson(objectMapper, pageSize);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        objectMapper.writeValue(outputStream, BenchmarkData.dateStrings(DATES));
+        dates = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public void feignPage(Blackhole blackhole) throws IOException {
+        List<ReportMovie> movies = objectMapper.readValue(new ByteArrayInputStream(page), MOVIE_LIST);
+        for (ReportMovie movie : movies) {
+            blackhole.consume(movie);
+        }
+    }
+
+    @Benchmark
+    public void streamingPage(Blackhole blackhole) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(new ByteArrayInputStream(page));
+        try (JsonMovieReader movieReader = new JsonMovieReader(parser, parser)) {
+            while (!movieReader.isFinished()) {
+                buffer.clear();
+                movieReader.read(buffer);
+                for (int i = 0; i < buffer.size(); i++) {
+                    blackhole.consume(buffer.getAddDateMillis(i));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATES)
+    public void dateParseFromText(Blackhole blackhole) throws IOException {
+        try (JsonParser parser = dateParser()) {
+            while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                blackhole.consume(LocalDateTime.parse(parser.getText()));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATES)
+    public void dateDeserializer(Blackhole blackhole) throws IOException {
+        try (JsonParser parser = dateParser()) {
+            while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                blackhole.consume(localDateTimeDeserializer.deserialize(parser, null));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATES)
+    public void dateEpochMillis(Blackhole blackhole) throws IOException {
+        try (JsonParser parser = dateParser()) {
+            while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                blackhole.consume(LocalDateTimeDeserializer.parseEpochMillis(parser));
+            }
+        }
+    }
+
+    private JsonParser dateParser() throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(dates);
+        parser.nextToken();
+        return parser;
+    }
+}
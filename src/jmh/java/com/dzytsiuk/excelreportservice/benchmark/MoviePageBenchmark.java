@@ -0,0 +1,82 @@
+package com.dzytsiuk.excelreportservice.benchmark;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Decode and read one Movieland page, as List<ReportMovie> and as MovieColumns.
+// Run with -prof gc: gc.alloc.rate.norm is bytes allocated per row.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoviePageBenchmark {
+    static final int ROWS = 1000;
+    private static final TypeReference<List<ReportMovie>> MOVIE_LIST = new TypeReference<List<ReportMovie>>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] page;
+
+    @Setup
+    public void setUp() throws IOException {
+        page = BenchmarkData.moviePageJson(objectMapper, ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void reportMovies(Blackhole blackhole) throws IOException {
+        List<ReportMovie> movies = objectMapper.readValue(page, MOVIE_LIST);
+        for (ReportMovie movie : movies) {
+            blackhole.consume(movie.getId());
+            blackhole.consume(movie.getNameNative());
+            blackhole.consume(movie.getDescription());
+            blackhole.consume(movie.getGenres());
+            blackhole.consume(nvl(movie.getPrice()));
+            blackhole.consume(movie.getAddDate());
+            blackhole.consume(movie.getLastModifiedDate());
+            blackhole.consume(nvl(movie.getRating()));
+            blackhole.consume(movie.getReviewCount());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void movieColumns(Blackhole blackhole) throws IOException {
+        MovieColumns movies = objectMapper.readValue(page, MovieColumns.class);
+        for (int i = 0; i < movies.size(); i++) {
+            blackhole.consume(movies.getId(i));
+            blackhole.consume(movies.getNameNative(i));
+            blackhole.consume(movies.getDescription(i));
+            blackhole.consume(movies.getGenres(i));
+            blackhole.consume(movies.getPrice(i));
+            blackhole.consume(movies.getAddDateMillis(i));
+            blackhole.consume(movies.getLastModifiedDateMillis(i));
+            blackhole.consume(movies.getRating(i));
+            blackhole.consume(movies.getReviewCount(i));
+        }
+    }
+
+    private static Double nvl(Double value) {
+        return (value == null || value.isNaN()) ? 0.0 : value;
+    }
+}
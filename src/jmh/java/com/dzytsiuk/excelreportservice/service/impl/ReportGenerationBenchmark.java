@@ -0,0 +1,121 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.benchmark.BenchmarkData;
+import com.dzytsiuk.excelreportservice.benchmark.CountingOutputStream;
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.ReportCheckpointStore;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MovieFetchMode;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePageIteratorFactory;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.writer.CsvReportWriterProvider;
+import com.dzytsiuk.excelreportservice.service.impl.writer.GzipCsvReportWriterProvider;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ParquetReportWriterProvider;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportDatePattern;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportWriter;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportWriterProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// generateReport end to end against a MovieService that hands out prepared pages, so only report
+// generation and writing are measured, for every report format on the same data. Single shot: one
+// invocation is a whole report. Run with -prof gc for the allocation per report, the report size of
+// each format is reported as the reportBytes secondary result.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+public class ReportGenerationBenchmark {
+    private static final int FETCH_SIZE = 500;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"XLSX", "CSV", "CSV_GZ", "PARQUET"})
+    public ReportFormat format;
+
+    private DefaultReportGeneratorService reportGeneratorService;
+    private ReportRequest reportRequest;
+
+    @Setup
+    public void setUp() {
+        MovieColumns fullPage = MovieColumns.of(BenchmarkData.movies(0, FETCH_SIZE));
+        MovieColumns lastPage = MovieColumns.of(BenchmarkData.movies(0, rows % FETCH_SIZE));
+        int pages = rows / FETCH_SIZE;
+        MovieService movieService = new MovieService() {
+            @Override
+            public List<ReportMovie> getMovies(Integer page, Integer count, ReportParameter reportParameter) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public MovieColumns getMovieColumns(Integer page, Integer count, ReportParameter reportParameter) {
+                return page <= pages ? fullPage : lastPage;
+            }
+        };
+        MoviePageIteratorFactory moviePageIteratorFactory = new MoviePageIteratorFactory(movieService, null,
+                MovieFetchMode.SERIAL, FETCH_SIZE, 1, 1, 1, FETCH_SIZE);
+        ReportDatePattern datePattern = ReportDatePattern.of("yyyy-MM-dd HH:mm:ss");
+        XlsxReportWriterProvider xlsxReportWriterProvider = new XlsxReportWriterProvider(datePattern);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "streamingEnabled", false);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "streamingRowThreshold", 10000);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "rowAccessWindowSize", 100);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "compressTmpFiles", true);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "rowsPerSheet", XlsxReportWriter.MAX_ROWS_PER_SHEET);
+        reportGeneratorService = new DefaultReportGeneratorService(moviePageIteratorFactory, Collections::emptyList,
+                Arrays.asList(xlsxReportWriterProvider, new CsvReportWriterProvider(datePattern),
+                        new GzipCsvReportWriterProvider(datePattern),
+                        new ParquetReportWriterProvider(CompressionCodecName.SNAPPY, 8 * 1024 * 1024, 1024 * 1024)),
+                new ReportMetrics(new SimpleMeterRegistry()), new ReportCheckpointStore(null, false, "tmp/checkpoints"),
+                Runnable::run);
+        reportRequest = new ReportRequest();
+        reportRequest.setId("benchmark");
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportFormat(format);
+    }
+
+    @Benchmark
+    public long generateReport(ReportSize reportSize) {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        reportGeneratorService.generateReport(reportRequest, outputStream);
+        reportSize.reportBytes = outputStream.getCount();
+        return reportSize.reportBytes;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ReportSize {
+        public long reportBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            reportBytes = 0;
+        }
+    }
+}
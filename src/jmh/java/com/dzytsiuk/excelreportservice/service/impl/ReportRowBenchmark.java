@@ -0,0 +1,126 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.benchmark.BenchmarkData;
+import com.dzytsiuk.excelreportservice.benchmark.CountingOutputStream;
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.User;
+import com.dzytsiuk.excelreportservice.service.impl.writer.CsvReportWriter;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportDatePattern;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportTemplates;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Per row cost of the movie and user row writers on a streaming workbook and of the movie row written as csv,
+// and of date formatting with the configured request.date.format. With -prof gc the csv row and the buffer
+// date formatting allocate close to nothing, xlsx rows still allocate the POI row and cell objects.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportRowBenchmark {
+    private static final int PAGE_SIZE = 1000;
+    private static final int ROW_ACCESS_WINDOW = 100;
+    // a sheet holds 1048576 rows
+    private static final int MAX_ROWS = 1_000_000;
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
+    private static final ReportDatePattern DATE_PATTERN = ReportDatePattern.of(DATE_FORMAT);
+
+    private final DefaultReportGeneratorService reportGeneratorService =
+            new DefaultReportGeneratorService(null, null, Collections.emptyList(), null, null, Runnable::run);
+    private final MovieColumns movies = MovieColumns.of(BenchmarkData.movies(0, PAGE_SIZE));
+    private final User[] users = new User[PAGE_SIZE];
+    private final LocalDateTime[] dates = new LocalDateTime[PAGE_SIZE];
+    private final long[] dateMillis = new long[PAGE_SIZE];
+    private final char[] dateBuffer = DATE_PATTERN.createBuffer();
+    private final CsvReportWriter csvReportWriter = new CsvReportWriter(new CountingOutputStream(), DATE_PATTERN);
+    private XlsxReportWriter reportWriter;
+    private int rowNumber;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            users[i] = BenchmarkData.user(i);
+            dates[i] = movies.getAddDate(i);
+            dateMillis[i] = dates[i].toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpWorkbook() {
+        ReportWorkbook workbook = new ReportWorkbook(true, 0, ROW_ACCESS_WINDOW, true);
+        reportWriter = new XlsxReportWriter(workbook, new CountingOutputStream(), DATE_PATTERN,
+                new XlsxReportTemplates(DATE_PATTERN), XlsxReportWriter.MAX_ROWS_PER_SHEET);
+        reportWriter.startReport("benchmark", Collections.emptyList());
+        rowNumber = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownWorkbook() throws IOException {
+        reportWriter.close();
+    }
+
+    @Benchmark
+    public void fillMovieRow() throws IOException {
+        int row = nextRow();
+        reportGeneratorService.fillMovieRow(movies, row % PAGE_SIZE, reportWriter);
+    }
+
+    @Benchmark
+    public void fillUserRow() throws IOException {
+        int row = nextRow();
+        reportGeneratorService.fillUserRow(users[row % PAGE_SIZE], reportWriter);
+    }
+
+    @Benchmark
+    public void fillMovieCsvRow() throws IOException {
+        reportGeneratorService.fillMovieRow(movies, rowNumber++ % PAGE_SIZE, csvReportWriter);
+    }
+
+    @Benchmark
+    public String formatDate() {
+        return dates[rowNumber++ % PAGE_SIZE].format(DATE_TIME_FORMATTER);
+    }
+
+    @Benchmark
+    public char[] formatDateToBuffer() {
+        DATE_PATTERN.format(dateMillis[rowNumber++ % PAGE_SIZE], dateBuffer);
+        return dateBuffer;
+    }
+
+    private int nextRow() {
+        if (rowNumber == MAX_ROWS) {
+            tearDownQuietly();
+            setUpWorkbook();
+        }
+        return rowNumber++;
+    }
+
+    private void tearDownQuietly() {
+        try {
+            tearDownWorkbook();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
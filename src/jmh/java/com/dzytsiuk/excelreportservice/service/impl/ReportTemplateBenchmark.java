@@ -0,0 +1,73 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.benchmark.BenchmarkData;
+import com.dzytsiuk.excelreportservice.benchmark.CountingOutputStream;
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportDatePattern;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportTemplates;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Per report setup with the template cache of the provider against a template built for every report,
+// and a whole xlsx report at a small and a large size for the per row cost (score / rows).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportTemplateBenchmark {
+    private static final int PAGE_SIZE = 1000;
+    private static final ReportDatePattern DATE_PATTERN = ReportDatePattern.of("yyyy-MM-dd HH:mm:ss");
+
+    @Param({"100", "100000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private final DefaultReportGeneratorService reportGeneratorService =
+            new DefaultReportGeneratorService(null, null, Collections.emptyList(), null, null, Runnable::run);
+    private final MovieColumns movies = MovieColumns.of(BenchmarkData.movies(0, PAGE_SIZE));
+    private final XlsxReportTemplates templates = new XlsxReportTemplates(DATE_PATTERN);
+
+    @Benchmark
+    public int startReport() throws IOException {
+        try (XlsxReportWriter reportWriter = createWriter(new CountingOutputStream())) {
+            reportWriter.startReport("benchmark", DefaultReportGeneratorService.MOVIE_COLUMNS);
+            return reportWriter.getSheetCount();
+        }
+    }
+
+    @Benchmark
+    public long writeReport() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        try (XlsxReportWriter reportWriter = createWriter(outputStream)) {
+            reportWriter.startReport("benchmark", DefaultReportGeneratorService.MOVIE_COLUMNS);
+            for (int i = 0; i < rows; i++) {
+                reportGeneratorService.fillMovieRow(movies, i % PAGE_SIZE, reportWriter);
+            }
+            reportWriter.finish();
+        }
+        return outputStream.getCount();
+    }
+
+    private XlsxReportWriter createWriter(CountingOutputStream outputStream) {
+        ReportWorkbook workbook = new ReportWorkbook(false, 10000, 100, true);
+        return new XlsxReportWriter(workbook, outputStream, DATE_PATTERN,
+                cached ? templates : new XlsxReportTemplates(DATE_PATTERN), XlsxReportWriter.MAX_ROWS_PER_SHEET);
+    }
+}
@@ -0,0 +1,65 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.benchmark.BenchmarkData;
+import com.dzytsiuk.excelreportservice.benchmark.CountingOutputStream;
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportDatePattern;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportTemplates;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Serialization of an already filled in-memory workbook, the step after the last row is written
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportWorkbookBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private ReportWorkbook workbook;
+
+    @Setup
+    public void setUp() throws IOException {
+        DefaultReportGeneratorService reportGeneratorService = new DefaultReportGeneratorService(null, null,
+                Collections.emptyList(), null, null, Runnable::run);
+        MovieColumns movies = MovieColumns.of(BenchmarkData.movies(0, rows));
+        workbook = new ReportWorkbook(false, Integer.MAX_VALUE, 100, true);
+        ReportDatePattern datePattern = ReportDatePattern.of("yyyy-MM-dd HH:mm:ss");
+        XlsxReportWriter reportWriter = new XlsxReportWriter(workbook, new CountingOutputStream(), datePattern,
+                new XlsxReportTemplates(datePattern), XlsxReportWriter.MAX_ROWS_PER_SHEET);
+        reportWriter.startReport("benchmark", Collections.emptyList());
+        for (int i = 0; i < rows; i++) {
+            reportGeneratorService.fillMovieRow(movies, i, reportWriter);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        workbook.close();
+    }
+
+    @Benchmark
+    public long writeWorkbook() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        workbook.write(outputStream);
+        return outputStream.getCount();
+    }
+}
@@ -0,0 +1,156 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientFactory;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientPool;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.TransferRatePermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// A report file uploaded to an embedded ftp server that limits every session to rate bytes per second, the
+// way a long haul link limits a single TCP connection. One connection is the single STOR upload, more are
+// the parallel range upload including its size and MD5 verification. Single shot: one invocation is a
+// whole file.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class FtpUploadBenchmark {
+    private static final String USERNAME = "benchmark";
+    private static final String PASSWORD = "benchmark";
+
+    @Param({"67108864"})
+    public int size;
+
+    @Param({"8388608"})
+    public int rate;
+
+    @Param({"1", "2", "4", "8"})
+    public int connections;
+
+    private Path directory;
+    private Path reportFile;
+    private Path remoteFile;
+    private FtpServer ftpServer;
+    private FtpClientPool ftpClientPool;
+    private ExecutorService uploadExecutor;
+    private FtpReportStorage reportStorage;
+    private ReportRequest reportRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("ftp-benchmark");
+        Path homeDirectory = Files.createDirectories(directory.resolve("ftp"));
+        reportFile = directory.resolve("report.csv");
+        writeReport();
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        ftpServer = startServer(port, homeDirectory);
+        GenericObjectPoolConfig<FTPClient> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(connections + 2);
+        poolConfig.setJmxEnabled(false);
+        ftpClientPool = new FtpClientPool(new FtpClientFactory("localhost", port, USERNAME, PASSWORD, 600_000),
+                poolConfig);
+        uploadExecutor = Executors.newFixedThreadPool(connections);
+        reportStorage = new FtpReportStorage(uploadExecutor, ftpClientPool, new ReportMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(reportStorage, "host", "localhost");
+        ReflectionTestUtils.setField(reportStorage, "username", USERNAME);
+        ReflectionTestUtils.setField(reportStorage, "parallelThreshold", 0L);
+        ReflectionTestUtils.setField(reportStorage, "parallelConnections", connections);
+        reportRequest = new ReportRequest();
+        reportRequest.setId("benchmark");
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportFormat(ReportFormat.CSV);
+        remoteFile = homeDirectory.resolve(ReportStoragePaths.getPath(reportRequest));
+        Files.createDirectories(remoteFile.getParent());
+    }
+
+    // every invocation uploads the whole file
+    @Setup(Level.Invocation)
+    public void deleteRemoteFile() throws IOException {
+        Files.deleteIfExists(remoteFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ftpClientPool.close();
+        ftpServer.stop();
+        uploadExecutor.shutdownNow();
+        Files.deleteIfExists(remoteFile);
+        Files.deleteIfExists(reportFile);
+    }
+
+    @Benchmark
+    public String upload() {
+        reportStorage.saveAndEnrichWithUrl(reportFile, reportRequest, false);
+        return reportRequest.getFtpUrl();
+    }
+
+    private void writeReport() throws IOException {
+        byte[] block = new byte[1024 * 1024];
+        Random random = new Random(42);
+        try (FileChannel channel = FileChannel.open(reportFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                channel.write(ByteBuffer.wrap(block, 0, Math.min(block.length, size - written)));
+            }
+        }
+    }
+
+    private FtpServer startServer(int port, Path homeDirectory) throws Exception {
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(port);
+        serverFactory.addListener("default", listenerFactory.createListener());
+        BaseUser user = new BaseUser();
+        user.setName(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(homeDirectory.toString());
+        user.setAuthorities(Arrays.asList(new WritePermission(), new TransferRatePermission(0, rate)));
+        serverFactory.getUserManager().save(user);
+        FtpServer server = serverFactory.createServer();
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,50 @@
+package com.dzytsiuk.excelreportservice.config;
+
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientFactory;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientPool;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "report.storage.type", havingValue = "ftp", matchIfMissing = true)
+public class FtpConfig {
+    @Value("${ftp.host}")
+    private String host;
+    @Value("${ftp.port}")
+    private Integer port;
+    @Value("${ftp.username}")
+    private String username;
+    @Value("${ftp.password}")
+    private String password;
+    @Value("${ftp.pool.max-total}")
+    private Integer maxTotal;
+    @Value("${ftp.pool.min-idle}")
+    private Integer minIdle;
+    @Value("${ftp.pool.max-wait}")
+    private Long maxWaitMillis;
+    @Value("${ftp.pool.idle-eviction}")
+    private Long idleEvictionMillis;
+    @Value("${ftp.pool.eviction-interval}")
+    private Long evictionIntervalMillis;
+    @Value("${ftp.pool.max-lifetime}")
+    private Long maxLifetimeMillis;
+
+    @Bean(destroyMethod = "close")
+    public FtpClientPool ftpClientPool() {
+        GenericObjectPoolConfig<FTPClient> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxTotal);
+        poolConfig.setMinIdle(minIdle);
+        poolConfig.setMaxWaitMillis(maxWaitMillis);
+        poolConfig.setTestOnBorrow(true);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setMinEvictableIdleTimeMillis(idleEvictionMillis);
+        poolConfig.setTimeBetweenEvictionRunsMillis(evictionIntervalMillis);
+        poolConfig.setJmxNamePrefix("ftpClientPool");
+        return new FtpClientPool(new FtpClientFactory(host, port, username, password, maxLifetimeMillis), poolConfig);
+    }
+}
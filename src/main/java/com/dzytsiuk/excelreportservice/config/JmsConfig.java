@@ -1,16 +1,23 @@
 package com.dzytsiuk.excelreportservice.config;
 
 import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.service.StatusPublisher;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.status.BatchingStatusPublisher;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.ActiveMQPrefetchPolicy;
+import org.apache.activemq.RedeliveryPolicy;
 import org.apache.activemq.command.ActiveMQQueue;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jms.annotation.EnableJms;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.connection.CachingConnectionFactory;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.support.converter.MappingJackson2MessageConverter;
 import org.springframework.jms.support.converter.MessageConverter;
@@ -35,6 +42,28 @@ public class JmsConfig {
     private String password;
     @Value("${activemq.queue.processing}")
     private String processingQueue;
+    @Value("${activemq.listener.concurrency}")
+    private String listenerConcurrency;
+    @Value("${activemq.queue.units}")
+    private String unitQueue;
+    @Value("${activemq.listener.prefetch}")
+    private Integer listenerPrefetch;
+    @Value("${activemq.listener.units.concurrency}")
+    private String unitListenerConcurrency;
+    @Value("${activemq.redelivery.max}")
+    private Integer maxRedeliveries;
+    @Value("${activemq.redelivery.initial-delay}")
+    private Long initialRedeliveryDelay;
+    @Value("${activemq.redelivery.multiplier}")
+    private Double redeliveryMultiplier;
+    @Value("${activemq.session-cache-size}")
+    private Integer sessionCacheSize;
+    @Value("${activemq.status.batch-size}")
+    private Integer statusBatchSize;
+    @Value("${activemq.status.linger}")
+    private Long statusLingerMillis;
+    @Value("${activemq.status.retry-delay}")
+    private Long statusRetryDelayMillis;
 
 
     @Bean
@@ -43,21 +72,76 @@ public class JmsConfig {
         activeMQConnectionFactory.setTrustAllPackages(true);
         activeMQConnectionFactory.setUserName(username);
         activeMQConnectionFactory.setPassword(password);
+        ActiveMQPrefetchPolicy prefetchPolicy = new ActiveMQPrefetchPolicy();
+        prefetchPolicy.setQueuePrefetch(listenerPrefetch);
+        activeMQConnectionFactory.setPrefetchPolicy(prefetchPolicy);
+        RedeliveryPolicy redeliveryPolicy = new RedeliveryPolicy();
+        redeliveryPolicy.setMaximumRedeliveries(maxRedeliveries);
+        redeliveryPolicy.setInitialRedeliveryDelay(initialRedeliveryDelay);
+        redeliveryPolicy.setRedeliveryDelay(initialRedeliveryDelay);
+        redeliveryPolicy.setUseExponentialBackOff(true);
+        redeliveryPolicy.setBackOffMultiplier(redeliveryMultiplier);
+        activeMQConnectionFactory.setRedeliveryPolicy(redeliveryPolicy);
         return activeMQConnectionFactory;
     }
 
+    @Bean
+    public DefaultJmsListenerContainerFactory jmsListenerContainerFactory() {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory());
+        factory.setMessageConverter(jacksonJmsMessageConverter());
+        // acknowledge on commit after the listener returns, unfinished requests are redelivered
+        factory.setSessionTransacted(true);
+        factory.setConcurrency(listenerConcurrency);
+        return factory;
+    }
+
+    // the listener container manages its own connections, senders share one connection and cached sessions
+    @Bean
+    public CachingConnectionFactory cachingConnectionFactory() {
+        CachingConnectionFactory cachingConnectionFactory = new CachingConnectionFactory(connectionFactory());
+        cachingConnectionFactory.setSessionCacheSize(sessionCacheSize);
+        return cachingConnectionFactory;
+    }
+
     @Bean
     public JmsTemplate jmsTemplate() {
-        JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory());
+        JmsTemplate jmsTemplate = new JmsTemplate(cachingConnectionFactory());
         jmsTemplate.setMessageConverter(jacksonJmsMessageConverter());
         return jmsTemplate;
     }
 
+    // a batch of replies is committed in one transaction, on a template of its own
+    @Bean(destroyMethod = "close")
+    public StatusPublisher statusPublisher(ReportMetrics reportMetrics) {
+        JmsTemplate statusJmsTemplate = new JmsTemplate(cachingConnectionFactory());
+        statusJmsTemplate.setMessageConverter(jacksonJmsMessageConverter());
+        statusJmsTemplate.setSessionTransacted(true);
+        return new BatchingStatusPublisher(statusJmsTemplate, processingQueue(), reportMetrics, statusBatchSize,
+                statusLingerMillis, statusRetryDelayMillis);
+    }
+
+    // one report request per message, consumed concurrently and acknowledged one by one
+    @Bean
+    public DefaultJmsListenerContainerFactory unitListenerContainerFactory() {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory());
+        factory.setMessageConverter(jacksonJmsMessageConverter());
+        factory.setSessionTransacted(true);
+        factory.setConcurrency(unitListenerConcurrency);
+        return factory;
+    }
+
     @Bean
     public Queue processingQueue() {
         return new ActiveMQQueue(processingQueue);
     }
 
+    @Bean
+    public Queue unitQueue() {
+        return new ActiveMQQueue(unitQueue);
+    }
+
     @Bean // Serialize message content to json using TextMessage
     public MessageConverter jacksonJmsMessageConverter() {
 
@@ -2,15 +2,149 @@ package com.dzytsiuk.excelreportservice.config;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
 import java.io.IOException;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
+// Parses yyyy-MM-ddTHH:mm[:ss[.SSSSSSSSS]] straight from the parser buffer, anything else goes to LocalDateTime.parse
 public class LocalDateTimeDeserializer extends JsonDeserializer<LocalDateTime> {
+    private static final int DATE_TIME_LENGTH = 16;
+    private static final int WITH_SECONDS_LENGTH = 19;
+    private static final int MAX_LENGTH = 29;
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final int DAYS_0000_TO_1970 = 719_528;
+    private static final int[] NANO_SCALE = {0, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1};
+
     @Override
     public LocalDateTime deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
-        return LocalDateTime.parse(jsonParser.getText());
+        if (jsonParser.getCurrentToken() != JsonToken.VALUE_STRING) {
+            return LocalDateTime.parse(jsonParser.getText());
+        }
+        char[] text = jsonParser.getTextCharacters();
+        int offset = jsonParser.getTextOffset();
+        int length = jsonParser.getTextLength();
+        if (!isIsoLocalDateTime(text, offset, length)) {
+            return LocalDateTime.parse(new String(text, offset, length));
+        }
+        return LocalDateTime.of(digits(text, offset, 4), digits(text, offset + 5, 2), digits(text, offset + 8, 2),
+                digits(text, offset + 11, 2), digits(text, offset + 14, 2), seconds(text, offset, length),
+                nanos(text, offset, length));
+    }
+
+    // epoch millis of the local date time read as UTC, without creating a LocalDateTime
+    public static long parseEpochMillis(JsonParser jsonParser) throws IOException {
+        if (jsonParser.getCurrentToken() != JsonToken.VALUE_STRING) {
+            return toEpochMillis(LocalDateTime.parse(jsonParser.getText()));
+        }
+        char[] text = jsonParser.getTextCharacters();
+        int offset = jsonParser.getTextOffset();
+        int length = jsonParser.getTextLength();
+        if (!isIsoLocalDateTime(text, offset, length)) {
+            return toEpochMillis(LocalDateTime.parse(new String(text, offset, length)));
+        }
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        int hour = digits(text, offset + 11, 2);
+        int minute = digits(text, offset + 14, 2);
+        int second = seconds(text, offset, length);
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            throw new DateTimeException("Invalid date time " + new String(text, offset, length));
+        }
+        long seconds = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+        return seconds * 1000 + nanos(text, offset, length) / 1_000_000;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1000 + dateTime.getNano() / 1_000_000;
+    }
+
+    private static boolean isIsoLocalDateTime(char[] text, int offset, int length) {
+        if (length != DATE_TIME_LENGTH && length != WITH_SECONDS_LENGTH
+                && (length < WITH_SECONDS_LENGTH + 2 || length > MAX_LENGTH)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text[offset + i];
+            boolean valid;
+            switch (i) {
+                case 4:
+                case 7:
+                    valid = c == '-';
+                    break;
+                case 10:
+                    valid = c == 'T';
+                    break;
+                case 13:
+                case 16:
+                    valid = c == ':';
+                    break;
+                case 19:
+                    valid = c == '.';
+                    break;
+                default:
+                    valid = c >= '0' && c <= '9';
+            }
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int seconds(char[] text, int offset, int length) {
+        return length >= WITH_SECONDS_LENGTH ? digits(text, offset + 17, 2) : 0;
+    }
+
+    private static int nanos(char[] text, int offset, int length) {
+        int fractionLength = length - WITH_SECONDS_LENGTH - 1;
+        return fractionLength > 0 ? digits(text, offset + 20, fractionLength) * NANO_SCALE[fractionLength] : 0;
+    }
+
+    private static int digits(char[] text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            value = value * 10 + (text[i] - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // same arithmetic as LocalDate.toEpochDay
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year;
+        if (year >= 0) {
+            total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        } else {
+            total -= year / -4 - year / -100 + year / -400;
+        }
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (lengthOfMonth(year, 2) == 28) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
     }
 }
@@ -0,0 +1,99 @@
+package com.dzytsiuk.excelreportservice.config;
+
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.ReportScheduler;
+import com.dzytsiuk.excelreportservice.service.impl.ReportSingleFlight;
+import com.dzytsiuk.excelreportservice.service.impl.cache.MovieCache;
+import com.dzytsiuk.excelreportservice.service.impl.cache.ReportResultCache;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientPool;
+import com.dzytsiuk.excelreportservice.service.impl.scheduler.LaneStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.ToDoubleFunction;
+
+@Configuration
+public class MetricsConfig {
+    @Bean
+    public MeterBinder reportSchedulerMetrics(ReportScheduler reportScheduler) {
+        return registry -> {
+            for (ReportType reportType : ReportType.values()) {
+                String type = reportType.getName();
+                Gauge.builder("report.scheduler.queue.depth", reportScheduler, lane(reportType, LaneStats::getQueueDepth))
+                        .tag("type", type)
+                        .register(registry);
+                Gauge.builder("report.scheduler.running", reportScheduler, lane(reportType, LaneStats::getRunning))
+                        .tag("type", type)
+                        .register(registry);
+                Gauge.builder("report.scheduler.oldest.wait", reportScheduler, lane(reportType, LaneStats::getOldestWaitMillis))
+                        .tag("type", type)
+                        .baseUnit("milliseconds")
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "report.storage.type", havingValue = "ftp", matchIfMissing = true)
+    public MeterBinder ftpClientPoolMetrics(FtpClientPool ftpClientPool) {
+        return registry -> {
+            Gauge.builder("ftp.pool.active", ftpClientPool, pool -> pool.getMetrics().getActive()).register(registry);
+            Gauge.builder("ftp.pool.idle", ftpClientPool, pool -> pool.getMetrics().getIdle()).register(registry);
+            Gauge.builder("ftp.pool.waiters", ftpClientPool, pool -> pool.getMetrics().getWaiters()).register(registry);
+            Gauge.builder("ftp.pool.borrow.wait.mean", ftpClientPool, pool -> pool.getMetrics().getMeanBorrowWaitMillis())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            FunctionCounter.builder("ftp.pool.created", ftpClientPool, pool -> pool.getMetrics().getCreated()).register(registry);
+            FunctionCounter.builder("ftp.pool.destroyed", ftpClientPool, pool -> pool.getMetrics().getDestroyed()).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder movieCacheMetrics(MovieCache movieCache) {
+        return registry -> {
+            FunctionCounter.builder("cache.movie.hits", movieCache, cache -> cache.getMetrics().getHits()).register(registry);
+            FunctionCounter.builder("cache.movie.misses", movieCache, cache -> cache.getMetrics().getMisses()).register(registry);
+            FunctionCounter.builder("cache.movie.rows.fetched", movieCache, cache -> cache.getMetrics().getRowsFetched()).register(registry);
+            Gauge.builder("cache.movie.size", movieCache, cache -> cache.getMetrics().getSize()).register(registry);
+            Gauge.builder("cache.movie.staleness", movieCache, cache -> cache.getMetrics().getStalenessMillis())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder reportResultCacheMetrics(ReportResultCache reportResultCache) {
+        return registry -> {
+            FunctionCounter.builder("cache.report.hits", reportResultCache, cache -> cache.getMetrics().getHits()).register(registry);
+            FunctionCounter.builder("cache.report.misses", reportResultCache, cache -> cache.getMetrics().getMisses()).register(registry);
+            FunctionCounter.builder("cache.report.evictions", reportResultCache, cache -> cache.getMetrics().getEvictions())
+                    .register(registry);
+            Gauge.builder("cache.report.entries", reportResultCache, cache -> cache.getMetrics().getEntries()).register(registry);
+            Gauge.builder("cache.report.artifacts", reportResultCache, cache -> cache.getMetrics().getArtifacts()).register(registry);
+            Gauge.builder("cache.report.size", reportResultCache, cache -> cache.getMetrics().getSize())
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder reportSingleFlightMetrics(ReportSingleFlight reportSingleFlight) {
+        return registry -> Gauge.builder("report.single.flight.in.flight", reportSingleFlight,
+                ReportSingleFlight::getInFlightCount).register(registry);
+    }
+
+    private static ToDoubleFunction<ReportScheduler> lane(ReportType reportType, ToDoubleFunction<LaneStats> value) {
+        return reportScheduler -> {
+            for (LaneStats laneStats : reportScheduler.getLaneStats()) {
+                if (laneStats.getReportType() == reportType) {
+                    return value.applyAsDouble(laneStats);
+                }
+            }
+            return 0;
+        };
+    }
+}
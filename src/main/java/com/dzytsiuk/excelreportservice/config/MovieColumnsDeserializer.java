@@ -0,0 +1,71 @@
+package com.dzytsiuk.excelreportservice.config;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+// Reads a Movieland movie array token by token into MovieColumns, no ReportMovie is created
+public class MovieColumnsDeserializer extends JsonDeserializer<MovieColumns> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    @Override
+    public MovieColumns deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        if (!jsonParser.isExpectedStartArrayToken()) {
+            return (MovieColumns) deserializationContext.handleUnexpectedToken(MovieColumns.class, jsonParser);
+        }
+        MovieColumns columns = new MovieColumns(INITIAL_CAPACITY);
+        JsonToken token;
+        while ((token = jsonParser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                return (MovieColumns) deserializationContext.handleUnexpectedToken(MovieColumns.class, jsonParser);
+            }
+            readMovie(jsonParser, columns, columns.addRow());
+        }
+        return columns;
+    }
+
+    // reads the fields of the current movie object into the given row, the parser is left on END_OBJECT
+    public static void readMovie(JsonParser jsonParser, MovieColumns columns, int row) throws IOException {
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = jsonParser.getCurrentName();
+            if (jsonParser.nextToken() == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    columns.setId(row, jsonParser.getValueAsInt());
+                    break;
+                case "nameNative":
+                    columns.setNameNative(row, jsonParser.getText());
+                    break;
+                case "description":
+                    columns.setDescription(row, jsonParser.getText());
+                    break;
+                case "genres":
+                    columns.setGenres(row, jsonParser.getText());
+                    break;
+                case "price":
+                    columns.setPrice(row, jsonParser.getValueAsDouble(Double.NaN));
+                    break;
+                case "rating":
+                    columns.setRating(row, jsonParser.getValueAsDouble(Double.NaN));
+                    break;
+                case "addDate":
+                    columns.setAddDateMillis(row, LocalDateTimeDeserializer.parseEpochMillis(jsonParser));
+                    break;
+                case "lastModifiedDate":
+                    columns.setLastModifiedDateMillis(row, LocalDateTimeDeserializer.parseEpochMillis(jsonParser));
+                    break;
+                case "reviewCount":
+                    columns.setReviewCount(row, jsonParser.getValueAsInt());
+                    break;
+                default:
+                    jsonParser.skipChildren();
+            }
+        }
+    }
+}
@@ -1,34 +1,137 @@
 package com.dzytsiuk.excelreportservice.config;
 
+import com.dzytsiuk.excelreportservice.service.impl.retry.RetryPolicy;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportDatePattern;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.support.ExecutorServiceAdapter;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.time.format.DateTimeFormatter;
+import java.time.Clock;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
+// With thread.virtual report jobs, fetches and uploads, which mostly wait on http and ftp sockets, run on
+// virtual threads, and only the cpu bound report writing is bounded by a pool of the size of the cores.
 @Configuration
 public class RootConfig {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    @Value("${thread.virtual}")
+    private boolean virtualThreads;
+
     @Bean
     public ExecutorService threadPoolTaskExecutor(@Value("${thread.pool.initial}") Integer initialPoolSize,
-                                                    @Value("${thread.pool.max}") Integer maxPoolSize) {
+                                                    @Value("${thread.pool.max}") Integer maxPoolSize,
+                                                    @Value("${thread.pool.queue}") Integer queueCapacity,
+                                                    MeterRegistry meterRegistry) {
+        ExecutorService virtualExecutor = newVirtualExecutor("report_thread_");
+        if (virtualExecutor != null) {
+            return virtualExecutor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(initialPoolSize);
         executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
         executor.setThreadNamePrefix("default_task_executor_thread");
         executor.initialize();
+        monitor(executor, "report", meterRegistry);
+        return new ExecutorServiceAdapter(executor);
+    }
+
+    @Bean
+    public ExecutorService fetchExecutor(@Value("${thread.pool.fetch}") Integer poolSize, MeterRegistry meterRegistry) {
+        ExecutorService virtualExecutor = newVirtualExecutor("movie_fetch_thread_");
+        if (virtualExecutor != null) {
+            return virtualExecutor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("movie_fetch_thread");
+        executor.initialize();
+        monitor(executor, "fetch", meterRegistry);
+        return new ExecutorServiceAdapter(executor);
+    }
+
+    @Bean
+    public ExecutorService uploadExecutor(@Value("${thread.pool.upload}") Integer poolSize, MeterRegistry meterRegistry) {
+        ExecutorService virtualExecutor = newVirtualExecutor("ftp_upload_thread_");
+        if (virtualExecutor != null) {
+            return virtualExecutor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("ftp_upload_thread");
+        executor.initialize();
+        monitor(executor, "upload", meterRegistry);
+        return new ExecutorServiceAdapter(executor);
+    }
+
+    // on platform threads a report is written on its own report thread
+    @Bean
+    public Executor writeExecutor(@Value("${thread.pool.write}") Integer poolSize, MeterRegistry meterRegistry) {
+        if (!virtualThreads || !VirtualThreads.isAvailable()) {
+            return Runnable::run;
+        }
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setThreadNamePrefix("report_write_thread");
+        executor.initialize();
+        monitor(executor, "write", meterRegistry);
         return new ExecutorServiceAdapter(executor);
     }
 
     @Bean
-    public DateTimeFormatter dateTimeFormatter(@Value("${request.date.format}") String pattern) {
-        return DateTimeFormatter.ofPattern(pattern);
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+
+    @Bean
+    public ReportDatePattern reportDatePattern(@Value("${request.date.format}") String pattern) {
+        return ReportDatePattern.of(pattern);
+    }
+
+    @Bean
+    public RetryPolicy generateRetryPolicy(@Value("${report.retry.generate.max-attempts}") Integer maxAttempts,
+                                           @Value("${report.retry.generate.initial-delay}") Long initialDelay,
+                                           @Value("${report.retry.generate.max-delay}") Long maxDelay) {
+        return new RetryPolicy(maxAttempts, initialDelay, maxDelay);
+    }
+
+    @Bean
+    public RetryPolicy uploadRetryPolicy(@Value("${report.retry.upload.max-attempts}") Integer maxAttempts,
+                                         @Value("${report.retry.upload.initial-delay}") Long initialDelay,
+                                         @Value("${report.retry.upload.max-delay}") Long maxDelay) {
+        return new RetryPolicy(maxAttempts, initialDelay, maxDelay);
     }
 
     @Bean
     public feign.Logger.Level feignLoggerLevel() {
         return feign.Logger.Level.FULL;
     }
+
+    private ExecutorService newVirtualExecutor(String namePrefix) {
+        if (!virtualThreads) {
+            return null;
+        }
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor(namePrefix);
+        if (executor == null) {
+            log.warn("No virtual threads on Java {}, {} threads are pooled", System.getProperty("java.version"), namePrefix);
+        }
+        return executor;
+    }
+
+    // executor.queued, executor.active, executor.pool.size and executor.completed tagged with the pool name
+    private void monitor(ThreadPoolTaskExecutor executor, String name, MeterRegistry meterRegistry) {
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), name, Tags.empty()).bindTo(meterRegistry);
+    }
 }
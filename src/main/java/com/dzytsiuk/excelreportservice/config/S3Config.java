@@ -0,0 +1,46 @@
+package com.dzytsiuk.excelreportservice.config;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "report.storage.type", havingValue = "s3")
+public class S3Config {
+    @Value("${report.storage.s3.endpoint}")
+    private String endpoint;
+    @Value("${report.storage.s3.region}")
+    private String region;
+    @Value("${report.storage.s3.access-key}")
+    private String accessKey;
+    @Value("${report.storage.s3.secret-key}")
+    private String secretKey;
+    @Value("${report.storage.s3.path-style-access}")
+    private boolean pathStyleAccess;
+    @Value("${report.storage.s3.max-connections}")
+    private Integer maxConnections;
+
+    // without an endpoint the region's AWS endpoint is used, without keys the default credentials chain
+    @Bean(destroyMethod = "shutdown")
+    public AmazonS3 amazonS3() {
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withPathStyleAccessEnabled(pathStyleAccess)
+                .withClientConfiguration(new ClientConfiguration().withMaxConnections(maxConnections));
+        if (endpoint.isEmpty()) {
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+        }
+        if (!accessKey.isEmpty()) {
+            builder.withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey, secretKey)));
+        }
+        return builder.build();
+    }
+}
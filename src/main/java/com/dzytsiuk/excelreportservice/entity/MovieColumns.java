@@ -0,0 +1,274 @@
+package com.dzytsiuk.excelreportservice.entity;
+
+import com.dzytsiuk.excelreportservice.config.MovieColumnsDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Page of movies stored column by column: primitives for numbers and dates (epoch millis of the local
+// date time read as UTC), null bitmaps, and a per page dictionary for genres.
+@JsonDeserialize(using = MovieColumnsDeserializer.class)
+public class MovieColumns {
+    private static final int NO_GENRES = -1;
+
+    private int size;
+    private int[] ids;
+    private String[] nameNatives;
+    private String[] descriptions;
+    private int[] genres;
+    private double[] prices;
+    private double[] ratings;
+    private long[] addDates;
+    private long[] lastModifiedDates;
+    private int[] reviewCounts;
+    private final BitSet nullAddDates = new BitSet();
+    private final BitSet nullLastModifiedDates = new BitSet();
+    private final List<String> genreDictionary = new ArrayList<>();
+    private final Map<String, Integer> genreIndexes = new HashMap<>();
+
+    public MovieColumns(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    public static MovieColumns of(List<ReportMovie> movies) {
+        MovieColumns columns = new MovieColumns(movies.size());
+        for (ReportMovie movie : movies) {
+            int row = columns.addRow();
+            columns.setId(row, movie.getId());
+            columns.setNameNative(row, movie.getNameNative());
+            columns.setDescription(row, movie.getDescription());
+            columns.setGenres(row, movie.getGenres());
+            columns.setPrice(row, movie.getPrice() == null ? Double.NaN : movie.getPrice());
+            columns.setRating(row, movie.getRating() == null ? Double.NaN : movie.getRating());
+            columns.setAddDate(row, movie.getAddDate());
+            columns.setLastModifiedDate(row, movie.getLastModifiedDate());
+            columns.setReviewCount(row, movie.getReviewCount());
+        }
+        return columns;
+    }
+
+    // appends a row with null strings and dates and NaN numbers, returns its index
+    public int addRow() {
+        if (size == ids.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        ids[row] = 0;
+        nameNatives[row] = null;
+        descriptions[row] = null;
+        genres[row] = NO_GENRES;
+        prices[row] = Double.NaN;
+        ratings[row] = Double.NaN;
+        nullAddDates.set(row);
+        nullLastModifiedDates.set(row);
+        reviewCounts[row] = 0;
+        return row;
+    }
+
+    // drops all rows and the genre dictionary, arrays are kept for the next chunk
+    public void clear() {
+        size = 0;
+        genreDictionary.clear();
+        genreIndexes.clear();
+    }
+
+    public int getCapacity() {
+        return ids.length;
+    }
+
+    public void copyRow(MovieColumns source, int sourceRow) {
+        int row = addRow();
+        ids[row] = source.ids[sourceRow];
+        nameNatives[row] = source.nameNatives[sourceRow];
+        descriptions[row] = source.descriptions[sourceRow];
+        setGenres(row, source.getGenres(sourceRow));
+        prices[row] = source.prices[sourceRow];
+        ratings[row] = source.ratings[sourceRow];
+        if (source.hasAddDate(sourceRow)) {
+            setAddDateMillis(row, source.addDates[sourceRow]);
+        }
+        if (source.hasLastModifiedDate(sourceRow)) {
+            setLastModifiedDateMillis(row, source.lastModifiedDates[sourceRow]);
+        }
+        reviewCounts[row] = source.reviewCounts[sourceRow];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public void setId(int row, int id) {
+        ids[row] = id;
+    }
+
+    public String getNameNative(int row) {
+        return nameNatives[row];
+    }
+
+    public void setNameNative(int row, String nameNative) {
+        nameNatives[row] = nameNative;
+    }
+
+    public String getDescription(int row) {
+        return descriptions[row];
+    }
+
+    public void setDescription(int row, String description) {
+        descriptions[row] = description;
+    }
+
+    public String getGenres(int row) {
+        int index = genres[row];
+        return index == NO_GENRES ? null : genreDictionary.get(index);
+    }
+
+    public void setGenres(int row, String value) {
+        if (value == null) {
+            genres[row] = NO_GENRES;
+            return;
+        }
+        Integer index = genreIndexes.get(value);
+        if (index == null) {
+            index = genreDictionary.size();
+            genreDictionary.add(value);
+            genreIndexes.put(value, index);
+        }
+        genres[row] = index;
+    }
+
+    public int getGenreDictionarySize() {
+        return genreDictionary.size();
+    }
+
+    // null and NaN read as 0, check hasPrice and hasRating for missing values
+    public boolean hasPrice(int row) {
+        return !Double.isNaN(prices[row]);
+    }
+
+    public double getPrice(int row) {
+        return nvl(prices[row]);
+    }
+
+    public void setPrice(int row, double price) {
+        prices[row] = price;
+    }
+
+    public boolean hasRating(int row) {
+        return !Double.isNaN(ratings[row]);
+    }
+
+    public double getRating(int row) {
+        return nvl(ratings[row]);
+    }
+
+    public void setRating(int row, double rating) {
+        ratings[row] = rating;
+    }
+
+    public boolean hasAddDate(int row) {
+        return !nullAddDates.get(row);
+    }
+
+    public long getAddDateMillis(int row) {
+        return addDates[row];
+    }
+
+    public LocalDateTime getAddDate(int row) {
+        return hasAddDate(row) ? toLocalDateTime(addDates[row]) : null;
+    }
+
+    public void setAddDate(int row, LocalDateTime addDate) {
+        if (addDate != null) {
+            setAddDateMillis(row, toMillis(addDate));
+        }
+    }
+
+    public void setAddDateMillis(int row, long addDateMillis) {
+        addDates[row] = addDateMillis;
+        nullAddDates.clear(row);
+    }
+
+    public boolean hasLastModifiedDate(int row) {
+        return !nullLastModifiedDates.get(row);
+    }
+
+    public long getLastModifiedDateMillis(int row) {
+        return lastModifiedDates[row];
+    }
+
+    public LocalDateTime getLastModifiedDate(int row) {
+        return hasLastModifiedDate(row) ? toLocalDateTime(lastModifiedDates[row]) : null;
+    }
+
+    public void setLastModifiedDate(int row, LocalDateTime lastModifiedDate) {
+        if (lastModifiedDate != null) {
+            setLastModifiedDateMillis(row, toMillis(lastModifiedDate));
+        }
+    }
+
+    public void setLastModifiedDateMillis(int row, long lastModifiedDateMillis) {
+        lastModifiedDates[row] = lastModifiedDateMillis;
+        nullLastModifiedDates.clear(row);
+    }
+
+    public int getReviewCount(int row) {
+        return reviewCounts[row];
+    }
+
+    public void setReviewCount(int row, int reviewCount) {
+        reviewCounts[row] = reviewCount;
+    }
+
+    private static double nvl(double value) {
+        return Double.isNaN(value) ? 0.0 : value;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        long seconds = Math.floorDiv(millis, 1000L);
+        int nanos = (int) Math.floorMod(millis, 1000L) * 1_000_000;
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        nameNatives = new String[capacity];
+        descriptions = new String[capacity];
+        genres = new int[capacity];
+        prices = new double[capacity];
+        ratings = new double[capacity];
+        addDates = new long[capacity];
+        lastModifiedDates = new long[capacity];
+        reviewCounts = new int[capacity];
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        nameNatives = Arrays.copyOf(nameNatives, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        ratings = Arrays.copyOf(ratings, capacity);
+        addDates = Arrays.copyOf(addDates, capacity);
+        lastModifiedDates = Arrays.copyOf(lastModifiedDates, capacity);
+        reviewCounts = Arrays.copyOf(reviewCounts, capacity);
+    }
+}
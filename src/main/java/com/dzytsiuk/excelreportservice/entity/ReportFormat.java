@@ -1,11 +1,13 @@
 package com.dzytsiuk.excelreportservice.entity;
 
 public enum  ReportFormat {
-    XLSX("xlsx");
+    XLSX("xlsx", "xlsx"), CSV("csv", "csv"), CSV_GZ("csv_gz", "csv.gz"), PARQUET("parquet", "parquet");
     private String name;
+    private String extension;
 
-    ReportFormat(String name) {
+    ReportFormat(String name, String extension) {
         this.name = name;
+        this.extension = extension;
     }
 
     public static ReportFormat getReportFormatFromName(String name) {
@@ -17,7 +19,16 @@ public enum  ReportFormat {
         return null;
     }
 
+    // requests without a format are xlsx reports
+    public static ReportFormat of(ReportRequest reportRequest) {
+        return reportRequest.getReportFormat() == null ? XLSX : reportRequest.getReportFormat();
+    }
+
     public String getName() {
         return name;
     }
+
+    public String getExtension() {
+        return extension;
+    }
 }
@@ -0,0 +1,23 @@
+package com.dzytsiuk.excelreportservice.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ReportKey {
+    private final ReportType reportType;
+    private final ReportFormat reportFormat;
+    private final LocalDateTime fromDate;
+    private final LocalDateTime toDate;
+
+    public static ReportKey of(ReportRequest reportRequest) {
+        ReportType reportType = reportRequest.getReportType();
+        ReportFormat reportFormat = ReportFormat.of(reportRequest);
+        ReportParameter reportParameter = reportRequest.getReportParameter();
+        if (reportType == ReportType.TOP_ACTIVE_USERS || reportParameter == null) {
+            return new ReportKey(reportType, reportFormat, null, null);
+        }
+        return new ReportKey(reportType, reportFormat, reportParameter.getFromDate(), reportParameter.getToDate());
+    }
+}
@@ -1,5 +1,5 @@
 package com.dzytsiuk.excelreportservice.entity;
 
 public enum ReportStatus {
-    PENDING, IN_PROGRESS, GENERATED
+    PENDING, IN_PROGRESS, FAILED, GENERATED
 }
@@ -0,0 +1,7 @@
+package com.dzytsiuk.excelreportservice.exception;
+
+public class UnsupportedReportFormatException extends RuntimeException {
+    public UnsupportedReportFormatException(String s) {
+        super(s);
+    }
+}
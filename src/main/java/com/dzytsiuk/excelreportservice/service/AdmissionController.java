@@ -0,0 +1,9 @@
+package com.dzytsiuk.excelreportservice.service;
+
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+
+public interface AdmissionController {
+    void acquire(ReportType reportType);
+
+    void release(ReportType reportType);
+}
@@ -1,10 +1,32 @@
 package com.dzytsiuk.excelreportservice.service;
 
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
 import com.dzytsiuk.excelreportservice.entity.ReportMovie;
 import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.impl.cache.MovieDataVersion;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.ColumnsMovieReader;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MovieReader;
 
 import java.util.List;
 
 public interface MovieService {
     List<ReportMovie> getMovies(Integer page, Integer count, ReportParameter reportParameter);
+
+    default MovieColumns getMovieColumns(Integer page, Integer count, ReportParameter reportParameter) {
+        return MovieColumns.of(getMovies(page, count, reportParameter));
+    }
+
+    default MovieReader openMovies(Integer page, Integer count, ReportParameter reportParameter) {
+        return new ColumnsMovieReader(getMovieColumns(page, count, reportParameter));
+    }
+
+    // the service every page of one report is read from, so all its pages come from the same source
+    default MovieService forReport(ReportParameter reportParameter) {
+        return this;
+    }
+
+    // the version of the cached catalogue this service reads, null when it does not read from the movie cache
+    default MovieDataVersion getDataVersion() {
+        return null;
+    }
 }
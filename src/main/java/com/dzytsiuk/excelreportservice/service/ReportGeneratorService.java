@@ -3,8 +3,11 @@ package com.dzytsiuk.excelreportservice.service;
 import com.dzytsiuk.excelreportservice.entity.ReportRequest;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 
 public interface ReportGeneratorService {
 
     InputStream generateReport(ReportRequest reportRequest);
+
+    void generateReport(ReportRequest reportRequest, OutputStream outputStream);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.dzytsiuk.excelreportservice.service;
+
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.service.impl.scheduler.LaneStats;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface ReportScheduler {
+    CompletableFuture<Void> schedule(ReportRequest reportRequest, Runnable job);
+
+    List<LaneStats> getLaneStats();
+}
@@ -0,0 +1,27 @@
+package com.dzytsiuk.excelreportservice.service;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// Where generated reports are kept, picked with report.storage.type. Every method stores the report under
+// a name derived from the request and sets the link to it as the request's ftpUrl.
+public interface ReportStorage {
+    void saveAndEnrichWithUrl(InputStream inputStream, ReportRequest reportRequest);
+
+    void saveAndEnrichWithUrl(Consumer<OutputStream> reportWriter, ReportRequest reportRequest);
+
+    // keeps the file. With resume the stored copy is known to be a prefix of this file, left by an interrupted
+    // upload of it, and the upload continues where it ends; otherwise whatever is stored is replaced
+    void saveAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, boolean resume);
+
+    // as above, but stored under the SHA-256 of its content, report/artifact/<hash>.<extension>. Reports of equal
+    // content share the file and a rerun of the id does not replace what earlier requests were given
+    void saveArtifactAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, String contentHash, boolean resume);
+
+    void deleteArtifact(String contentHash, ReportFormat reportFormat);
+}
@@ -2,8 +2,13 @@ package com.dzytsiuk.excelreportservice.service;
 
 import com.dzytsiuk.excelreportservice.entity.ReportRequest;
 
+import javax.jms.JMSException;
+import javax.jms.Session;
 import java.util.List;
 
 public interface RequestProcessor {
-    void processReportRequests(List<ReportRequest> reportRequests);
+    void splitReportRequests(List<ReportRequest> reportRequests, Session session) throws JMSException;
+
+    // deliveryCount is 1 for the first delivery of the request and grows with every redelivery
+    void processReportRequest(ReportRequest reportRequest, int deliveryCount);
 }
@@ -0,0 +1,7 @@
+package com.dzytsiuk.excelreportservice.service;
+
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+
+public interface StatusPublisher {
+    void publish(ReportRequest reportRequest);
+}
@@ -0,0 +1,50 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.AdmissionController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+@Service
+public class DefaultAdmissionController implements AdmissionController {
+    private static final String IN_FLIGHT_PROPERTY_PREFIX = "admission.in-flight.";
+    private static final int DEFAULT_IN_FLIGHT = 8;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Map<ReportType, Semaphore> inFlightPermits = new EnumMap<>(ReportType.class);
+
+    public DefaultAdmissionController(Environment environment) {
+        for (ReportType reportType : ReportType.values()) {
+            Integer maxInFlight = environment.getProperty(IN_FLIGHT_PROPERTY_PREFIX + reportType.getName(),
+                    Integer.class, DEFAULT_IN_FLIGHT);
+            inFlightPermits.put(reportType, new Semaphore(maxInFlight));
+        }
+    }
+
+    @Override
+    public void acquire(ReportType reportType) {
+        Semaphore permits = inFlightPermits.get(reportType);
+        if (permits.tryAcquire()) {
+            return;
+        }
+        log.info("In-flight limit for {} reports reached, pausing consumption", reportType);
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + reportType + " admission", e);
+        }
+        log.info("Resuming consumption of {} reports", reportType);
+    }
+
+    @Override
+    public void release(ReportType reportType) {
+        inFlightPermits.get(reportType).release();
+    }
+}
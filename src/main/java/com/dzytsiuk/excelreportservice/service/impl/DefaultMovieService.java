@@ -1,22 +1,56 @@
 package com.dzytsiuk.excelreportservice.service.impl;
 
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
 import com.dzytsiuk.excelreportservice.entity.ReportMovie;
 import com.dzytsiuk.excelreportservice.entity.ReportParameter;
 import com.dzytsiuk.excelreportservice.service.MovieService;
+import com.dzytsiuk.excelreportservice.service.impl.cache.CachedMovies;
+import com.dzytsiuk.excelreportservice.service.impl.cache.MovieCache;
+import com.dzytsiuk.excelreportservice.service.impl.cache.MovieDataVersion;
 import com.dzytsiuk.excelreportservice.service.impl.client.MovielandClient;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.JsonMovieReader;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MovieReader;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @Service
 public class DefaultMovieService implements MovieService {
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final MovielandClient movielandClient;
+    private final MovieCache movieCache;
+    private final JsonFactory jsonFactory;
+    private final boolean cacheEnabled;
 
-    public DefaultMovieService(MovielandClient movielandClient) {
+    public DefaultMovieService(MovielandClient movielandClient, MovieCache movieCache, ObjectMapper objectMapper,
+                               @Value("${cache.movie.enabled}") boolean cacheEnabled) {
         this.movielandClient = movielandClient;
+        this.movieCache = movieCache;
+        this.jsonFactory = objectMapper.getFactory();
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    // one cache snapshot for all pages of the report, or Movieland for all of them
+    @Override
+    public MovieService forReport(ReportParameter reportParameter) {
+        if (!cacheEnabled) {
+            return this;
+        }
+        CachedMovies movies = movieCache.getCachedMovies(reportParameter.getFromDate(), reportParameter.getToDate());
+        if (movies == null) {
+            log.info("Movies with parameters {} are not cached, reading them from Movieland", reportParameter);
+            return this;
+        }
+        log.info("{} movies with parameters {} served from cache", movies.getMovies().size(), reportParameter);
+        return new CachedMovieService(movies);
     }
 
     @Override
@@ -27,4 +61,50 @@ public class DefaultMovieService implements MovieService {
         log.info("Movies on page {} with parameters {} received {}", page, reportParameter, movies);
         return movies;
     }
+
+    @Override
+    public MovieColumns getMovieColumns(Integer page, Integer count, ReportParameter reportParameter) {
+        log.info("Start sending request to get {} movies on page {} with parameters {}",
+                count, page, reportParameter);
+        MovieColumns movies = movielandClient.getMovieColumns(page, count, reportParameter.getFromDate(), reportParameter.getToDate());
+        log.info("{} movies on page {} with parameters {} received", movies.size(), page, reportParameter);
+        return movies;
+    }
+
+    @Override
+    public MovieReader openMovies(Integer page, Integer count, ReportParameter reportParameter) {
+        log.info("Start streaming {} movies on page {} with parameters {}", count, page, reportParameter);
+        Response response = movielandClient.getMoviesResponse(page, count, reportParameter.getFromDate(), reportParameter.getToDate());
+        if (response.status() != 200 || response.body() == null) {
+            response.close();
+            throw new IllegalStateException("Movieland responded " + response.status() + " to movies page " + page);
+        }
+        try {
+            return new JsonMovieReader(jsonFactory.createParser(response.body().asInputStream()), response);
+        } catch (IOException e) {
+            response.close();
+            throw new UncheckedIOException("Error reading movies page " + page, e);
+        }
+    }
+
+    private static class CachedMovieService implements MovieService {
+        private final List<ReportMovie> movies;
+        private final MovieDataVersion dataVersion;
+
+        private CachedMovieService(CachedMovies cachedMovies) {
+            this.movies = cachedMovies.getMovies();
+            this.dataVersion = cachedMovies.getDataVersion();
+        }
+
+        @Override
+        public List<ReportMovie> getMovies(Integer page, Integer count, ReportParameter reportParameter) {
+            int from = (int) Math.min((long) (page - 1) * count, movies.size());
+            return movies.subList(from, Math.min(from + count, movies.size()));
+        }
+
+        @Override
+        public MovieDataVersion getDataVersion() {
+            return dataVersion;
+        }
+    }
 }
@@ -1,184 +1,248 @@
 package com.dzytsiuk.excelreportservice.service.impl;
 
 import com.dzytsiuk.excelreportservice.entity.*;
+import com.dzytsiuk.excelreportservice.exception.UnsupportedReportFormatException;
 import com.dzytsiuk.excelreportservice.exception.UnsupportedReportTypeException;
-import com.dzytsiuk.excelreportservice.service.MovieService;
 import com.dzytsiuk.excelreportservice.service.ReportGeneratorService;
 import com.dzytsiuk.excelreportservice.service.UserService;
-import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.xssf.usermodel.XSSFCellStyle;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.CheckpointedMoviePageIterator;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.ReportCheckpointStore;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePage;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePageIterator;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePageIteratorFactory;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ByteCountingOutputStream;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportStage;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ColumnType;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportColumn;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportWriter;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportWriterProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 @Service
 public class DefaultReportGeneratorService implements ReportGeneratorService {
     private final Logger log = LoggerFactory.getLogger(getClass());
-    private static final int ID_INDEX = 0;
-    private static final int TITLE_INDEX = 1;
-    private static final int DESCRIPTION_INDEX = 2;
-    private static final int GENRES_INDEX = 3;
-    private static final int PRICE_INDEX = 4;
-    private static final int ADD_DATE_INDEX = 5;
-    private static final int MODIFIED_DATE_INDEX = 6;
-    private static final int RATING_INDEX = 7;
-    private static final int REVIEW_COUNT_INDEX = 8;
-    private static final int EMAIL_INDEX = 1;
-    private static final int USER_REVIEWS_COUNT_INDEX = 2;
-    private static final int AVG_RATING_INDEX = 3;
-    private static final short SMALL_FONT_SIZE = 12;
-    private static final short LARGE_FONT_SIZE = 16;
-
-    private final MovieService movieService;
+    static final List<ReportColumn> MOVIE_COLUMNS = Arrays.asList(
+            new ReportColumn("id", "Id", ColumnType.INT),
+            new ReportColumn("title", "Title", ColumnType.STRING),
+            new ReportColumn("description", "Description", ColumnType.STRING),
+            new ReportColumn("genres", "Genre", ColumnType.STRING),
+            new ReportColumn("price", "Price", ColumnType.DOUBLE),
+            new ReportColumn("addDate", "Add Date", ColumnType.DATE_TIME),
+            new ReportColumn("lastModifiedDate", "Last Modified Date", ColumnType.DATE_TIME),
+            new ReportColumn("rating", "Rating", ColumnType.DOUBLE),
+            new ReportColumn("reviewCount", "Reviews Count", ColumnType.INT));
+    private static final List<ReportColumn> USER_COLUMNS = Arrays.asList(
+            new ReportColumn("id", "User id", ColumnType.INT),
+            new ReportColumn("email", "Email", ColumnType.STRING),
+            new ReportColumn("reviewCount", "Reviews Count", ColumnType.INT),
+            new ReportColumn("averageRating", "Average Rating", ColumnType.DOUBLE));
+
+    private final MoviePageIteratorFactory moviePageIteratorFactory;
     private final UserService userService;
-    private final DateTimeFormatter dateTimeFormatter;
-
-    @Value("${fetch.size.movie}")
-    private Integer moviesFetchSize;
-
-    public DefaultReportGeneratorService(MovieService movieService, UserService userService, DateTimeFormatter dateTimeFormatter) {
-        this.movieService = movieService;
+    private final Map<ReportFormat, ReportWriterProvider> reportWriterProviders = new EnumMap<>(ReportFormat.class);
+    private final ReportMetrics reportMetrics;
+    private final ReportCheckpointStore checkpointStore;
+    private final Executor writeExecutor;
+
+    public DefaultReportGeneratorService(MoviePageIteratorFactory moviePageIteratorFactory, UserService userService,
+                                         List<ReportWriterProvider> reportWriterProviders, ReportMetrics reportMetrics,
+                                         ReportCheckpointStore checkpointStore,
+                                         @Qualifier("writeExecutor") Executor writeExecutor) {
+        this.moviePageIteratorFactory = moviePageIteratorFactory;
         this.userService = userService;
-        this.dateTimeFormatter = dateTimeFormatter;
+        for (ReportWriterProvider reportWriterProvider : reportWriterProviders) {
+            this.reportWriterProviders.put(reportWriterProvider.getFormat(), reportWriterProvider);
+            reportWriterProvider.prepare(MOVIE_COLUMNS);
+            reportWriterProvider.prepare(USER_COLUMNS);
+        }
+        this.reportMetrics = reportMetrics;
+        this.checkpointStore = checkpointStore;
+        this.writeExecutor = writeExecutor;
     }
 
 
+    // the file is written to the report directory of the checkpoint store and deleted with it once the stream is
+    // closed, the storage reading it does not need to know where it is
     @Override
     public InputStream generateReport(ReportRequest reportRequest) {
+        String id = reportRequest.getId();
+        Path reportFile;
+        try {
+            reportFile = checkpointStore.getReportFile(id, ReportFormat.of(reportRequest).getExtension());
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating directory of report " + id, e);
+        }
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(reportFile))) {
+                generateReport(reportRequest, outputStream);
+            }
+            return new FileInputStream(reportFile.toFile()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        checkpointStore.delete(id);
+                    }
+                }
+            };
+        } catch (IOException e) {
+            checkpointStore.delete(id);
+            throw new RuntimeException("Error saving report " + id, e);
+        } catch (RuntimeException e) {
+            checkpointStore.delete(id);
+            throw e;
+        }
+    }
+
+    // fetches and the upload behind the stream are waited for on the calling report thread, on virtual threads
+    // the header, the rows of each page and the finish of the report are serialized on the write pool
+    @Override
+    public void generateReport(ReportRequest reportRequest, OutputStream outputStream) {
         log.info("Start generating report {}", reportRequest);
         ReportType reportType = reportRequest.getReportType();
-        InputStream resultInputStream;
-        if (reportType == ReportType.ADDED_DURING_PERIOD || reportType == ReportType.ALL_MOVIES) {
-            ReportParameter reportParameter = reportRequest.getReportParameter();
-            resultInputStream = generateMovieReport(reportParameter == null ? new ReportParameter() : reportParameter, reportRequest.getId());
-        } else if (reportType == ReportType.TOP_ACTIVE_USERS) {
-            resultInputStream = generateUserReport(reportRequest.getId());
-        } else {
+        if (reportType != ReportType.ADDED_DURING_PERIOD && reportType != ReportType.ALL_MOVIES
+                && reportType != ReportType.TOP_ACTIVE_USERS) {
             throw new UnsupportedReportTypeException("Report type " + reportType + " unsupported");
         }
+        ReportFormat reportFormat = ReportFormat.of(reportRequest);
+        ReportWriterProvider reportWriterProvider = reportWriterProviders.get(reportFormat);
+        if (reportWriterProvider == null) {
+            throw new UnsupportedReportFormatException("Report format " + reportFormat + " unsupported");
+        }
+        ByteCountingOutputStream countingOutputStream = new ByteCountingOutputStream(outputStream);
+        HandOffOutputStream handOffOutputStream = new HandOffOutputStream(countingOutputStream, writeExecutor);
+        try (ReportWriter reportWriter = reportWriterProvider.create(handOffOutputStream)) {
+            if (reportType == ReportType.TOP_ACTIVE_USERS) {
+                generateUserReport(reportType, reportWriter, handOffOutputStream);
+            } else {
+                ReportParameter reportParameter = reportRequest.getReportParameter();
+                generateMovieReport(reportRequest.getId(), reportParameter == null ? new ReportParameter() : reportParameter,
+                        reportType, reportWriter, handOffOutputStream);
+            }
+            finishReport(reportWriter, handOffOutputStream, countingOutputStream, reportRequest);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing report " + reportRequest.getId(), e);
+        }
         log.info("Finish generating report {}", reportRequest);
-        return resultInputStream;
     }
 
 
-    private InputStream generateMovieReport(ReportParameter reportParameter, String reportId) {
-        XSSFWorkbook wb = new XSSFWorkbook();
-        XSSFSheet sheet = wb.createSheet();
-        createMovieTableHeader(wb, sheet);
-        CellStyle rowStyle = getCellStyle(wb);
-        List<ReportMovie> movies;
-        int page = 1;
-        for (; (movies = movieService.getMovies(page, moviesFetchSize, reportParameter)).size() == moviesFetchSize; page++) {
-            fillMovieRows(movies, page, rowStyle, sheet);
+    private void generateMovieReport(String reportId, ReportParameter reportParameter, ReportType reportType,
+                                     ReportWriter reportWriter, HandOffOutputStream handOffOutputStream)
+            throws IOException {
+        handOffOutputStream.serialize(() -> reportWriter.startReport(reportType.getName(), MOVIE_COLUMNS));
+        long fetchNanos = 0;
+        long writeNanos = 0;
+        long rows = 0;
+        try (MoviePageIterator moviePages = createMoviePages(reportId, reportParameter)) {
+            while (moviePages.hasNext()) {
+                long fetchStart = System.nanoTime();
+                MoviePage moviePage = moviePages.next();
+                long writeStart = System.nanoTime();
+                MovieColumns movies = moviePage.getMovies();
+                handOffOutputStream.serialize(() -> {
+                    for (int i = 0; i < movies.size(); i++) {
+                        fillMovieRow(movies, i, reportWriter);
+                    }
+                });
+                fetchNanos += writeStart - fetchStart;
+                writeNanos += System.nanoTime() - writeStart;
+                rows += movies.size();
+            }
         }
-        //process last portion of data
-        fillMovieRows(movies, page, rowStyle, sheet);
-        log.info("Result fetched. Start forming input stream");
-        return getResultInputStream(wb, reportId);
+        reportMetrics.record(ReportStage.FETCH, reportType, fetchNanos);
+        reportMetrics.record(ReportStage.WRITE, reportType, writeNanos);
+        reportMetrics.recordRows(reportType, rows, fetchNanos + writeNanos);
+        log.info("Result fetched. Start writing report");
     }
 
-    private void fillMovieRows(List<ReportMovie> movies, int page, CellStyle rowStyle, XSSFSheet sheet) {
-        for (int i = 0; i < movies.size(); i++) {
-            ReportMovie movie = movies.get(i);
-            int rowNumber = ((page - 1) * moviesFetchSize) + i + 1;
-            fillMovieRow(movie, rowNumber, rowStyle, sheet);
+    // the report is always written from its first row, pages an earlier attempt fetched are read from disk
+    private MoviePageIterator createMoviePages(String reportId, ReportParameter reportParameter) {
+        if (!checkpointStore.isEnabled()) {
+            return moviePageIteratorFactory.create(reportParameter);
         }
+        return new CheckpointedMoviePageIterator(checkpointStore, reportId, moviePageIteratorFactory, reportParameter);
     }
 
-    private InputStream generateUserReport(String reportId) {
+    private void generateUserReport(ReportType reportType, ReportWriter reportWriter,
+                                    HandOffOutputStream handOffOutputStream) throws IOException {
+        long fetchStart = System.nanoTime();
         List<User> users = userService.getTopUsers();
-        String reportTypeName = ReportType.TOP_ACTIVE_USERS.getName();
-        XSSFWorkbook wb = new XSSFWorkbook();
-        XSSFSheet sheet = wb.createSheet(reportTypeName);
-        createUserTableHeader(wb, sheet);
-        CellStyle rowStyle = getCellStyle(wb);
-        for (int i = 0; i < users.size(); i++) {
-            User user = users.get(i);
-            XSSFRow row = sheet.createRow(i + 1);
-            row.setRowStyle(rowStyle);
-            fillUserRow(user, row);
-        }
-        return getResultInputStream(wb, reportId);
-    }
-
-    private CellStyle getCellStyle(XSSFWorkbook wb) {
-        CellStyle rowStyle = wb.createCellStyle();
-        ((XSSFCellStyle) rowStyle).getFont().setFontHeightInPoints(SMALL_FONT_SIZE);
-        return rowStyle;
-    }
-
-    private void fillUserRow(User user, XSSFRow row) {
-        row.createCell(ID_INDEX).setCellValue(user.getId());
-        row.createCell(EMAIL_INDEX).setCellValue(user.getEmail());
-        row.createCell(USER_REVIEWS_COUNT_INDEX).setCellValue(user.getReviewCount());
-        row.createCell(AVG_RATING_INDEX).setCellValue(user.getAverageRating());
-    }
-
-    private void createUserTableHeader(XSSFWorkbook wb, XSSFSheet sheet) {
-        XSSFRow header = sheet.createRow(0);
-        styleHeader(wb, header);
-        header.createCell(ID_INDEX).setCellValue("User id");
-        header.createCell(EMAIL_INDEX).setCellValue("Email");
-        header.createCell(USER_REVIEWS_COUNT_INDEX).setCellValue("Reviews Count");
-        header.createCell(AVG_RATING_INDEX).setCellValue("Average Rating");
-    }
-
-    private void fillMovieRow(ReportMovie movie, Integer rowNumber, CellStyle rowStyle, XSSFSheet sheet) {
-        XSSFRow row = sheet.createRow(rowNumber);
-        row.setRowStyle(rowStyle);
-        row.createCell(ID_INDEX).setCellValue(movie.getId());
-        row.createCell(TITLE_INDEX).setCellValue(movie.getNameNative());
-        row.createCell(DESCRIPTION_INDEX).setCellValue(movie.getDescription());
-        row.createCell(GENRES_INDEX).setCellValue(movie.getGenres());
-        row.createCell(PRICE_INDEX).setCellValue(nvl(movie.getPrice()));
-        row.createCell(ADD_DATE_INDEX).setCellValue(movie.getAddDate().format(dateTimeFormatter));
-        row.createCell(MODIFIED_DATE_INDEX).setCellValue(movie.getLastModifiedDate().format(dateTimeFormatter));
-        row.createCell(RATING_INDEX).setCellValue(nvl(movie.getRating()));
-        row.createCell(REVIEW_COUNT_INDEX).setCellValue(movie.getReviewCount());
+        long writeStart = System.nanoTime();
+        handOffOutputStream.serialize(() -> {
+            reportWriter.startReport(reportType.getName(), USER_COLUMNS);
+            for (User user : users) {
+                fillUserRow(user, reportWriter);
+            }
+        });
+        long writeEnd = System.nanoTime();
+        reportMetrics.record(ReportStage.FETCH, reportType, writeStart - fetchStart);
+        reportMetrics.record(ReportStage.WRITE, reportType, writeEnd - writeStart);
+        reportMetrics.recordRows(reportType, users.size(), writeEnd - fetchStart);
     }
 
-    private Double nvl(Double value) {
-        return (value == null || value.isNaN()) ? 0.0 : value;
+    void fillUserRow(User user, ReportWriter reportWriter) throws IOException {
+        reportWriter.startRow();
+        reportWriter.writeInt(user.getId());
+        reportWriter.writeString(user.getEmail());
+        reportWriter.writeInt(user.getReviewCount());
+        reportWriter.writeDouble(user.getAverageRating());
+        reportWriter.endRow();
     }
 
-
-    private void createMovieTableHeader(XSSFWorkbook wb, XSSFSheet sheet) {
-        XSSFRow header = sheet.createRow(0);
-        styleHeader(wb, header);
-        header.createCell(ID_INDEX).setCellValue("Id");
-        header.createCell(TITLE_INDEX).setCellValue("Title");
-        header.createCell(DESCRIPTION_INDEX).setCellValue("Description");
-        header.createCell(GENRES_INDEX).setCellValue("Genre");
-        header.createCell(PRICE_INDEX).setCellValue("Price");
-        header.createCell(ADD_DATE_INDEX).setCellValue("Add Date");
-        header.createCell(MODIFIED_DATE_INDEX).setCellValue("Last Modified Date");
-        header.createCell(RATING_INDEX).setCellValue("Rating");
-        header.createCell(REVIEW_COUNT_INDEX).setCellValue("Reviews Count");
-    }
-
-    private void styleHeader(XSSFWorkbook wb, XSSFRow header) {
-        CellStyle cellStyle = wb.createCellStyle();
-        ((XSSFCellStyle) cellStyle).getFont().setFontHeightInPoints(LARGE_FONT_SIZE);
-        header.setRowStyle(cellStyle);
+    void fillMovieRow(MovieColumns movies, int index, ReportWriter reportWriter) throws IOException {
+        reportWriter.startRow();
+        reportWriter.writeInt(movies.getId(index));
+        reportWriter.writeString(movies.getNameNative(index));
+        reportWriter.writeString(movies.getDescription(index));
+        reportWriter.writeString(movies.getGenres(index));
+        if (movies.hasPrice(index)) {
+            reportWriter.writeDouble(movies.getPrice(index));
+        } else {
+            reportWriter.writeBlank();
+        }
+        if (movies.hasAddDate(index)) {
+            reportWriter.writeDateTime(movies.getAddDateMillis(index));
+        } else {
+            reportWriter.writeBlank();
+        }
+        if (movies.hasLastModifiedDate(index)) {
+            reportWriter.writeDateTime(movies.getLastModifiedDateMillis(index));
+        } else {
+            reportWriter.writeBlank();
+        }
+        if (movies.hasRating(index)) {
+            reportWriter.writeDouble(movies.getRating(index));
+        } else {
+            reportWriter.writeBlank();
+        }
+        reportWriter.writeInt(movies.getReviewCount(index));
+        reportWriter.endRow();
     }
 
-    private InputStream getResultInputStream(XSSFWorkbook wb, String reportId) {
-        // TODO: :(
-        String tmpFileName = "tmp/" + reportId + ".xlsx";
-        try (FileOutputStream outputStream = new FileOutputStream(tmpFileName);
-             BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream)) {
-            wb.write(bufferedOutputStream);
-            return new FileInputStream(tmpFileName);
-        } catch (IOException e) {
-            throw new RuntimeException("Error saving workbook");
-        }
+    private void finishReport(ReportWriter reportWriter, HandOffOutputStream handOffOutputStream,
+                              ByteCountingOutputStream countingOutputStream, ReportRequest reportRequest)
+            throws IOException {
+        long start = System.nanoTime();
+        handOffOutputStream.serialize(reportWriter::finish);
+        countingOutputStream.flush();
+        ReportType reportType = reportRequest.getReportType();
+        reportMetrics.record(ReportStage.SERIALIZE, reportType, System.nanoTime() - start);
+        reportMetrics.recordBytesWritten(reportType, countingOutputStream.getCount());
+        log.info("Report {} written as {}", reportRequest.getId(), ReportFormat.of(reportRequest));
     }
 }
@@ -0,0 +1,135 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.entity.User;
+import com.dzytsiuk.excelreportservice.service.ReportScheduler;
+import com.dzytsiuk.excelreportservice.service.impl.scheduler.LaneStats;
+import com.dzytsiuk.excelreportservice.service.impl.scheduler.ReportJobQueue;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service
+public class DefaultReportScheduler implements ReportScheduler {
+    private static final String WEIGHT_PROPERTY_PREFIX = "scheduler.weight.";
+    private static final String MAX_RUNNING_PROPERTY_PREFIX = "scheduler.max-running.";
+    private static final String ANONYMOUS_USER = "anonymous";
+
+    private final ExecutorService executor;
+    private final int workers;
+    private final ReportJobQueue<ScheduledJob> jobQueue;
+    private int running;
+
+    public DefaultReportScheduler(@Qualifier("threadPoolTaskExecutor") ExecutorService executor,
+                                  @Value("${scheduler.workers}") Integer workers,
+                                  @Value("${scheduler.max-running-per-user}") Integer maxRunningPerUser,
+                                  @Value("${scheduler.aging-threshold}") Long agingThresholdMillis,
+                                  Environment environment) {
+        this.executor = executor;
+        this.workers = workers;
+        Map<ReportType, Integer> weights = new EnumMap<>(ReportType.class);
+        Map<ReportType, Integer> maxRunning = new EnumMap<>(ReportType.class);
+        for (ReportType reportType : ReportType.values()) {
+            weights.put(reportType, environment.getProperty(WEIGHT_PROPERTY_PREFIX + reportType.getName(), Integer.class, 1));
+            maxRunning.put(reportType, environment.getProperty(MAX_RUNNING_PROPERTY_PREFIX + reportType.getName(), Integer.class, workers));
+        }
+        this.jobQueue = new ReportJobQueue<>(weights, maxRunning, maxRunningPerUser, agingThresholdMillis);
+    }
+
+    @Override
+    public CompletableFuture<Void> schedule(ReportRequest reportRequest, Runnable job) {
+        ScheduledJob scheduledJob = new ScheduledJob(job, reportRequest.getReportType(), getUserKey(reportRequest));
+        long now = System.currentTimeMillis();
+        synchronized (jobQueue) {
+            jobQueue.add(scheduledJob, scheduledJob.reportType, scheduledJob.userKey, getRequestedAt(reportRequest, now), now);
+        }
+        dispatch();
+        return scheduledJob.result;
+    }
+
+    @Override
+    public List<LaneStats> getLaneStats() {
+        synchronized (jobQueue) {
+            return jobQueue.getLaneStats(System.currentTimeMillis());
+        }
+    }
+
+    private void onJobFinished(ScheduledJob job) {
+        synchronized (jobQueue) {
+            running--;
+            jobQueue.complete(job.reportType, job.userKey);
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (true) {
+            ScheduledJob job;
+            synchronized (jobQueue) {
+                if (running >= workers || (job = jobQueue.poll(System.currentTimeMillis())) == null) {
+                    return;
+                }
+                running++;
+            }
+            try {
+                executor.execute(job);
+            } catch (RejectedExecutionException e) {
+                synchronized (jobQueue) {
+                    running--;
+                    jobQueue.complete(job.reportType, job.userKey);
+                }
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private String getUserKey(ReportRequest reportRequest) {
+        User user = reportRequest.getUser();
+        if (user == null) {
+            return ANONYMOUS_USER;
+        }
+        return user.getId() != null ? String.valueOf(user.getId()) : String.valueOf(user.getEmail());
+    }
+
+    private long getRequestedAt(ReportRequest reportRequest, long now) {
+        if (reportRequest.getDateRequested() == null) {
+            return now;
+        }
+        return Math.min(now, reportRequest.getDateRequested().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    private class ScheduledJob implements Runnable {
+        private final Runnable job;
+        private final ReportType reportType;
+        private final String userKey;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        ScheduledJob(Runnable job, ReportType reportType, String userKey) {
+            this.job = job;
+            this.reportType = reportType;
+            this.userKey = userKey;
+        }
+
+        @Override
+        public void run() {
+            try {
+                job.run();
+                result.complete(null);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                onJobFinished(this);
+            }
+        }
+    }
+}
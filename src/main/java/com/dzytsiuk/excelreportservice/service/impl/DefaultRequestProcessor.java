@@ -2,84 +2,212 @@ package com.dzytsiuk.excelreportservice.service.impl;
 
 import com.dzytsiuk.excelreportservice.entity.ReportRequest;
 import com.dzytsiuk.excelreportservice.entity.ReportStatus;
-import com.dzytsiuk.excelreportservice.service.FtpService;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.AdmissionController;
 import com.dzytsiuk.excelreportservice.service.ReportGeneratorService;
+import com.dzytsiuk.excelreportservice.service.ReportScheduler;
+import com.dzytsiuk.excelreportservice.service.ReportStorage;
 import com.dzytsiuk.excelreportservice.service.RequestProcessor;
-import com.dzytsiuk.excelreportservice.service.processor.ReplyMessagePostProcessor;
+import com.dzytsiuk.excelreportservice.service.StatusPublisher;
+import com.dzytsiuk.excelreportservice.service.impl.cache.ReportResultCache;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.ResumableReportService;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportStage;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.annotation.JmsListener;
-import org.springframework.jms.core.JmsTemplate;
-import org.springframework.jms.core.MessagePostProcessor;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.jms.support.converter.MessageConverter;
 import org.springframework.stereotype.Service;
 
-import javax.jms.Queue;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
 import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 
 @Service
 public class DefaultRequestProcessor implements RequestProcessor {
-    private static final MessagePostProcessor REPLY_MESSAGE_POST_PROCESSOR = new ReplyMessagePostProcessor();
     private static final TypeReference<List<ReportRequest>> LIST_TYPE_REF = new TypeReference<List<ReportRequest>>() {
     };
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private final ExecutorService executor;
     private final ObjectMapper objectMapper;
     private final ReportGeneratorService reportGeneratorService;
-    private final FtpService ftpService;
-    private final JmsTemplate jmsTemplate;
-    private final Queue processingQueue;
+    private final ReportStorage reportStorage;
+    private final StatusPublisher statusPublisher;
+    private final MessageConverter messageConverter;
+    private final Destination unitQueue;
+    private final AdmissionController admissionController;
+    private final ReportScheduler reportScheduler;
+    private final ReportSingleFlight reportSingleFlight;
+    private final ReportMetrics reportMetrics;
+    private final ResumableReportService resumableReportService;
+    private final ReportResultCache reportResultCache;
+    @Value("${ftp.upload.streaming}")
+    private boolean streamingUpload;
+    @Value("${activemq.redelivery.max}")
+    private int maxRedeliveries;
 
-
-    public DefaultRequestProcessor(ExecutorService executor, ObjectMapper objectMapper, ReportGeneratorService reportGeneratorService, FtpService ftpService, JmsTemplate jmsTemplate, Queue processingQueue) {
-        this.executor = executor;
+    public DefaultRequestProcessor(ObjectMapper objectMapper, ReportGeneratorService reportGeneratorService, ReportStorage reportStorage, StatusPublisher statusPublisher, MessageConverter messageConverter, @Qualifier("unitQueue") Destination unitQueue, AdmissionController admissionController, ReportScheduler reportScheduler, ReportSingleFlight reportSingleFlight, ReportMetrics reportMetrics, ResumableReportService resumableReportService, ReportResultCache reportResultCache) {
         this.objectMapper = objectMapper;
         this.reportGeneratorService = reportGeneratorService;
-        this.ftpService = ftpService;
-        this.jmsTemplate = jmsTemplate;
-        this.processingQueue = processingQueue;
+        this.reportStorage = reportStorage;
+        this.statusPublisher = statusPublisher;
+        this.messageConverter = messageConverter;
+        this.unitQueue = unitQueue;
+        this.admissionController = admissionController;
+        this.reportScheduler = reportScheduler;
+        this.reportSingleFlight = reportSingleFlight;
+        this.reportMetrics = reportMetrics;
+        this.resumableReportService = resumableReportService;
+        this.reportResultCache = reportResultCache;
     }
 
-    @JmsListener(destination = "processing", selector = "format = 'xlsx'")
+    // runs in the listener transaction: the batch is acknowledged together with the units sent on its session
+    @JmsListener(destination = "processing", selector = "${activemq.listener.selector}")
     @Override
-    public void processReportRequests(List<ReportRequest> reportRequests) {
+    public void splitReportRequests(List<ReportRequest> reportRequests, Session session) throws JMSException {
         List<ReportRequest> list = objectMapper.convertValue(reportRequests, LIST_TYPE_REF);
-        for (ReportRequest reportRequest : list) {
-            CompletableFuture.supplyAsync(() -> generateReport(reportRequest), executor)
-                    .thenAccept(inputStream -> saveToFtp(inputStream, reportRequest))
-                    .thenRun(() -> notifyFinished(reportRequest))
-                    .whenComplete((u, ex) -> handleException(ex, reportRequest));
+        MessageProducer producer = session.createProducer(unitQueue);
+        try {
+            for (ReportRequest reportRequest : list) {
+                producer.send(messageConverter.toMessage(reportRequest, session));
+            }
+        } finally {
+            producer.close();
+        }
+        log.info("Batch of {} reports split into units", list.size());
+    }
+
+    // a failed report rolls back only its own unit, which the broker redelivers
+    @JmsListener(destination = "${activemq.queue.units}?consumer.prefetchSize=${activemq.listener.units.prefetch}",
+            containerFactory = "unitListenerContainerFactory")
+    @Override
+    public void processReportRequest(ReportRequest reportRequest,
+                                     @Header(name = "JMSXDeliveryCount", defaultValue = "1") int deliveryCount) {
+        if (serveFromResultCache(reportRequest)) {
+            return;
+        }
+        ReportType reportType = reportRequest.getReportType();
+        // blocks the consumer while the in-flight limit is reached, so the broker keeps the backlog
+        admissionController.acquire(reportType);
+        try {
             log.info("Report {} is put into running queue", reportRequest);
+            submitReport(reportRequest, isLastDelivery(deliveryCount)).join();
+        } finally {
+            admissionController.release(reportType);
         }
     }
 
-    private void handleException(Throwable ex, ReportRequest reportRequest) {
+    // a report of unchanged data is neither generated nor uploaded again, nor does it take an in-flight slot.
+    // The movie cache is not refreshed here, with a stale one the report takes the normal path
+    private boolean serveFromResultCache(ReportRequest reportRequest) {
+        String ftpUrl = reportResultCache.get(reportResultCache.getCurrentKey(reportRequest));
+        if (ftpUrl == null) {
+            return false;
+        }
+        reportRequest.setFtpUrl(ftpUrl);
+        notifyFinished(reportRequest);
+        log.info("Report {} served from result cache. Link: {}", reportRequest.getId(), ftpUrl);
+        return true;
+    }
+
+    // a negative maximum redelivers forever
+    private boolean isLastDelivery(int deliveryCount) {
+        return maxRedeliveries >= 0 && deliveryCount > maxRedeliveries;
+    }
+
+    private CompletableFuture<Void> submitReport(ReportRequest reportRequest, boolean lastDelivery) {
+        ReportType reportType = reportRequest.getReportType();
+        long submittedAt = System.nanoTime();
+        // identical requests in flight share one generated file
+        return reportSingleFlight.execute(reportRequest,
+                () -> reportScheduler.schedule(reportRequest, () -> {
+                    reportMetrics.record(ReportStage.QUEUE, reportType, System.nanoTime() - submittedAt);
+                    processReport(reportRequest);
+                }).thenApply(u -> reportRequest.getFtpUrl()),
+                () -> notifyInProgress(reportRequest))
+                .thenAccept(ftpUrl -> {
+                    reportRequest.setFtpUrl(ftpUrl);
+                    notifyFinished(reportRequest);
+                    reportMetrics.record(ReportStage.TOTAL, reportType, System.nanoTime() - submittedAt);
+                })
+                .whenComplete((u, ex) -> {
+                    if (ex != null) {
+                        reportMetrics.recordFailure(reportType, System.nanoTime() - submittedAt);
+                    }
+                    handleException(ex, reportRequest, lastDelivery);
+                });
+    }
+
+    // a checkpointed report cannot be streamed, the upload resumes from the generated file
+    private void processReport(ReportRequest reportRequest) {
+        if (resumableReportService.isEnabled()) {
+            generateAndSaveResumable(reportRequest);
+        } else if (streamingUpload) {
+            generateAndSaveToStorage(reportRequest);
+        } else {
+            saveToStorage(generateReport(reportRequest), reportRequest);
+        }
+    }
+
+    private void notifyInProgress(ReportRequest reportRequest) {
+        reportRequest.setReportStatus(ReportStatus.IN_PROGRESS);
+        statusPublisher.publish(reportRequest);
+    }
+
+    // the unit is rolled back and redelivered, a checkpointed report resumes where this attempt stopped.
+    // FAILED is final, it is only published once the broker does not redeliver the unit again
+    private void handleException(Throwable ex, ReportRequest reportRequest, boolean lastDelivery) {
         if (ex != null) {
+            if (lastDelivery) {
+                log.error("Error processing request {}, no redelivery left", reportRequest, ex);
+                reportRequest.setReportStatus(ReportStatus.FAILED);
+                statusPublisher.publish(reportRequest);
+            } else {
+                log.error("Error processing request {}, it is redelivered", reportRequest, ex);
+            }
             throw new RuntimeException("Error processing request " + reportRequest, ex);
         }
     }
 
     private void notifyFinished(ReportRequest reportRequest) {
         reportRequest.setReportStatus(ReportStatus.GENERATED);
-        jmsTemplate.convertAndSend(processingQueue, reportRequest, REPLY_MESSAGE_POST_PROCESSOR);
+        statusPublisher.publish(reportRequest);
     }
 
     private InputStream generateReport(ReportRequest reportRequest) {
-        reportRequest.setReportStatus(ReportStatus.IN_PROGRESS);
-        jmsTemplate.convertAndSend(processingQueue, reportRequest, REPLY_MESSAGE_POST_PROCESSOR);
+        notifyInProgress(reportRequest);
         return reportGeneratorService.generateReport(reportRequest);
     }
 
-    private void saveToFtp(InputStream inputStream, ReportRequest reportRequest) {
+    private void generateAndSaveToStorage(ReportRequest reportRequest) {
+        String id = reportRequest.getId();
+        notifyInProgress(reportRequest);
+        log.info("Start streaming report {} to storage", id);
+        reportStorage.saveAndEnrichWithUrl(outputStream -> reportGeneratorService.generateReport(reportRequest, outputStream),
+                reportRequest);
+        log.info("Finish streaming report {} to storage. Link: {}", id, reportRequest.getFtpUrl());
+    }
+
+    private void generateAndSaveResumable(ReportRequest reportRequest) {
+        notifyInProgress(reportRequest);
+        log.info("Start generating report {} with checkpoints", reportRequest.getId());
+        resumableReportService.generateAndSave(reportRequest);
+    }
+
+    private void saveToStorage(InputStream inputStream, ReportRequest reportRequest) {
         String id = reportRequest.getId();
-        log.info("Start saving report {} to ftp", id);
-        ftpService.saveAndEnrichWithUrl(inputStream, reportRequest);
-        log.info("Finish saving report {} to ftp. Link: {}", id, reportRequest.getFtpUrl());
+        log.info("Start saving report {} to storage", id);
+        reportStorage.saveAndEnrichWithUrl(inputStream, reportRequest);
+        log.info("Finish saving report {} to storage. Link: {}", id, reportRequest.getFtpUrl());
     }
 
 }
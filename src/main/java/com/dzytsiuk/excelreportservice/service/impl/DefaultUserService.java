@@ -6,18 +6,27 @@ import com.dzytsiuk.excelreportservice.service.impl.client.MovielandClient;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Service
 public class DefaultUserService implements UserService {
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final MovielandClient movielandClient;
+    private final Clock clock;
+    private final long ttlMillis;
+    private volatile List<User> cachedUsers;
+    private volatile long cachedAt;
 
-    public DefaultUserService(MovielandClient movielandClient) {
+    public DefaultUserService(MovielandClient movielandClient, Clock clock, @Value("${cache.user.ttl}") Long ttlMillis) {
         this.movielandClient = movielandClient;
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
     }
 
     public List<User> fallback() {
@@ -27,9 +36,17 @@ public class DefaultUserService implements UserService {
     @HystrixCommand(fallbackMethod = "fallback")
     @Override
     public List<User> getTopUsers() {
+        // fallback results are never cached, only what Movieland actually returned
+        List<User> users = cachedUsers;
+        if (users != null && clock.millis() - cachedAt < ttlMillis) {
+            log.info("Top users served from cache");
+            return users;
+        }
         log.info("Sending request to get top users");
-        List<User> users = movielandClient.getUsers();
+        users = Collections.unmodifiableList(movielandClient.getUsers());
         log.info("Users {} received", users);
+        cachedAt = clock.millis();
+        cachedUsers = users;
         return users;
     }
 }
@@ -0,0 +1,165 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+// Rows, the header and the finish of a report are serialized on the write pool and copied to the report stream by
+// the calling report thread, so a write pool thread never writes to the upload behind the stream. What it
+// serializes is handed over in chunks, the zip of a finished workbook does not have to fit in memory: the write
+// pool thread only waits while MAX_CHUNKS chunks are not copied yet. Outside of serialize, and when the write
+// pool runs tasks on the caller, writes go through.
+class HandOffOutputStream extends OutputStream {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CHUNKS = 2;
+    private static final byte[] END = new byte[0];
+
+    private final OutputStream outputStream;
+    private final Executor writeExecutor;
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(MAX_CHUNKS);
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private volatile Thread serializer;
+
+    HandOffOutputStream(OutputStream outputStream, Executor writeExecutor) {
+        this.outputStream = outputStream;
+        this.writeExecutor = writeExecutor;
+    }
+
+    // the task runs on the write pool while the caller copies what it wrote, then it is joined
+    void serialize(Serialization serialization) throws IOException {
+        Thread caller = Thread.currentThread();
+        CompletableFuture<Void> serialized = CompletableFuture.runAsync(() -> {
+            if (Thread.currentThread() != caller) {
+                serializer = Thread.currentThread();
+            }
+            try {
+                serialization.run();
+                handOff();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                serializer = null;
+                buffer.reset();
+                put(END);
+            }
+        }, writeExecutor);
+        Exception copyFailure = copyChunks();
+        try {
+            serialized.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        if (copyFailure instanceof IOException) {
+            throw (IOException) copyFailure;
+        }
+        if (copyFailure != null) {
+            throw (RuntimeException) copyFailure;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (Thread.currentThread() == serializer) {
+            buffer.write(b);
+            handOffFull();
+        } else {
+            outputStream.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (Thread.currentThread() == serializer) {
+            buffer.write(b, off, len);
+            handOffFull();
+        } else {
+            outputStream.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (Thread.currentThread() != serializer) {
+            outputStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+
+    // after a failed write the rest is still taken, so the write pool thread is not left waiting
+    private Exception copyChunks() {
+        Exception failure = null;
+        boolean interrupted = false;
+        while (true) {
+            byte[] chunk;
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                continue;
+            }
+            if (chunk == END) {
+                break;
+            }
+            if (failure == null) {
+                try {
+                    outputStream.write(chunk);
+                } catch (IOException | RuntimeException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return failure;
+    }
+
+    private void handOffFull() {
+        if (buffer.size() >= CHUNK_SIZE) {
+            handOff();
+        }
+    }
+
+    private void handOff() {
+        if (buffer.size() > 0) {
+            put(buffer.toByteArray());
+            buffer.reset();
+        }
+    }
+
+    // the caller takes chunks until the end of the serialization, waiting for it cannot be cut short
+    private void put(byte[] chunk) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                chunks.put(chunk);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    interface Serialization {
+        void run() throws IOException;
+    }
+}
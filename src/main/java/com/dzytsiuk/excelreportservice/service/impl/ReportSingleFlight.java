@@ -0,0 +1,50 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.entity.ReportKey;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+@Component
+public class ReportSingleFlight {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<ReportKey, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    public CompletableFuture<String> execute(ReportRequest reportRequest, Supplier<CompletableFuture<String>> generation,
+                                             Runnable onJoin) {
+        ReportKey reportKey = ReportKey.of(reportRequest);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(reportKey, result);
+        if (existing != null) {
+            log.info("Report {} joins in-flight generation of {}", reportRequest.getId(), reportKey);
+            onJoin.run();
+            return existing;
+        }
+        CompletableFuture<String> generated;
+        try {
+            generated = generation.get();
+        } catch (RuntimeException e) {
+            generated = new CompletableFuture<>();
+            generated.completeExceptionally(e);
+        }
+        generated.whenComplete((ftpUrl, ex) -> {
+            inFlight.remove(reportKey, result);
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(ftpUrl);
+            }
+        });
+        return result;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
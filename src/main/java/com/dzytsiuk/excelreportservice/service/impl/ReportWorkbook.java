@@ -0,0 +1,93 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class ReportWorkbook implements Closeable {
+    private final int streamingRowThreshold;
+    private final int rowAccessWindowSize;
+    private final boolean compressTmpFiles;
+    private final XSSFWorkbook xssfWorkbook;
+    private SXSSFWorkbook streamingWorkbook;
+    private Sheet sheet;
+    private int rowCount;
+
+    public ReportWorkbook(boolean streaming, int streamingRowThreshold, int rowAccessWindowSize, boolean compressTmpFiles) {
+        this.streamingRowThreshold = streamingRowThreshold;
+        this.rowAccessWindowSize = rowAccessWindowSize;
+        this.compressTmpFiles = compressTmpFiles;
+        this.xssfWorkbook = new XSSFWorkbook();
+        if (streaming) {
+            streamingWorkbook = new SXSSFWorkbook(xssfWorkbook, rowAccessWindowSize, compressTmpFiles);
+        }
+    }
+
+    public Sheet createSheet() {
+        sheet = getWorkbook().createSheet();
+        return sheet;
+    }
+
+    public Sheet createSheet(String name) {
+        sheet = getWorkbook().createSheet(name);
+        return sheet;
+    }
+
+    public CellStyle createCellStyle() {
+        return getWorkbook().createCellStyle();
+    }
+
+    public DataFormat createDataFormat() {
+        return getWorkbook().createDataFormat();
+    }
+
+    public Font createFont() {
+        return getWorkbook().createFont();
+    }
+
+    // the threshold counts the rows of all sheets
+    public Row createRow(int rowNumber) {
+        if (streamingWorkbook == null && ++rowCount > streamingRowThreshold) {
+            switchToStreaming();
+        }
+        return sheet.createRow(rowNumber);
+    }
+
+    public boolean isStreaming() {
+        return streamingWorkbook != null;
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        getWorkbook().write(outputStream);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (streamingWorkbook != null) {
+            streamingWorkbook.dispose();
+            streamingWorkbook.close();
+        } else {
+            xssfWorkbook.close();
+        }
+    }
+
+    private Workbook getWorkbook() {
+        return streamingWorkbook == null ? xssfWorkbook : streamingWorkbook;
+    }
+
+    // rows already written stay in the XSSF sheet, SXSSF appends after them
+    private void switchToStreaming() {
+        int sheetIndex = xssfWorkbook.getSheetIndex(sheet);
+        streamingWorkbook = new SXSSFWorkbook(xssfWorkbook, rowAccessWindowSize, compressTmpFiles);
+        sheet = streamingWorkbook.getSheetAt(sheetIndex);
+    }
+}
@@ -0,0 +1,266 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Chunked pipe between the report writer and the uploader. Chunks are kept in memory while the
+// reader keeps up; once the writer waits longer than the spill timeout, the rest goes to a temp file.
+// An aborted pipe never ends normally: the reader gets the writer's failure, even when the output is closed later.
+public class SpillingPipe implements Closeable {
+    private static final Chunk END = new Chunk(null, 0, -1);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+    private final Semaphore memoryChunks;
+    private final int chunkSize;
+    private final long spillTimeoutMillis;
+    private final Path spillDirectory;
+    private final OutputStream outputStream;
+    private final InputStream inputStream;
+    private volatile IOException readerFailure;
+    private volatile IOException writerFailure;
+    private FileChannel spillChannel;
+    private Path spillFile;
+    private long spillPosition;
+
+    public SpillingPipe(int chunkSize, int memoryChunks, long spillTimeoutMillis, Path spillDirectory) {
+        this.chunkSize = chunkSize;
+        this.memoryChunks = new Semaphore(memoryChunks);
+        this.spillTimeoutMillis = spillTimeoutMillis;
+        this.spillDirectory = spillDirectory;
+        this.outputStream = new PipeOutputStream();
+        this.inputStream = new PipeInputStream();
+    }
+
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    public void abort(Throwable cause) {
+        writerFailure = new IOException("Report writing failed", cause);
+        chunks.add(new Chunk(null, 0, -1, writerFailure));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillChannel != null) {
+            spillChannel.close();
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    private void putChunk(byte[] data, int length) throws IOException {
+        if (readerFailure != null) {
+            throw new IOException("Upload aborted", readerFailure);
+        }
+        if (spillChannel == null) {
+            try {
+                if (memoryChunks.tryAcquire(spillTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    chunks.add(new Chunk(data, length, -1));
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for upload");
+            }
+            Files.createDirectories(spillDirectory);
+            spillFile = Files.createTempFile(spillDirectory, "upload", ".spill");
+            spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            log.info("Upload is slower than report writing, spilling to {}", spillFile);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        long position = spillPosition;
+        while (buffer.hasRemaining()) {
+            position += spillChannel.write(buffer, position);
+        }
+        chunks.add(new Chunk(null, length, spillPosition));
+        spillPosition = position;
+    }
+
+    private static class Chunk {
+        private final byte[] data;
+        private final int length;
+        private final long spillOffset;
+        private final IOException failure;
+
+        Chunk(byte[] data, int length, long spillOffset) {
+            this(data, length, spillOffset, null);
+        }
+
+        Chunk(byte[] data, int length, long spillOffset, IOException failure) {
+            this.data = data;
+            this.length = length;
+            this.spillOffset = spillOffset;
+            this.failure = failure;
+        }
+    }
+
+    private class PipeOutputStream extends OutputStream {
+        private byte[] buffer = new byte[chunkSize];
+        private int count;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flushBuffer();
+                }
+                int length = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, length);
+                count += length;
+                off += length;
+                len -= length;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (writerFailure != null) {
+                return;
+            }
+            if (count > 0) {
+                flushBuffer();
+            }
+            chunks.add(END);
+        }
+
+        private void flushBuffer() throws IOException {
+            putChunk(buffer, count);
+            if (spillChannel == null) {
+                buffer = new byte[chunkSize];
+            }
+            count = 0;
+        }
+    }
+
+    private class PipeInputStream extends InputStream {
+        private final byte[] spillBuffer = new byte[chunkSize];
+        private byte[] current;
+        private int position;
+        private int limit;
+        private boolean memoryChunk;
+        private boolean finished;
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int length = Math.min(len, limit - position);
+            System.arraycopy(current, position, b, off, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public void close() {
+            if (!finished) {
+                readerFailure = new IOException("Upload stream closed before report was written");
+            }
+        }
+
+        private boolean fill() throws IOException {
+            while (position == limit) {
+                if (finished) {
+                    return false;
+                }
+                releaseCurrent();
+                Chunk chunk = takeChunk();
+                if (chunk.failure != null) {
+                    readerFailure = chunk.failure;
+                    throw chunk.failure;
+                }
+                if (chunk == END) {
+                    finished = true;
+                    return false;
+                }
+                if (chunk.spillOffset < 0) {
+                    current = chunk.data;
+                    memoryChunk = true;
+                } else {
+                    readSpilled(chunk);
+                    current = spillBuffer;
+                }
+                position = 0;
+                limit = chunk.length;
+            }
+            return true;
+        }
+
+        private void releaseCurrent() {
+            if (memoryChunk) {
+                memoryChunks.release();
+                memoryChunk = false;
+            }
+        }
+
+        private Chunk takeChunk() throws IOException {
+            try {
+                return chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                readerFailure = new InterruptedIOException("Interrupted while waiting for report data");
+                throw readerFailure;
+            }
+        }
+
+        private void readSpilled(Chunk chunk) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(spillBuffer, 0, chunk.length);
+            long position = chunk.spillOffset;
+            while (buffer.hasRemaining()) {
+                int read = spillChannel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of spill file " + spillFile);
+                }
+                position += read;
+            }
+        }
+    }
+}
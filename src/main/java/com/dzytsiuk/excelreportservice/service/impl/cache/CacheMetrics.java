@@ -0,0 +1,14 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import lombok.Data;
+
+@Data
+public class CacheMetrics {
+    private long hits;
+    private long misses;
+    private long deltaRefreshes;
+    private long fullReloads;
+    private long rowsFetched;
+    private int size;
+    private long stalenessMillis;
+}
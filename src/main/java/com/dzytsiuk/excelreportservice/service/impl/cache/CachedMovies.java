@@ -0,0 +1,13 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import lombok.Data;
+
+import java.util.List;
+
+// the movies of a range and the version they are of, taken from one snapshot
+@Data
+public class CachedMovies {
+    private final List<ReportMovie> movies;
+    private final MovieDataVersion dataVersion;
+}
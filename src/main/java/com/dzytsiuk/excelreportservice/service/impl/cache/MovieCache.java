@@ -0,0 +1,251 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.service.impl.client.MovielandClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class MovieCache {
+    private static final Comparator<ReportMovie> ADD_DATE_ORDER = Comparator
+            .comparing(ReportMovie::getAddDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(ReportMovie::getId);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final MovielandClient movielandClient;
+    private final Clock clock;
+    private final long ttlMillis;
+    private final long fullReloadIntervalMillis;
+    private final int maxSize;
+    private final int fetchSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong deltaRefreshes = new AtomicLong();
+    private final AtomicLong fullReloads = new AtomicLong();
+    private final AtomicLong rowsFetched = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private volatile long refreshedAt;
+    private long fullReloadedAt;
+
+    public MovieCache(MovielandClient movielandClient, Clock clock,
+                      @Value("${cache.movie.ttl}") Long ttlMillis,
+                      @Value("${cache.movie.full-reload-interval}") Long fullReloadIntervalMillis,
+                      @Value("${cache.movie.max-size}") Integer maxSize,
+                      @Value("${cache.movie.fetch-size}") Integer fetchSize) {
+        this.movielandClient = movielandClient;
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.fullReloadIntervalMillis = fullReloadIntervalMillis;
+        this.maxSize = maxSize;
+        this.fetchSize = fetchSize;
+    }
+
+    // all movies of the range in one snapshot, refreshed first if stale. A report pages over this view, so a refresh
+    // for another report cannot shift its pages. Returns null when the catalogue cannot be served from cache
+    public List<ReportMovie> getMovies(LocalDateTime fromDate, LocalDateTime toDate) {
+        CachedMovies cachedMovies = getCachedMovies(fromDate, toDate);
+        return cachedMovies == null ? null : cachedMovies.getMovies();
+    }
+
+    // as above with the version of the snapshot the movies were taken from, a report is cached under it
+    public CachedMovies getCachedMovies(LocalDateTime fromDate, LocalDateTime toDate) {
+        refreshIfStale();
+        Snapshot current = snapshot;
+        if (current == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        MovieDataVersion dataVersion = getDataVersion(current, fromDate, toDate);
+        List<ReportMovie> movies = Arrays.asList(current.movies).subList(dataVersion.getFromIndex(), dataVersion.getToIndex());
+        return new CachedMovies(Collections.unmodifiableList(movies), dataVersion);
+    }
+
+    public LocalDateTime getDataVersion() {
+        Snapshot current = snapshot;
+        return current == null ? null : current.maxLastModifiedDate;
+    }
+
+    // the movies a report on the range would read now, without refreshing so it does not wait for Movieland;
+    // null while the snapshot is stale or when the catalogue cannot be served from cache
+    public MovieDataVersion getCurrentDataVersion(LocalDateTime fromDate, LocalDateTime toDate) {
+        if (clock.millis() - refreshedAt >= ttlMillis) {
+            return null;
+        }
+        return getDataVersion(snapshot, fromDate, toDate);
+    }
+
+    private static MovieDataVersion getDataVersion(Snapshot current, LocalDateTime fromDate, LocalDateTime toDate) {
+        if (current == null) {
+            return null;
+        }
+        int from = fromDate == null ? 0 : current.lowerBound(fromDate);
+        int to = toDate == null ? current.movies.length : current.upperBound(toDate);
+        if (from >= to) {
+            from = 0;
+            to = 0;
+        }
+        return new MovieDataVersion(current.maxLastModifiedDate, current.movies.length, from, to);
+    }
+
+    public CacheMetrics getMetrics() {
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.setHits(hits.get());
+        metrics.setMisses(misses.get());
+        metrics.setDeltaRefreshes(deltaRefreshes.get());
+        metrics.setFullReloads(fullReloads.get());
+        metrics.setRowsFetched(rowsFetched.get());
+        Snapshot current = snapshot;
+        metrics.setSize(current == null ? 0 : current.movies.length);
+        metrics.setStalenessMillis(current == null ? 0 : clock.millis() - refreshedAt);
+        return metrics;
+    }
+
+    private void refreshIfStale() {
+        if (snapshot != null && clock.millis() - refreshedAt < ttlMillis) {
+            return;
+        }
+        synchronized (this) {
+            long now = clock.millis();
+            if (snapshot != null && now - refreshedAt < ttlMillis) {
+                return;
+            }
+            try {
+                if (snapshot == null || now - fullReloadedAt >= fullReloadIntervalMillis) {
+                    snapshot = fullReload();
+                    fullReloadedAt = now;
+                } else {
+                    snapshot = deltaRefresh(snapshot);
+                }
+                refreshedAt = now;
+            } catch (CatalogueTooLargeException e) {
+                log.warn("Movie catalogue exceeds {} movies, serving movies from Movieland", maxSize);
+                snapshot = null;
+                fullReloadedAt = now;
+                refreshedAt = now;
+            }
+        }
+    }
+
+    private Snapshot fullReload() {
+        log.info("Reloading movie cache");
+        fullReloads.incrementAndGet();
+        Map<Integer, ReportMovie> movies = new HashMap<>();
+        List<ReportMovie> page;
+        int pageNumber = 1;
+        do {
+            page = movielandClient.getMovies(pageNumber++, fetchSize, null, null);
+            merge(movies, page);
+        } while (page.size() == fetchSize);
+        return new Snapshot(movies);
+    }
+
+    private Snapshot deltaRefresh(Snapshot current) {
+        deltaRefreshes.incrementAndGet();
+        Map<Integer, ReportMovie> movies = null;
+        int changed = 0;
+        List<ReportMovie> page;
+        int pageNumber = 1;
+        do {
+            // deletions are only picked up by the next full reload
+            page = movielandClient.getModifiedMovies(pageNumber++, fetchSize, current.maxLastModifiedDate);
+            if (!page.isEmpty() && movies == null) {
+                movies = current.toMap();
+            }
+            if (movies != null) {
+                merge(movies, page);
+                changed += page.size();
+            }
+        } while (page.size() == fetchSize);
+        if (movies == null) {
+            return current;
+        }
+        log.info("Movie cache refreshed with {} changed movies", changed);
+        return new Snapshot(movies);
+    }
+
+    private void merge(Map<Integer, ReportMovie> movies, List<ReportMovie> page) {
+        rowsFetched.addAndGet(page.size());
+        for (ReportMovie movie : page) {
+            movies.put(movie.getId(), movie);
+        }
+        if (movies.size() > maxSize) {
+            throw new CatalogueTooLargeException();
+        }
+    }
+
+    private static class CatalogueTooLargeException extends RuntimeException {
+    }
+
+    private static class Snapshot {
+        private final ReportMovie[] movies;
+        private final LocalDateTime maxLastModifiedDate;
+
+        Snapshot(Map<Integer, ReportMovie> moviesById) {
+            List<ReportMovie> sorted = new ArrayList<>(moviesById.values());
+            sorted.sort(ADD_DATE_ORDER);
+            this.movies = sorted.toArray(new ReportMovie[0]);
+            LocalDateTime maxLastModified = null;
+            for (ReportMovie movie : movies) {
+                LocalDateTime lastModified = movie.getLastModifiedDate();
+                if (lastModified != null && (maxLastModified == null || lastModified.isAfter(maxLastModified))) {
+                    maxLastModified = lastModified;
+                }
+            }
+            this.maxLastModifiedDate = maxLastModified;
+        }
+
+        Map<Integer, ReportMovie> toMap() {
+            Map<Integer, ReportMovie> moviesById = new HashMap<>();
+            for (ReportMovie movie : movies) {
+                moviesById.put(movie.getId(), movie);
+            }
+            return moviesById;
+        }
+
+        // first index with addDate >= date
+        int lowerBound(LocalDateTime date) {
+            int low = 0;
+            int high = movies.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                LocalDateTime addDate = movies[middle].getAddDate();
+                if (addDate == null || addDate.isBefore(date)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // first index with addDate > date
+        int upperBound(LocalDateTime date) {
+            int low = 0;
+            int high = movies.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                LocalDateTime addDate = movies[middle].getAddDate();
+                if (addDate == null || !addDate.isAfter(date)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
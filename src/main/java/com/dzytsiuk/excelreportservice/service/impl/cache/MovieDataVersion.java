@@ -0,0 +1,29 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// The movies a date range selects in one version of the cached catalogue. The latest lastModifiedDate and the size
+// tell versions apart, the size picks up deletions of a full reload. Ranges selecting the same movies are equal.
+@Data
+public class MovieDataVersion {
+    private final LocalDateTime lastModifiedDate;
+    private final int size;
+    private final int fromIndex;
+    private final int toIndex;
+
+    // a report checkpoint records the version its pages were read from
+    @JsonCreator
+    public MovieDataVersion(@JsonProperty("lastModifiedDate") LocalDateTime lastModifiedDate,
+                            @JsonProperty("size") int size,
+                            @JsonProperty("fromIndex") int fromIndex,
+                            @JsonProperty("toIndex") int toIndex) {
+        this.lastModifiedDate = lastModifiedDate;
+        this.size = size;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+    }
+}
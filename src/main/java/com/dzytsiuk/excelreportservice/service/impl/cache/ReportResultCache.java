@@ -0,0 +1,362 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Urls of generated reports by what they were generated from: type, format and the movies the range selects in the
+// current version of the movie cache. A repeated request gets the url of the stored report instead of a new one.
+// Stored reports are addressed by the SHA-256 of their content, results with equal content share one of them.
+// The least recently used results are evicted once there are more than max-entries of them or the reports they
+// point to hold more than max-size bytes; a report no result points to any more is handed out by takeReleased
+// to be deleted from storage.
+// The index, in access order and with the reports not deleted yet, is written to index-file by flush in the same
+// way as a checkpoint and read on start. It is written off the lock lookups take, a failed write is logged and
+// left to the next flush.
+@Component
+public class ReportResultCache {
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final MovieCache movieCache;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxSize;
+    private final Path indexFile;
+    private final LinkedHashMap<ResultKey, Artifact> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Artifact> artifacts = new HashMap<>();
+    // reports no result points to, they stay in the index until they are deleted
+    private final Map<String, Artifact> released = new LinkedHashMap<>();
+    private final Map<String, Artifact> deleting = new HashMap<>();
+    // the index file is written by one flush at a time
+    private final Object indexLock = new Object();
+    private long changes;
+    private long savedChanges;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // the data version comes from the movie cache and is recorded in the report checkpoint, without both
+    // nothing is cached
+    public ReportResultCache(MovieCache movieCache, ObjectMapper objectMapper,
+                             @Value("${cache.report.enabled}") boolean enabled,
+                             @Value("${cache.movie.enabled}") boolean movieCacheEnabled,
+                             @Value("${report.checkpoint.enabled}") boolean checkpointEnabled,
+                             @Value("${cache.report.max-entries}") Integer maxEntries,
+                             @Value("${cache.report.max-size}") Long maxSize,
+                             @Value("${cache.report.index-file}") String indexFile) {
+        this.movieCache = movieCache;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled && movieCacheEnabled && checkpointEnabled;
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+        this.indexFile = Paths.get(indexFile).toAbsolutePath().normalize();
+        if (this.enabled) {
+            load();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // the key of a report generated from the movies of the data version. null when the report cannot be cached:
+    // users have no data version, nor have movies not read from one snapshot of the movie cache
+    public ResultKey getKey(ReportRequest reportRequest, MovieDataVersion dataVersion) {
+        ReportType reportType = reportRequest.getReportType();
+        if (!enabled || dataVersion == null || reportType == null || reportType == ReportType.TOP_ACTIVE_USERS) {
+            return null;
+        }
+        return new ResultKey(reportType, ReportFormat.of(reportRequest), dataVersion);
+    }
+
+    // the key a report generated now would get, for the hit check on the listener thread. The movie cache is not
+    // refreshed, the key is null while it is stale
+    public ResultKey getCurrentKey(ReportRequest reportRequest) {
+        if (!enabled) {
+            return null;
+        }
+        ReportParameter reportParameter = reportRequest.getReportParameter();
+        LocalDateTime fromDate = reportParameter == null ? null : reportParameter.getFromDate();
+        LocalDateTime toDate = reportParameter == null ? null : reportParameter.getToDate();
+        return getKey(reportRequest, movieCache.getCurrentDataVersion(fromDate, toDate));
+    }
+
+    // url of the report generated for the key, null when there is none
+    public synchronized String get(ResultKey resultKey) {
+        if (resultKey == null) {
+            return null;
+        }
+        Artifact artifact = results.get(resultKey);
+        if (artifact == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        changes++;
+        return artifact.url;
+    }
+
+    // url of the stored report with this content, null when there is none. It is recorded for the key at once,
+    // so it cannot be evicted and deleted before the report gets its url
+    public synchronized String putIfStored(ResultKey resultKey, String contentHash) {
+        Artifact artifact = contentHash == null ? null : artifacts.get(contentHash);
+        if (artifact == null) {
+            return null;
+        }
+        if (resultKey != null) {
+            record(resultKey, artifact);
+        }
+        return artifact.url;
+    }
+
+    public synchronized void put(ResultKey resultKey, String contentHash, long reportSize, String url) {
+        if (resultKey == null || contentHash == null) {
+            return;
+        }
+        Artifact artifact = artifacts.get(contentHash);
+        if (artifact == null) {
+            artifact = new Artifact(contentHash, resultKey.getReportFormat(), reportSize, url);
+            artifacts.put(contentHash, artifact);
+            size += reportSize;
+            // stored again before it was deleted, the report has to stay
+            released.remove(contentHash);
+        }
+        record(resultKey, artifact);
+    }
+
+    // the stored reports no result points to any more since the last call, for the caller to delete and report
+    // as deleted. One that is not stays in the index and is handed out again after a restart
+    public synchronized List<Artifact> takeReleased() {
+        if (released.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Artifact> taken = new ArrayList<>(released.values());
+        for (Artifact artifact : taken) {
+            deleting.put(artifact.contentHash, artifact);
+        }
+        released.clear();
+        return taken;
+    }
+
+    public synchronized void deleted(Artifact artifact) {
+        if (deleting.remove(artifact.contentHash) != null) {
+            changes++;
+        }
+    }
+
+    // writes the index if it changed since the last flush
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (indexLock) {
+            ResultCacheIndex index;
+            long indexChanges;
+            synchronized (this) {
+                if (changes == savedChanges) {
+                    return;
+                }
+                index = createIndex();
+                indexChanges = changes;
+            }
+            Path tmpFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(indexFile.getParent());
+                objectMapper.writeValue(tmpFile.toFile(), index);
+                Files.move(tmpFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                log.warn("Cannot save report result cache to {}, saving it with the next flush", indexFile, e);
+                return;
+            }
+            synchronized (this) {
+                savedChanges = indexChanges;
+            }
+        }
+    }
+
+    public synchronized ResultCacheMetrics getMetrics() {
+        ResultCacheMetrics metrics = new ResultCacheMetrics();
+        metrics.setHits(hits);
+        metrics.setMisses(misses);
+        metrics.setEvictions(evictions);
+        metrics.setEntries(results.size());
+        metrics.setArtifacts(artifacts.size());
+        metrics.setSize(size);
+        return metrics;
+    }
+
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hash.toString();
+    }
+
+    private void record(ResultKey resultKey, Artifact artifact) {
+        artifact.references++;
+        Artifact previous = results.put(resultKey, artifact);
+        if (previous != null) {
+            release(previous);
+        }
+        evict();
+        changes++;
+    }
+
+    // access order, the first result is the least recently used
+    private void evict() {
+        Iterator<Artifact> iterator = results.values().iterator();
+        while ((results.size() > maxEntries || size > maxSize) && iterator.hasNext()) {
+            Artifact artifact = iterator.next();
+            iterator.remove();
+            release(artifact);
+            evictions++;
+        }
+    }
+
+    private void release(Artifact artifact) {
+        if (--artifact.references == 0) {
+            artifacts.remove(artifact.contentHash);
+            size -= artifact.size;
+            released.put(artifact.contentHash, artifact);
+        }
+    }
+
+    // least recently used first
+    private ResultCacheIndex createIndex() {
+        ResultCacheIndex index = new ResultCacheIndex();
+        for (Map.Entry<ResultKey, Artifact> result : results.entrySet()) {
+            ResultKey resultKey = result.getKey();
+            ResultCacheEntry entry = createEntry(result.getValue());
+            entry.setReportType(resultKey.getReportType());
+            entry.setLastModifiedDate(resultKey.getDataVersion().getLastModifiedDate());
+            entry.setMovies(resultKey.getDataVersion().getSize());
+            entry.setFromIndex(resultKey.getDataVersion().getFromIndex());
+            entry.setToIndex(resultKey.getDataVersion().getToIndex());
+            index.getResults().add(entry);
+        }
+        for (Artifact artifact : released.values()) {
+            index.getReleased().add(createEntry(artifact));
+        }
+        for (Artifact artifact : deleting.values()) {
+            index.getReleased().add(createEntry(artifact));
+        }
+        return index;
+    }
+
+    private static ResultCacheEntry createEntry(Artifact artifact) {
+        ResultCacheEntry entry = new ResultCacheEntry();
+        entry.setReportFormat(artifact.reportFormat);
+        entry.setContentHash(artifact.contentHash);
+        entry.setReportSize(artifact.size);
+        entry.setUrl(artifact.url);
+        return entry;
+    }
+
+    // results of a lost index are never evicted, their reports stay in storage
+    private void load() {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        ResultCacheIndex index;
+        try {
+            index = objectMapper.readValue(indexFile.toFile(), ResultCacheIndex.class);
+        } catch (IOException e) {
+            log.warn("Cannot read report result cache from {}, starting empty", indexFile, e);
+            return;
+        }
+        for (ResultCacheEntry entry : index.getResults()) {
+            Artifact artifact = artifacts.computeIfAbsent(entry.getContentHash(), contentHash -> {
+                size += entry.getReportSize();
+                return createArtifact(entry);
+            });
+            artifact.references++;
+            results.put(new ResultKey(entry.getReportType(), entry.getReportFormat(), new MovieDataVersion(
+                    entry.getLastModifiedDate(), entry.getMovies(), entry.getFromIndex(), entry.getToIndex())), artifact);
+        }
+        for (ResultCacheEntry entry : index.getReleased()) {
+            if (!artifacts.containsKey(entry.getContentHash())) {
+                released.put(entry.getContentHash(), createArtifact(entry));
+            }
+        }
+        savedChanges = changes;
+        log.info("Report result cache read from {}: {} results of {} reports, {} reports to delete", indexFile,
+                results.size(), artifacts.size(), released.size());
+    }
+
+    private static Artifact createArtifact(ResultCacheEntry entry) {
+        return new Artifact(entry.getContentHash(), entry.getReportFormat(), entry.getReportSize(), entry.getUrl());
+    }
+
+    @Data
+    public static class ResultKey {
+        private final ReportType reportType;
+        private final ReportFormat reportFormat;
+        private final MovieDataVersion dataVersion;
+    }
+
+    public static class Artifact {
+        private final String contentHash;
+        private final ReportFormat reportFormat;
+        private final long size;
+        private final String url;
+        private int references;
+
+        private Artifact(String contentHash, ReportFormat reportFormat, long size, String url) {
+            this.contentHash = contentHash;
+            this.reportFormat = reportFormat;
+            this.size = size;
+            this.url = url;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public ReportFormat getReportFormat() {
+            return reportFormat;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// one result of the index file: its key and the stored report it points to
+@Data
+public class ResultCacheEntry {
+    private ReportType reportType;
+    private ReportFormat reportFormat;
+    private LocalDateTime lastModifiedDate;
+    private int movies;
+    private int fromIndex;
+    private int toIndex;
+    private String contentHash;
+    private long reportSize;
+    private String url;
+}
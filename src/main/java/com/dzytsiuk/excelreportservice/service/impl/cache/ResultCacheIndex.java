@@ -0,0 +1,14 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the index file: the results least recently used first and the stored reports waiting to be deleted,
+// of which only the report fields are set
+@Data
+public class ResultCacheIndex {
+    private List<ResultCacheEntry> results = new ArrayList<>();
+    private List<ResultCacheEntry> released = new ArrayList<>();
+}
@@ -0,0 +1,13 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import lombok.Data;
+
+@Data
+public class ResultCacheMetrics {
+    private long hits;
+    private long misses;
+    private long evictions;
+    private int entries;
+    private int artifacts;
+    private long size;
+}
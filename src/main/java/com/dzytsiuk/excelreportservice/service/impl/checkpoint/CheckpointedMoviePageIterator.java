@@ -0,0 +1,130 @@
+package com.dzytsiuk.excelreportservice.service.impl.checkpoint;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import com.dzytsiuk.excelreportservice.service.impl.cache.MovieDataVersion;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePage;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePageIterator;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePageIteratorFactory;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+// Replays the pages an earlier attempt spilled to disk, then fetches from the first page it did not finish.
+// Fetched rows are spilled before they are handed out and a page is counted in the checkpoint once all its
+// rows are on disk, so a failure loses at most the page that was being fetched.
+// The checkpoint records the version of the movie cache the pages were read from. Pages fetched from another
+// version than the spilled ones leave it without one, so a report mixing two versions is not cached.
+public class CheckpointedMoviePageIterator implements MoviePageIterator {
+    private final ReportCheckpointStore checkpointStore;
+    private final String reportId;
+    private final MoviePageIteratorFactory moviePageIteratorFactory;
+    private final ReportParameter reportParameter;
+    private final int fetchSize;
+    private final ReportCheckpoint checkpoint;
+    // pages spilled before this attempt, the checkpoint moves on while pages are fetched
+    private final int spilledPages;
+    private final boolean fetchComplete;
+    private int replayedPages;
+    private MoviePageIterator fetchedPages;
+    private MoviePageFile pageFile;
+    private int pageRows;
+
+    public CheckpointedMoviePageIterator(ReportCheckpointStore checkpointStore, String reportId,
+                                         MoviePageIteratorFactory moviePageIteratorFactory,
+                                         ReportParameter reportParameter) {
+        this.checkpointStore = checkpointStore;
+        this.reportId = reportId;
+        this.moviePageIteratorFactory = moviePageIteratorFactory;
+        this.reportParameter = reportParameter;
+        this.fetchSize = moviePageIteratorFactory.getFetchSize();
+        this.checkpoint = checkpointStore.load(reportId);
+        this.spilledPages = checkpoint.getFetchedPages();
+        this.fetchComplete = checkpoint.isFetchComplete();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (replayedPages < spilledPages) {
+            return true;
+        }
+        if (fetchComplete) {
+            return false;
+        }
+        if (fetchedPages == null) {
+            MovieService movieService = moviePageIteratorFactory.forReport(reportParameter);
+            recordDataVersion(movieService.getDataVersion());
+            fetchedPages = moviePageIteratorFactory.create(movieService, reportParameter, spilledPages + 1);
+        }
+        return fetchedPages.hasNext();
+    }
+
+    @Override
+    public MoviePage next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (replayedPages < spilledPages) {
+            int page = ++replayedPages;
+            return new MoviePage(page, (page - 1) * fetchSize, read(page));
+        }
+        MoviePage moviePage = fetchedPages.next();
+        try {
+            spill(moviePage);
+        } catch (IOException e) {
+            throw new RuntimeException("Error spilling page " + moviePage.getPage() + " of report " + reportId, e);
+        }
+        return moviePage;
+    }
+
+    @Override
+    public void close() {
+        if (fetchedPages != null) {
+            fetchedPages.close();
+        }
+        if (pageFile != null) {
+            try {
+                pageFile.close();
+            } catch (IOException e) {
+                // the page is fetched again anyway
+            }
+            pageFile = null;
+        }
+    }
+
+    private void recordDataVersion(MovieDataVersion dataVersion) {
+        if (spilledPages > 0 && !Objects.equals(checkpoint.getDataVersion(), dataVersion)) {
+            dataVersion = null;
+        }
+        checkpoint.setDataVersion(dataVersion);
+        checkpointStore.save(reportId, checkpoint);
+    }
+
+    private MovieColumns read(int page) {
+        try {
+            return MoviePageFile.read(checkpointStore.getPageFile(reportId, page), fetchSize);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading page " + page + " of report " + reportId, e);
+        }
+    }
+
+    // a page arrives whole or, when streaming, in chunks; it is complete at fetchSize rows or when it is the last
+    private void spill(MoviePage moviePage) throws IOException {
+        if (pageFile == null) {
+            pageFile = new MoviePageFile(checkpointStore.getPageFile(reportId, moviePage.getPage()));
+        }
+        pageFile.append(moviePage.getMovies());
+        pageRows += moviePage.getMovies().size();
+        boolean lastPage = !fetchedPages.hasNext();
+        if (pageRows >= fetchSize || lastPage) {
+            pageFile.commit();
+            pageFile = null;
+            pageRows = 0;
+            checkpoint.setFetchedPages(moviePage.getPage());
+            checkpoint.setFetchComplete(lastPage);
+            checkpointStore.save(reportId, checkpoint);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.dzytsiuk.excelreportservice.service.impl.checkpoint;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// The movies of one fetched page in fetch order. Rows are appended to a .part file that only gets the page
+// file name on commit, a page file without its end marker is rejected on read.
+public class MoviePageFile implements Closeable {
+    private static final byte ROW = 1;
+    private static final byte END = 0;
+    private static final int NULL_STRING = -1;
+
+    private final Path file;
+    private final Path partFile;
+    private final DataOutputStream outputStream;
+    private boolean committed;
+
+    public MoviePageFile(Path file) throws IOException {
+        this.file = file;
+        this.partFile = file.resolveSibling(file.getFileName() + ".part");
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partFile)));
+    }
+
+    public void append(MovieColumns movies) throws IOException {
+        for (int row = 0; row < movies.size(); row++) {
+            outputStream.writeByte(ROW);
+            outputStream.writeInt(movies.getId(row));
+            writeString(movies.getNameNative(row));
+            writeString(movies.getDescription(row));
+            writeString(movies.getGenres(row));
+            outputStream.writeDouble(movies.hasPrice(row) ? movies.getPrice(row) : Double.NaN);
+            outputStream.writeDouble(movies.hasRating(row) ? movies.getRating(row) : Double.NaN);
+            outputStream.writeBoolean(movies.hasAddDate(row));
+            outputStream.writeLong(movies.getAddDateMillis(row));
+            outputStream.writeBoolean(movies.hasLastModifiedDate(row));
+            outputStream.writeLong(movies.getLastModifiedDateMillis(row));
+            outputStream.writeInt(movies.getReviewCount(row));
+        }
+    }
+
+    public void commit() throws IOException {
+        outputStream.writeByte(END);
+        outputStream.close();
+        Files.move(partFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        committed = true;
+    }
+
+    // drops the rows of a page that was not committed
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            outputStream.close();
+            Files.deleteIfExists(partFile);
+        }
+    }
+
+    public static MovieColumns read(Path file, int capacity) throws IOException {
+        MovieColumns movies = new MovieColumns(capacity);
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (inputStream.readByte() == ROW) {
+                int row = movies.addRow();
+                movies.setId(row, inputStream.readInt());
+                movies.setNameNative(row, readString(inputStream));
+                movies.setDescription(row, readString(inputStream));
+                movies.setGenres(row, readString(inputStream));
+                movies.setPrice(row, inputStream.readDouble());
+                movies.setRating(row, inputStream.readDouble());
+                boolean hasAddDate = inputStream.readBoolean();
+                long addDateMillis = inputStream.readLong();
+                if (hasAddDate) {
+                    movies.setAddDateMillis(row, addDateMillis);
+                }
+                boolean hasLastModifiedDate = inputStream.readBoolean();
+                long lastModifiedDateMillis = inputStream.readLong();
+                if (hasLastModifiedDate) {
+                    movies.setLastModifiedDateMillis(row, lastModifiedDateMillis);
+                }
+                movies.setReviewCount(row, inputStream.readInt());
+            }
+        }
+        return movies;
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            outputStream.writeInt(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        int length = inputStream.readInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        inputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
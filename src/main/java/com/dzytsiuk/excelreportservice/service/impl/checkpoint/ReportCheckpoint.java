@@ -0,0 +1,19 @@
+package com.dzytsiuk.excelreportservice.service.impl.checkpoint;
+
+import com.dzytsiuk.excelreportservice.service.impl.cache.MovieDataVersion;
+import lombok.Data;
+
+@Data
+public class ReportCheckpoint {
+    // pages 1..fetchedPages are spilled to disk and are not fetched again
+    private int fetchedPages;
+    private boolean fetchComplete;
+    // all fetched pages were read from this version of the movie cache, null when they were not
+    private MovieDataVersion dataVersion;
+    // the report file is complete once it has reportSize bytes
+    private boolean generated;
+    private long reportSize;
+    // an upload of the report file of this size and hash was started, the stored copy is a prefix of that file
+    private long uploadSize;
+    private String uploadHash;
+}
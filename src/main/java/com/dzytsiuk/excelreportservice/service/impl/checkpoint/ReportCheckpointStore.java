@@ -0,0 +1,88 @@
+package com.dzytsiuk.excelreportservice.service.impl.checkpoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// One directory per report holding its checkpoint, the spilled pages and the generated file. Everything is
+// written under a temporary name and moved into place, so a crash leaves either the old or the new state.
+@Component
+public class ReportCheckpointStore {
+    private static final String CHECKPOINT_FILE = "checkpoint.json";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+
+    public ReportCheckpointStore(ObjectMapper objectMapper, @Value("${report.checkpoint.enabled}") boolean enabled,
+                                 @Value("${report.checkpoint.directory}") String directory) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ReportCheckpoint load(String reportId) {
+        Path file = getReportDirectory(reportId).resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return new ReportCheckpoint();
+        }
+        try {
+            return objectMapper.readValue(file.toFile(), ReportCheckpoint.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading checkpoint of report " + reportId, e);
+        }
+    }
+
+    public void save(String reportId, ReportCheckpoint checkpoint) {
+        Path file = getReportDirectory(reportId).resolve(CHECKPOINT_FILE);
+        Path tmpFile = file.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            objectMapper.writeValue(tmpFile.toFile(), checkpoint);
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving checkpoint of report " + reportId, e);
+        }
+    }
+
+    public Path getPageFile(String reportId, int page) throws IOException {
+        return Files.createDirectories(getReportDirectory(reportId)).resolve("page-" + page);
+    }
+
+    public Path getReportFile(String reportId, String extension) throws IOException {
+        return Files.createDirectories(getReportDirectory(reportId)).resolve("report." + extension);
+    }
+
+    public void delete(String reportId) {
+        Path reportDirectory = getReportDirectory(reportId);
+        if (!Files.exists(reportDirectory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(reportDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            throw new RuntimeException("Error deleting checkpoint of report " + reportId, e);
+        }
+    }
+
+    // the id comes from the request, it must not point outside the checkpoint directory
+    private Path getReportDirectory(String reportId) {
+        Path reportDirectory = directory.resolve(reportId).normalize();
+        if (!directory.equals(reportDirectory.getParent())) {
+            throw new IllegalArgumentException("Invalid report id " + reportId);
+        }
+        return reportDirectory;
+    }
+}
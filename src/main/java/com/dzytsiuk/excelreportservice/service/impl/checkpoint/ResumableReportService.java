@@ -0,0 +1,142 @@
+package com.dzytsiuk.excelreportservice.service.impl.checkpoint;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.service.ReportGeneratorService;
+import com.dzytsiuk.excelreportservice.service.ReportStorage;
+import com.dzytsiuk.excelreportservice.service.impl.cache.ReportResultCache;
+import com.dzytsiuk.excelreportservice.service.impl.retry.RetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Generates a report into its checkpoint directory and uploads it from there, every stage retried with its own
+// backoff. Whatever a failed attempt finished is kept: a retry, a redelivery or another instance sharing the
+// checkpoint directory does not fetch spilled pages again, does not regenerate a complete file and continues
+// the upload from the size the storage already has. The upload is only continued when the checkpoint records it
+// was started for this very file, a copy stored for an earlier report of the id is replaced instead.
+// The checkpoint is dropped once the report is uploaded.
+// A report the result cache can key is uploaded under the SHA-256 of its content and recorded there, a report with
+// the content of a stored one is not uploaded. It is keyed by the version of the movie cache the checkpoint records
+// its pages were read from. Reports the cache no longer points to are deleted from storage.
+@Service
+public class ResumableReportService {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ReportGeneratorService reportGeneratorService;
+    private final ReportStorage reportStorage;
+    private final ReportCheckpointStore checkpointStore;
+    private final RetryPolicy generateRetryPolicy;
+    private final RetryPolicy uploadRetryPolicy;
+    private final ReportResultCache reportResultCache;
+
+    public ResumableReportService(ReportGeneratorService reportGeneratorService, ReportStorage reportStorage,
+                                  ReportCheckpointStore checkpointStore,
+                                  @Qualifier("generateRetryPolicy") RetryPolicy generateRetryPolicy,
+                                  @Qualifier("uploadRetryPolicy") RetryPolicy uploadRetryPolicy,
+                                  ReportResultCache reportResultCache) {
+        this.reportGeneratorService = reportGeneratorService;
+        this.reportStorage = reportStorage;
+        this.checkpointStore = checkpointStore;
+        this.generateRetryPolicy = generateRetryPolicy;
+        this.uploadRetryPolicy = uploadRetryPolicy;
+        this.reportResultCache = reportResultCache;
+    }
+
+    public boolean isEnabled() {
+        return checkpointStore.isEnabled();
+    }
+
+    public void generateAndSave(ReportRequest reportRequest) {
+        String id = reportRequest.getId();
+        Path reportFile;
+        try {
+            reportFile = checkpointStore.getReportFile(id, ReportFormat.of(reportRequest).getExtension());
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating checkpoint of report " + id, e);
+        }
+        generateRetryPolicy.execute("Generating report " + id, () -> generate(reportRequest, reportFile));
+        String contentHash = hash(reportFile, reportRequest);
+        ReportResultCache.ResultKey resultKey = reportResultCache.getKey(reportRequest,
+                checkpointStore.load(id).getDataVersion());
+        String storedUrl = reportResultCache.putIfStored(resultKey, contentHash);
+        if (storedUrl != null) {
+            reportRequest.setFtpUrl(storedUrl);
+            log.info("Report {} has the content of a stored report, not uploaded again", id);
+        } else {
+            AtomicBoolean resume = new AtomicBoolean(startUpload(id, contentHash));
+            // a retry continues what the attempt before it stored
+            uploadRetryPolicy.execute("Uploading report " + id, () -> {
+                if (resultKey == null) {
+                    reportStorage.saveAndEnrichWithUrl(reportFile, reportRequest, resume.getAndSet(true));
+                } else {
+                    reportStorage.saveArtifactAndEnrichWithUrl(reportFile, reportRequest, contentHash,
+                            resume.getAndSet(true));
+                }
+            });
+            reportResultCache.put(resultKey, contentHash, checkpointStore.load(id).getReportSize(),
+                    reportRequest.getFtpUrl());
+        }
+        deleteReleased();
+        reportResultCache.flush();
+        checkpointStore.delete(id);
+        log.info("Report {} stored. Link: {}", id, reportRequest.getFtpUrl());
+    }
+
+    // true when an upload of this file was started before, otherwise the upload is recorded before it starts
+    private boolean startUpload(String id, String contentHash) {
+        ReportCheckpoint checkpoint = checkpointStore.load(id);
+        if (contentHash.equals(checkpoint.getUploadHash()) && checkpoint.getUploadSize() == checkpoint.getReportSize()) {
+            log.info("Report {} was partly uploaded, resuming the upload", id);
+            return true;
+        }
+        checkpoint.setUploadSize(checkpoint.getReportSize());
+        checkpoint.setUploadHash(contentHash);
+        checkpointStore.save(id, checkpoint);
+        return false;
+    }
+
+    // a report that cannot be deleted only takes space, the one just stored is served anyway
+    private void deleteReleased() {
+        for (ReportResultCache.Artifact artifact : reportResultCache.takeReleased()) {
+            try {
+                reportStorage.deleteArtifact(artifact.getContentHash(), artifact.getReportFormat());
+                reportResultCache.deleted(artifact);
+            } catch (RuntimeException e) {
+                log.warn("Cannot delete evicted report {}", artifact.getContentHash(), e);
+            }
+        }
+    }
+
+    private String hash(Path reportFile, ReportRequest reportRequest) {
+        try {
+            return ReportResultCache.hash(reportFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Error hashing report " + reportRequest.getId(), e);
+        }
+    }
+
+    private void generate(ReportRequest reportRequest, Path reportFile) throws IOException {
+        String id = reportRequest.getId();
+        ReportCheckpoint checkpoint = checkpointStore.load(id);
+        if (checkpoint.isGenerated() && Files.exists(reportFile) && Files.size(reportFile) == checkpoint.getReportSize()) {
+            log.info("Report {} is already generated, resuming the upload", id);
+            return;
+        }
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(reportFile))) {
+            reportGeneratorService.generateReport(reportRequest, outputStream);
+        }
+        // the generator moved the fetch progress on
+        checkpoint = checkpointStore.load(id);
+        checkpoint.setGenerated(true);
+        checkpoint.setReportSize(Files.size(reportFile));
+        checkpointStore.save(id, checkpoint);
+    }
+}
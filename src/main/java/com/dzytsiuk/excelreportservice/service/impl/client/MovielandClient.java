@@ -1,7 +1,9 @@
 package com.dzytsiuk.excelreportservice.service.impl.client;
 
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
 import com.dzytsiuk.excelreportservice.entity.ReportMovie;
 import com.dzytsiuk.excelreportservice.entity.User;
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -16,6 +18,21 @@ public interface MovielandClient {
                                 @RequestParam(value = "fromDate", required = false) LocalDateTime fromDate,
                                 @RequestParam(value = "toDate", required = false) LocalDateTime toDate);
 
+    @GetMapping("/v1/movie/report/")
+    MovieColumns getMovieColumns(@RequestParam("page") Integer page, @RequestParam("count") Integer count,
+                                 @RequestParam(value = "fromDate", required = false) LocalDateTime fromDate,
+                                 @RequestParam(value = "toDate", required = false) LocalDateTime toDate);
+
+    // raw response, the body is streamed instead of being decoded up front
+    @GetMapping("/v1/movie/report/")
+    Response getMoviesResponse(@RequestParam("page") Integer page, @RequestParam("count") Integer count,
+                               @RequestParam(value = "fromDate", required = false) LocalDateTime fromDate,
+                               @RequestParam(value = "toDate", required = false) LocalDateTime toDate);
+
+    @GetMapping("/v1/movie/report/")
+    List<ReportMovie> getModifiedMovies(@RequestParam("page") Integer page, @RequestParam("count") Integer count,
+                                        @RequestParam("modifiedFrom") LocalDateTime modifiedFrom);
+
     @GetMapping("/v1/user/top")
     List<User> getUsers();
 }
@@ -0,0 +1,31 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+
+public class ColumnsMovieReader implements MovieReader {
+    private final MovieColumns movies;
+    private int position;
+
+    public ColumnsMovieReader(MovieColumns movies) {
+        this.movies = movies;
+    }
+
+    @Override
+    public int read(MovieColumns buffer) {
+        int read = 0;
+        while (position < movies.size() && buffer.size() < buffer.getCapacity()) {
+            buffer.copyRow(movies, position++);
+            read++;
+        }
+        return read;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return position == movies.size();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,134 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FanOutMoviePageIterator implements MoviePageIterator {
+    private static final int PENDING = 0;
+    private static final int STARTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final MovieService movieService;
+    private final ReportParameter reportParameter;
+    private final int fetchSize;
+    private final int concurrency;
+    private final Semaphore globalPermits;
+    private final ExecutorService fetchExecutor;
+    private final Deque<PageFetch> inFlight = new ArrayDeque<>();
+    private final AtomicInteger lastPage = new AtomicInteger(Integer.MAX_VALUE);
+    private int nextPage;
+    private boolean lastPageTaken;
+
+    public FanOutMoviePageIterator(MovieService movieService, ReportParameter reportParameter, int fetchSize,
+                                   int concurrency, Semaphore globalPermits, ExecutorService fetchExecutor,
+                                   int firstPage) {
+        this.movieService = movieService;
+        this.reportParameter = reportParameter;
+        this.fetchSize = fetchSize;
+        this.concurrency = concurrency;
+        this.globalPermits = globalPermits;
+        this.fetchExecutor = fetchExecutor;
+        this.nextPage = firstPage;
+        issuePages();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !lastPageTaken;
+    }
+
+    @Override
+    public MoviePage next() {
+        if (lastPageTaken) {
+            throw new NoSuchElementException();
+        }
+        MoviePage moviePage;
+        try {
+            moviePage = inFlight.poll().future.join();
+        } catch (CompletionException e) {
+            close();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Error fetching movies", cause);
+        }
+        if (moviePage.getMovies().size() < fetchSize) {
+            close();
+        } else {
+            issuePages();
+        }
+        return moviePage;
+    }
+
+    @Override
+    public void close() {
+        lastPageTaken = true;
+        for (PageFetch pageFetch : inFlight) {
+            // a fetch that has not started gives its permit back here, a started one when it ends
+            if (pageFetch.state.compareAndSet(PENDING, CANCELLED)) {
+                globalPermits.release();
+            }
+            pageFetch.future.cancel(false);
+        }
+        inFlight.clear();
+    }
+
+    // the permit is taken on the report thread before a page is submitted, so a report over the global limit
+    // waits here instead of holding a fetch thread
+    private void issuePages() {
+        while (inFlight.size() < concurrency && nextPage <= lastPage.get()) {
+            int page = nextPage++;
+            try {
+                globalPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for fetch permit", e);
+            }
+            PageFetch pageFetch = new PageFetch();
+            try {
+                pageFetch.future = CompletableFuture.supplyAsync(() -> fetch(page, pageFetch), fetchExecutor);
+            } catch (RejectedExecutionException e) {
+                globalPermits.release();
+                throw e;
+            }
+            inFlight.add(pageFetch);
+        }
+    }
+
+    private MoviePage fetch(int page, PageFetch pageFetch) {
+        if (!pageFetch.state.compareAndSet(PENDING, STARTED)) {
+            return null;
+        }
+        MovieColumns movies;
+        try {
+            // a shorter page has already been seen, nothing to fetch beyond it
+            if (page > lastPage.get()) {
+                return new MoviePage(page, (page - 1) * fetchSize, new MovieColumns(0));
+            }
+            movies = movieService.getMovieColumns(page, fetchSize, reportParameter);
+        } finally {
+            globalPermits.release();
+        }
+        if (movies.size() < fetchSize) {
+            lastPage.accumulateAndGet(page, Math::min);
+        }
+        return new MoviePage(page, (page - 1) * fetchSize, movies);
+    }
+
+    private static class PageFetch {
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private CompletableFuture<MoviePage> future;
+    }
+}
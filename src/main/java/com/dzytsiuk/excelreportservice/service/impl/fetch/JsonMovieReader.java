@@ -0,0 +1,66 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.config.MovieColumnsDeserializer;
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Pulls movies one by one from a Movieland JSON array as the writer asks for them
+public class JsonMovieReader implements MovieReader {
+    private final JsonParser jsonParser;
+    private final Closeable source;
+    private JsonToken next;
+
+    public JsonMovieReader(JsonParser jsonParser, Closeable source) {
+        this.jsonParser = jsonParser;
+        this.source = source;
+        try {
+            if (jsonParser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Expected array of movies but got " + jsonParser.getCurrentToken());
+            }
+            next = jsonParser.nextToken();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Error reading movies", e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(MovieColumns buffer) {
+        int read = 0;
+        try {
+            while (!isFinished() && buffer.size() < buffer.getCapacity()) {
+                if (next != JsonToken.START_OBJECT) {
+                    throw new IllegalStateException("Expected movie object but got " + next);
+                }
+                MovieColumnsDeserializer.readMovie(jsonParser, buffer, buffer.addRow());
+                read++;
+                next = jsonParser.nextToken();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading movies", e);
+        }
+        return read;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return next == JsonToken.END_ARRAY || next == null;
+    }
+
+    @Override
+    public void close() {
+        try (Closeable closeable = source) {
+            jsonParser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error closing movies response", e);
+        }
+    }
+}
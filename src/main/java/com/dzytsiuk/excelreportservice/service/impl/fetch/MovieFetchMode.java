@@ -0,0 +1,5 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+public enum MovieFetchMode {
+    SERIAL, PREFETCH, FAN_OUT, STREAMING
+}
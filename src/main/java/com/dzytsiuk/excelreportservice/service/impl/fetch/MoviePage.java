@@ -0,0 +1,14 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MoviePage {
+    private int page;
+    // zero based index of the first movie in the report
+    private int firstRow;
+    private MovieColumns movies;
+}
@@ -0,0 +1,9 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+public interface MoviePageIterator extends Iterator<MoviePage>, Closeable {
+    @Override
+    void close();
+}
@@ -0,0 +1,69 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+@Component
+public class MoviePageIteratorFactory {
+    private final MovieService movieService;
+    private final ExecutorService fetchExecutor;
+    private final MovieFetchMode fetchMode;
+    private final int fetchSize;
+    private final int prefetchDepth;
+    private final int fanOutConcurrency;
+    private final int streamChunkSize;
+    private final Semaphore globalFetchPermits;
+
+    public MoviePageIteratorFactory(MovieService movieService,
+                                    @Qualifier("fetchExecutor") ExecutorService fetchExecutor,
+                                    @Value("${fetch.mode.movie}") MovieFetchMode fetchMode,
+                                    @Value("${fetch.size.movie}") Integer fetchSize,
+                                    @Value("${fetch.prefetch.movie}") Integer prefetchDepth,
+                                    @Value("${fetch.concurrency.movie}") Integer fanOutConcurrency,
+                                    @Value("${fetch.concurrency.global}") Integer globalFetchConcurrency,
+                                    @Value("${fetch.stream.chunk-size.movie}") Integer streamChunkSize) {
+        this.movieService = movieService;
+        this.fetchExecutor = fetchExecutor;
+        this.fetchMode = fetchMode;
+        this.fetchSize = fetchSize;
+        this.prefetchDepth = prefetchDepth;
+        this.fanOutConcurrency = fanOutConcurrency;
+        this.globalFetchPermits = new Semaphore(globalFetchConcurrency);
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    public MoviePageIterator create(ReportParameter reportParameter) {
+        return create(forReport(reportParameter), reportParameter, 1);
+    }
+
+    // the movie source is resolved once per report, every page of the report is read from it
+    public MovieService forReport(ReportParameter reportParameter) {
+        return movieService.forReport(reportParameter);
+    }
+
+    // pages before firstPage are not fetched, a resumed report has them already
+    public MoviePageIterator create(MovieService movieService, ReportParameter reportParameter, int firstPage) {
+        if (fetchMode == MovieFetchMode.FAN_OUT) {
+            return new FanOutMoviePageIterator(movieService, reportParameter, fetchSize, fanOutConcurrency,
+                    globalFetchPermits, fetchExecutor, firstPage);
+        }
+        if (fetchMode == MovieFetchMode.PREFETCH) {
+            return new PrefetchingMoviePageIterator(movieService, reportParameter, fetchSize, prefetchDepth, fetchExecutor,
+                    firstPage);
+        }
+        if (fetchMode == MovieFetchMode.STREAMING) {
+            return new StreamingMoviePageIterator(movieService, reportParameter, fetchSize, streamChunkSize, firstPage);
+        }
+        return new SerialMoviePageIterator(movieService, reportParameter, fetchSize, firstPage);
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+}
@@ -0,0 +1,16 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+
+import java.io.Closeable;
+
+// Reads one page of movies in chunks, so a page never has to be held in memory as a whole
+public interface MovieReader extends Closeable {
+    // appends movies until the buffer is full or the page ends, returns the number of movies appended
+    int read(MovieColumns buffer);
+
+    boolean isFinished();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,91 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class PrefetchingMoviePageIterator implements MoviePageIterator {
+    private final MovieService movieService;
+    private final ReportParameter reportParameter;
+    private final int fetchSize;
+    private final int firstPage;
+    private final BlockingQueue<CompletableFuture<MoviePage>> buffer;
+    private final Future<?> producer;
+    private boolean lastPageTaken;
+
+    public PrefetchingMoviePageIterator(MovieService movieService, ReportParameter reportParameter, int fetchSize,
+                                        int prefetchDepth, ExecutorService fetchExecutor, int firstPage) {
+        this.movieService = movieService;
+        this.reportParameter = reportParameter;
+        this.fetchSize = fetchSize;
+        this.firstPage = firstPage;
+        this.buffer = new ArrayBlockingQueue<>(prefetchDepth);
+        this.producer = fetchExecutor.submit(this::produce);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !lastPageTaken;
+    }
+
+    @Override
+    public MoviePage next() {
+        if (lastPageTaken) {
+            throw new NoSuchElementException();
+        }
+        try {
+            MoviePage moviePage = buffer.take().join();
+            lastPageTaken = moviePage.getMovies().size() < fetchSize;
+            return moviePage;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for movies", e);
+        } catch (CompletionException e) {
+            lastPageTaken = true;
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Error fetching movies", cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        producer.cancel(true);
+    }
+
+    private void produce() {
+        try {
+            int page = firstPage;
+            MovieColumns movies;
+            do {
+                CompletableFuture<MoviePage> result = new CompletableFuture<>();
+                try {
+                    movies = movieService.getMovieColumns(page, fetchSize, reportParameter);
+                    result.complete(new MoviePage(page, (page - 1) * fetchSize, movies));
+                } catch (Throwable e) {
+                    // an Error too, or the consumer would wait for the page forever
+                    result.completeExceptionally(e);
+                    buffer.put(result);
+                    return;
+                }
+                buffer.put(result);
+                page++;
+            } while (movies.size() == fetchSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+
+import java.util.NoSuchElementException;
+
+public class SerialMoviePageIterator implements MoviePageIterator {
+    private final MovieService movieService;
+    private final ReportParameter reportParameter;
+    private final int fetchSize;
+    private int page;
+    private boolean lastPageFetched;
+
+    public SerialMoviePageIterator(MovieService movieService, ReportParameter reportParameter, int fetchSize,
+                                   int firstPage) {
+        this.movieService = movieService;
+        this.reportParameter = reportParameter;
+        this.fetchSize = fetchSize;
+        this.page = firstPage;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !lastPageFetched;
+    }
+
+    @Override
+    public MoviePage next() {
+        if (lastPageFetched) {
+            throw new NoSuchElementException();
+        }
+        MovieColumns movies = movieService.getMovieColumns(page, fetchSize, reportParameter);
+        lastPageFetched = movies.size() < fetchSize;
+        MoviePage moviePage = new MoviePage(page, (page - 1) * fetchSize, movies);
+        page++;
+        return moviePage;
+    }
+
+    @Override
+    public void close() {
+    }
+}
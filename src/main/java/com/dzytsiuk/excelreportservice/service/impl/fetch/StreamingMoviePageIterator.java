@@ -0,0 +1,77 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+
+import java.util.NoSuchElementException;
+
+// Hands out chunks of at most chunkSize movies decoded straight from the response body. Every chunk
+// reuses the same buffer, so it is only valid until the next call to next().
+public class StreamingMoviePageIterator implements MoviePageIterator {
+    private final MovieService movieService;
+    private final ReportParameter reportParameter;
+    private final int fetchSize;
+    private final MovieColumns buffer;
+    private MovieReader movieReader;
+    private int page;
+    private int pageRows;
+    private int firstRow;
+    private boolean lastChunkTaken;
+
+    public StreamingMoviePageIterator(MovieService movieService, ReportParameter reportParameter, int fetchSize, int chunkSize,
+                                      int firstPage) {
+        this.movieService = movieService;
+        this.reportParameter = reportParameter;
+        this.fetchSize = fetchSize;
+        this.buffer = new MovieColumns(chunkSize);
+        this.page = firstPage;
+        this.firstRow = (firstPage - 1) * fetchSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !lastChunkTaken;
+    }
+
+    @Override
+    public MoviePage next() {
+        if (lastChunkTaken) {
+            throw new NoSuchElementException();
+        }
+        if (movieReader == null) {
+            movieReader = movieService.openMovies(page, fetchSize, reportParameter);
+            pageRows = 0;
+        }
+        buffer.clear();
+        int read;
+        try {
+            read = movieReader.read(buffer);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        MoviePage chunk = new MoviePage(page, firstRow, buffer);
+        firstRow += read;
+        pageRows += read;
+        if (movieReader.isFinished()) {
+            movieReader.close();
+            movieReader = null;
+            if (pageRows < fetchSize) {
+                lastChunkTaken = true;
+            } else {
+                page++;
+            }
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() {
+        lastChunkTaken = true;
+        if (movieReader != null) {
+            movieReader.close();
+            movieReader = null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.dzytsiuk.excelreportservice.service.impl.ftp;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+public class FtpClientFactory extends BasePooledObjectFactory<FTPClient> {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final long maxLifetimeMillis;
+
+    public FtpClientFactory(String host, int port, String username, String password, long maxLifetimeMillis) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    @Override
+    public FTPClient create() throws IOException {
+        FTPClient ftpClient = new FTPClient();
+        ftpClient.connect(host, port);
+        if (!FTPReply.isPositiveCompletion(ftpClient.getReplyCode())) {
+            ftpClient.disconnect();
+            throw new IOException("Ftp server " + host + " refused connection");
+        }
+        if (!ftpClient.login(username, password)) {
+            ftpClient.disconnect();
+            throw new IOException("Cannot log in to ftp server " + host + " as " + username);
+        }
+        ftpClient.enterLocalPassiveMode();
+        ftpClient.setFileType(FTPClient.BINARY_FILE_TYPE);
+        log.info("Ftp session to {}:{} opened", host, port);
+        return ftpClient;
+    }
+
+    @Override
+    public PooledObject<FTPClient> wrap(FTPClient ftpClient) {
+        return new DefaultPooledObject<>(ftpClient);
+    }
+
+    @Override
+    public boolean validateObject(PooledObject<FTPClient> pooledObject) {
+        if (System.currentTimeMillis() - pooledObject.getCreateTime() > maxLifetimeMillis) {
+            return false;
+        }
+        FTPClient ftpClient = pooledObject.getObject();
+        try {
+            return ftpClient.isConnected() && ftpClient.sendNoOp();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void destroyObject(PooledObject<FTPClient> pooledObject) {
+        FTPClient ftpClient = pooledObject.getObject();
+        try {
+            if (ftpClient.isConnected()) {
+                ftpClient.logout();
+            }
+        } catch (IOException e) {
+            log.debug("Error logging out of ftp session", e);
+        } finally {
+            try {
+                ftpClient.disconnect();
+            } catch (IOException e) {
+                log.debug("Error disconnecting ftp session", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.dzytsiuk.excelreportservice.service.impl.ftp;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public class FtpClientPool implements Closeable {
+    private final GenericObjectPool<FTPClient> pool;
+
+    public FtpClientPool(FtpClientFactory ftpClientFactory, GenericObjectPoolConfig<FTPClient> poolConfig) {
+        this.pool = new GenericObjectPool<>(ftpClientFactory, poolConfig);
+    }
+
+    public <T> T execute(FtpCallback<T> callback) throws IOException {
+        FTPClient ftpClient = borrow();
+        T result;
+        try {
+            result = callback.doInFtp(ftpClient);
+        } catch (IOException | RuntimeException e) {
+            invalidate(ftpClient);
+            throw e;
+        }
+        pool.returnObject(ftpClient);
+        return result;
+    }
+
+    public FtpPoolMetrics getMetrics() {
+        FtpPoolMetrics metrics = new FtpPoolMetrics();
+        metrics.setActive(pool.getNumActive());
+        metrics.setIdle(pool.getNumIdle());
+        metrics.setWaiters(pool.getNumWaiters());
+        metrics.setCreated(pool.getCreatedCount());
+        metrics.setDestroyed(pool.getDestroyedCount());
+        metrics.setDestroyedByEvictor(pool.getDestroyedByEvictorCount());
+        metrics.setDestroyedByBorrowValidation(pool.getDestroyedByBorrowValidationCount());
+        metrics.setBorrowed(pool.getBorrowedCount());
+        metrics.setMeanBorrowWaitMillis(pool.getMeanBorrowWaitTimeMillis());
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    private FTPClient borrow() throws IOException {
+        try {
+            return pool.borrowObject();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Cannot obtain ftp session", e);
+        }
+    }
+
+    private void invalidate(FTPClient ftpClient) {
+        try {
+            pool.invalidateObject(ftpClient);
+        } catch (Exception e) {
+            // session is dropped from the pool anyway
+        }
+    }
+
+    public interface FtpCallback<T> {
+        T doInFtp(FTPClient ftpClient) throws IOException;
+    }
+}
@@ -0,0 +1,16 @@
+package com.dzytsiuk.excelreportservice.service.impl.ftp;
+
+import lombok.Data;
+
+@Data
+public class FtpPoolMetrics {
+    private int active;
+    private int idle;
+    private int waiters;
+    private long created;
+    private long destroyed;
+    private long destroyedByEvictor;
+    private long destroyedByBorrowValidation;
+    private long borrowed;
+    private long meanBorrowWaitMillis;
+}
@@ -0,0 +1,102 @@
+package com.dzytsiuk.excelreportservice.service.impl.metrics;
+
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Meters of the report pipeline, all tagged by report type:
+// report.stage (timer, tags stage and outcome), report.rows, report.rows.per.second, report.bytes.written, report.bytes.uploaded
+@Component
+public class ReportMetrics {
+    private static final String TYPE_TAG = "type";
+    private static final String OUTCOME_TAG = "outcome";
+
+    private final Map<ReportType, Map<ReportStage, Timer>> stageTimers = new EnumMap<>(ReportType.class);
+    private final Map<ReportType, Timer> failedTotals = new EnumMap<>(ReportType.class);
+    private final Map<ReportType, Counter> rows = new EnumMap<>(ReportType.class);
+    private final Map<ReportType, DistributionSummary> rowsPerSecond = new EnumMap<>(ReportType.class);
+    private final Map<ReportType, Counter> bytesWritten = new EnumMap<>(ReportType.class);
+    private final Map<ReportType, Counter> bytesUploaded = new EnumMap<>(ReportType.class);
+
+    public ReportMetrics(MeterRegistry meterRegistry) {
+        for (ReportType reportType : ReportType.values()) {
+            String type = reportType.getName();
+            Map<ReportStage, Timer> timers = new EnumMap<>(ReportStage.class);
+            for (ReportStage stage : ReportStage.values()) {
+                timers.put(stage, stageTimer(meterRegistry, type, stage, "success"));
+            }
+            stageTimers.put(reportType, timers);
+            failedTotals.put(reportType, stageTimer(meterRegistry, type, ReportStage.TOTAL, "failure"));
+            rows.put(reportType, Counter.builder("report.rows")
+                    .description("Rows written to reports")
+                    .tag(TYPE_TAG, type)
+                    .register(meterRegistry));
+            rowsPerSecond.put(reportType, DistributionSummary.builder("report.rows.per.second")
+                    .description("Rows per second of fetching and writing, per report")
+                    .tag(TYPE_TAG, type)
+                    .register(meterRegistry));
+            bytesWritten.put(reportType, Counter.builder("report.bytes.written")
+                    .baseUnit("bytes")
+                    .tag(TYPE_TAG, type)
+                    .register(meterRegistry));
+            bytesUploaded.put(reportType, Counter.builder("report.bytes.uploaded")
+                    .baseUnit("bytes")
+                    .tag(TYPE_TAG, type)
+                    .register(meterRegistry));
+        }
+    }
+
+    public void record(ReportStage stage, ReportType reportType, Runnable action) {
+        timer(stage, reportType).record(action);
+    }
+
+    public <T> T record(ReportStage stage, ReportType reportType, Supplier<T> action) {
+        return timer(stage, reportType).record(action);
+    }
+
+    public void record(ReportStage stage, ReportType reportType, long nanos) {
+        timer(stage, reportType).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // a failed report records only its total, the stages it completed are recorded as they end
+    public void recordFailure(ReportType reportType, long nanos) {
+        failedTotals.get(reportType).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRows(ReportType reportType, long count, long nanos) {
+        rows.get(reportType).increment(count);
+        if (nanos > 0) {
+            rowsPerSecond.get(reportType).record(count * 1_000_000_000.0 / nanos);
+        }
+    }
+
+    public void recordBytesWritten(ReportType reportType, long bytes) {
+        bytesWritten.get(reportType).increment(bytes);
+    }
+
+    public void recordBytesUploaded(ReportType reportType, long bytes) {
+        bytesUploaded.get(reportType).increment(bytes);
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String type, ReportStage stage, String outcome) {
+        return Timer.builder("report.stage")
+                .description("Time a report spent in a pipeline stage")
+                .tag(TYPE_TAG, type)
+                .tag("stage", stage.getName())
+                .tag(OUTCOME_TAG, outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Timer timer(ReportStage stage, ReportType reportType) {
+        return stageTimers.get(reportType).get(stage);
+    }
+}
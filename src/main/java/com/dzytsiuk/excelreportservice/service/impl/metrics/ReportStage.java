@@ -0,0 +1,21 @@
+package com.dzytsiuk.excelreportservice.service.impl.metrics;
+
+public enum ReportStage {
+    QUEUE("queue"),
+    FETCH("fetch"),
+    WRITE("write"),
+    SERIALIZE("serialize"),
+    UPLOAD("upload"),
+    NOTIFY("notify"),
+    TOTAL("total");
+
+    private final String name;
+
+    ReportStage(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,62 @@
+package com.dzytsiuk.excelreportservice.service.impl.retry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Bounded exponential backoff: the n-th retry waits initialDelay * 2^(n-1), at most maxDelay, and the task
+// gives up after maxAttempts. The last failure is rethrown.
+public class RetryPolicy {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public void execute(String operation, RetryableTask task) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                task.run();
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    throw e instanceof RuntimeException ? (RuntimeException) e
+                            : new RuntimeException(operation + " failed after " + attempt + " attempts", e);
+                }
+                long delay = getDelayMillis(attempt);
+                log.warn("{} failed on attempt {} of {}, retrying in {} ms", operation, attempt, maxAttempts, delay, e);
+                sleep(delay, operation);
+            }
+        }
+    }
+
+    // delay after the given failed attempt, counted from 1
+    public long getDelayMillis(int attempt) {
+        long delay = initialDelayMillis;
+        for (int i = 1; i < attempt && delay < maxDelayMillis; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxDelayMillis);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    private void sleep(long delay, String operation) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying " + operation, e);
+        }
+    }
+
+    public interface RetryableTask {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,15 @@
+package com.dzytsiuk.excelreportservice.service.impl.scheduler;
+
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import lombok.Data;
+
+@Data
+public class LaneStats {
+    private ReportType reportType;
+    private int queueDepth;
+    private int running;
+    private long dispatched;
+    private long oldestWaitMillis;
+    private long meanWaitMillis;
+    private long maxWaitMillis;
+}
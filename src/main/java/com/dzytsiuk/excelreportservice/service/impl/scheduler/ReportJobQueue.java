@@ -0,0 +1,228 @@
+package com.dzytsiuk.excelreportservice.service.impl.scheduler;
+
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Weighted lanes per report type (stride scheduling) with a cap of running jobs per lane, round robin
+// between users inside a lane with a cap of running jobs per user, and aging: a job requested longer than
+// agingThresholdMillis ago is taken before lane order.
+public class ReportJobQueue<T> {
+    private static final long STRIDE = 1_000_000L;
+
+    private final Map<ReportType, Lane> lanes = new EnumMap<>(ReportType.class);
+    private final Map<String, Integer> userRunning = new HashMap<>();
+    private final int maxRunningPerUser;
+    private final long agingThresholdMillis;
+    private long globalPass;
+    private int size;
+
+    public ReportJobQueue(Map<ReportType, Integer> weights, Map<ReportType, Integer> maxRunning,
+                          int maxRunningPerUser, long agingThresholdMillis) {
+        this.maxRunningPerUser = maxRunningPerUser;
+        this.agingThresholdMillis = agingThresholdMillis;
+        for (ReportType reportType : ReportType.values()) {
+            lanes.put(reportType, new Lane(reportType, weights.getOrDefault(reportType, 1),
+                    maxRunning.getOrDefault(reportType, Integer.MAX_VALUE)));
+        }
+    }
+
+    public void add(T job, ReportType reportType, String userKey, long requestedAtMillis, long nowMillis) {
+        Lane lane = lanes.get(reportType);
+        if (lane.size == 0) {
+            lane.pass = Math.max(lane.pass, globalPass);
+        }
+        lane.add(new QueuedJob<>(job, userKey, requestedAtMillis, nowMillis));
+        size++;
+    }
+
+    public T poll(long nowMillis) {
+        if (size == 0) {
+            return null;
+        }
+        Lane lane = getAgedLane(nowMillis);
+        QueuedJob<T> queuedJob;
+        if (lane != null) {
+            queuedJob = lane.pollOldest();
+        } else {
+            lane = getNextLane();
+            if (lane == null) {
+                return null;
+            }
+            queuedJob = lane.pollNextUser();
+        }
+        globalPass = lane.pass;
+        lane.pass += STRIDE / lane.weight;
+        lane.running++;
+        userRunning.merge(queuedJob.userKey, 1, Integer::sum);
+        lane.recordDispatch(nowMillis - queuedJob.enqueuedAtMillis);
+        size--;
+        return queuedJob.job;
+    }
+
+    public void complete(ReportType reportType, String userKey) {
+        lanes.get(reportType).running--;
+        userRunning.computeIfPresent(userKey, (key, running) -> running > 1 ? running - 1 : null);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<LaneStats> getLaneStats(long nowMillis) {
+        List<LaneStats> laneStats = new ArrayList<>();
+        for (Lane lane : lanes.values()) {
+            LaneStats stats = new LaneStats();
+            stats.setReportType(lane.reportType);
+            stats.setQueueDepth(lane.size);
+            stats.setRunning(lane.running);
+            stats.setDispatched(lane.dispatched);
+            stats.setOldestWaitMillis(nowMillis - lane.oldestEnqueuedAt(nowMillis));
+            stats.setMeanWaitMillis(lane.dispatched == 0 ? 0 : lane.totalWaitMillis / lane.dispatched);
+            stats.setMaxWaitMillis(lane.maxWaitMillis);
+            laneStats.add(stats);
+        }
+        return laneStats;
+    }
+
+    private Lane getAgedLane(long nowMillis) {
+        Lane agedLane = null;
+        long oldestRequestedAt = nowMillis - agingThresholdMillis;
+        for (Lane lane : lanes.values()) {
+            QueuedJob<T> oldest = lane.peekOldest();
+            if (oldest != null && oldest.requestedAtMillis <= oldestRequestedAt) {
+                oldestRequestedAt = oldest.requestedAtMillis;
+                agedLane = lane;
+            }
+        }
+        return agedLane;
+    }
+
+    private Lane getNextLane() {
+        Lane nextLane = null;
+        for (Lane lane : lanes.values()) {
+            if (lane.isDispatchable() && (nextLane == null || lane.pass < nextLane.pass)) {
+                nextLane = lane;
+            }
+        }
+        return nextLane;
+    }
+
+    private boolean isUserDispatchable(String userKey) {
+        return userRunning.getOrDefault(userKey, 0) < maxRunningPerUser;
+    }
+
+    private static class QueuedJob<T> {
+        private final T job;
+        private final String userKey;
+        private final long requestedAtMillis;
+        private final long enqueuedAtMillis;
+
+        QueuedJob(T job, String userKey, long requestedAtMillis, long enqueuedAtMillis) {
+            this.job = job;
+            this.userKey = userKey;
+            this.requestedAtMillis = requestedAtMillis;
+            this.enqueuedAtMillis = enqueuedAtMillis;
+        }
+    }
+
+    private class Lane {
+        private final ReportType reportType;
+        private final int weight;
+        private final int maxRunning;
+        private final Map<String, Deque<QueuedJob<T>>> userJobs = new HashMap<>();
+        private final Deque<String> userOrder = new ArrayDeque<>();
+        private long pass;
+        private int size;
+        private int running;
+        private long dispatched;
+        private long totalWaitMillis;
+        private long maxWaitMillis;
+
+        Lane(ReportType reportType, int weight, int maxRunning) {
+            this.reportType = reportType;
+            this.weight = Math.max(1, weight);
+            this.maxRunning = maxRunning;
+        }
+
+        void add(QueuedJob<T> queuedJob) {
+            Deque<QueuedJob<T>> jobs = userJobs.get(queuedJob.userKey);
+            if (jobs == null) {
+                jobs = new ArrayDeque<>();
+                userJobs.put(queuedJob.userKey, jobs);
+                userOrder.addLast(queuedJob.userKey);
+            }
+            jobs.addLast(queuedJob);
+            size++;
+        }
+
+        boolean isDispatchable() {
+            return running < maxRunning && nextUser() != null;
+        }
+
+        QueuedJob<T> pollNextUser() {
+            return pollFrom(nextUser());
+        }
+
+        QueuedJob<T> pollOldest() {
+            return pollFrom(peekOldest().userKey);
+        }
+
+        // oldest job among users that may start another job, null when the lane cannot dispatch
+        QueuedJob<T> peekOldest() {
+            if (running >= maxRunning) {
+                return null;
+            }
+            QueuedJob<T> oldest = null;
+            for (Map.Entry<String, Deque<QueuedJob<T>>> entry : userJobs.entrySet()) {
+                QueuedJob<T> head = entry.getValue().peekFirst();
+                if (isUserDispatchable(entry.getKey()) && (oldest == null || head.requestedAtMillis < oldest.requestedAtMillis)) {
+                    oldest = head;
+                }
+            }
+            return oldest;
+        }
+
+        long oldestEnqueuedAt(long nowMillis) {
+            long oldestEnqueuedAt = nowMillis;
+            for (Deque<QueuedJob<T>> jobs : userJobs.values()) {
+                oldestEnqueuedAt = Math.min(oldestEnqueuedAt, jobs.peekFirst().enqueuedAtMillis);
+            }
+            return oldestEnqueuedAt;
+        }
+
+        void recordDispatch(long waitMillis) {
+            dispatched++;
+            totalWaitMillis += waitMillis;
+            maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+        }
+
+        private String nextUser() {
+            for (String userKey : userOrder) {
+                if (isUserDispatchable(userKey)) {
+                    return userKey;
+                }
+            }
+            return null;
+        }
+
+        private QueuedJob<T> pollFrom(String userKey) {
+            Deque<QueuedJob<T>> jobs = userJobs.get(userKey);
+            QueuedJob<T> queuedJob = jobs.pollFirst();
+            userOrder.remove(userKey);
+            if (jobs.isEmpty()) {
+                userJobs.remove(userKey);
+            } else {
+                userOrder.addLast(userKey);
+            }
+            size--;
+            return queuedJob;
+        }
+    }
+}
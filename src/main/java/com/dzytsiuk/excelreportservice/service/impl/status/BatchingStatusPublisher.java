@@ -0,0 +1,207 @@
+package com.dzytsiuk.excelreportservice.service.impl.status;
+
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.service.StatusPublisher;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportStage;
+import com.dzytsiuk.excelreportservice.service.processor.ReplyMessagePostProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessagePostProcessor;
+import org.springframework.jms.support.JmsUtils;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Status replies are queued by the workers and sent by one background thread, up to maxBatchSize replies per
+// transaction. A status published later replaces the one of the report still waiting, so a report finished before
+// its IN_PROGRESS reply went out sends only GENERATED. Failed batches are put back and retried after retryDelayMillis,
+// a status published meanwhile is kept over the retried one.
+public class BatchingStatusPublisher implements StatusPublisher, Closeable {
+    private static final MessagePostProcessor REPLY_MESSAGE_POST_PROCESSOR = new ReplyMessagePostProcessor();
+    private static final long CLOSE_TIMEOUT_MILLIS = 30_000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final JmsTemplate jmsTemplate;
+    private final Destination destination;
+    private final ReportMetrics reportMetrics;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final long retryDelayMillis;
+    private final Map<String, PendingStatus> pending = new LinkedHashMap<>();
+    private final Thread publisherThread;
+    private long sequence;
+    private boolean closed;
+
+    public BatchingStatusPublisher(JmsTemplate jmsTemplate, Destination destination, ReportMetrics reportMetrics,
+                                   int maxBatchSize, long lingerMillis, long retryDelayMillis) {
+        this.jmsTemplate = jmsTemplate;
+        this.destination = destination;
+        this.reportMetrics = reportMetrics;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.retryDelayMillis = retryDelayMillis;
+        this.publisherThread = new Thread(this::run, "status_publisher_thread");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    @Override
+    public void publish(ReportRequest reportRequest) {
+        // the worker keeps changing the request, the reply carries its state at the time of publishing
+        ReportRequest reply = copy(reportRequest);
+        synchronized (pending) {
+            if (closed) {
+                throw new IllegalStateException("Status publisher is closed, cannot publish " + reportRequest.getId());
+            }
+            PendingStatus status = new PendingStatus(reply, ++sequence, System.nanoTime());
+            pending.merge(reportRequest.getId(), status, BatchingStatusPublisher::latest);
+            if (pending.size() == 1 || pending.size() >= maxBatchSize) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (pending) {
+            closed = true;
+            pending.notifyAll();
+        }
+        try {
+            publisherThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                List<PendingStatus> batch = takeBatch();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                if (!send(batch) && !retry(batch)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            log.warn("Status publisher interrupted, {} statuses not sent", getPendingCount());
+        }
+    }
+
+    // empty only when closed and everything is sent
+    private List<PendingStatus> takeBatch() throws InterruptedException {
+        synchronized (pending) {
+            while (pending.isEmpty() && !closed) {
+                pending.wait();
+            }
+            // give the statuses of a burst the chance to share one transaction
+            long deadline = System.nanoTime() + lingerNanos;
+            long remaining;
+            while (!closed && pending.size() < maxBatchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+            }
+            List<PendingStatus> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+            Iterator<PendingStatus> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            return batch;
+        }
+    }
+
+    private boolean send(List<PendingStatus> batch) {
+        try {
+            jmsTemplate.execute(session -> {
+                MessageProducer producer = session.createProducer(destination);
+                try {
+                    for (PendingStatus status : batch) {
+                        Message message = jmsTemplate.getMessageConverter().toMessage(status.reportRequest, session);
+                        producer.send(REPLY_MESSAGE_POST_PROCESSOR.postProcessMessage(message));
+                    }
+                    JmsUtils.commitIfNecessary(session);
+                } catch (JMSException | RuntimeException e) {
+                    JmsUtils.rollbackIfNecessary(session);
+                    throw e;
+                } finally {
+                    JmsUtils.closeMessageProducer(producer);
+                }
+                return null;
+            }, true);
+        } catch (JmsException e) {
+            log.warn("Error sending {} statuses, retrying in {} ms", batch.size(), retryDelayMillis, e);
+            return false;
+        }
+        long sentAt = System.nanoTime();
+        for (PendingStatus status : batch) {
+            reportMetrics.record(ReportStage.NOTIFY, status.reportRequest.getReportType(), sentAt - status.publishedAt);
+        }
+        log.debug("Sent {} statuses", batch.size());
+        return true;
+    }
+
+    private boolean retry(List<PendingStatus> batch) throws InterruptedException {
+        synchronized (pending) {
+            if (closed) {
+                log.error("Status publisher closed, dropping {} statuses", batch.size() + pending.size());
+                pending.clear();
+                return false;
+            }
+            for (PendingStatus status : batch) {
+                pending.merge(status.reportRequest.getId(), status, BatchingStatusPublisher::latest);
+            }
+            pending.wait(retryDelayMillis);
+            return true;
+        }
+    }
+
+    // by the order of publishing, not by status: FAILED is only published for the last delivery, a later status wins
+    private static PendingStatus latest(PendingStatus queued, PendingStatus added) {
+        return added.sequence > queued.sequence ? added : queued;
+    }
+
+    private static ReportRequest copy(ReportRequest reportRequest) {
+        ReportRequest copy = new ReportRequest();
+        copy.setId(reportRequest.getId());
+        copy.setReportType(reportRequest.getReportType());
+        copy.setReportParameter(reportRequest.getReportParameter());
+        copy.setReportFormat(reportRequest.getReportFormat());
+        copy.setReportStatus(reportRequest.getReportStatus());
+        copy.setFtpUrl(reportRequest.getFtpUrl());
+        copy.setDateRequested(reportRequest.getDateRequested());
+        copy.setUser(reportRequest.getUser());
+        return copy;
+    }
+
+    private static class PendingStatus {
+        private final ReportRequest reportRequest;
+        private final long sequence;
+        private final long publishedAt;
+
+        PendingStatus(ReportRequest reportRequest, long sequence, long publishedAt) {
+            this.reportRequest = reportRequest;
+            this.sequence = sequence;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
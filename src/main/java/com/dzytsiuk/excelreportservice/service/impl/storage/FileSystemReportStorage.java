@@ -0,0 +1,183 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.ReportStorage;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportStage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// Reports on a local or NFS mounted directory. A report is written to a .part file next to its final name,
+// forced to disk and moved into place, so readers never see a partial file. Files are copied with
+// FileChannel.transferTo, which the kernel does without passing the bytes through the heap.
+@Service
+@ConditionalOnProperty(name = "report.storage.type", havingValue = "filesystem")
+public class FileSystemReportStorage implements ReportStorage {
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ReportMetrics reportMetrics;
+    private final Path directory;
+    private final String urlPrefix;
+
+    public FileSystemReportStorage(ReportMetrics reportMetrics,
+                                   @Value("${report.storage.filesystem.directory}") String directory,
+                                   @Value("${report.storage.filesystem.url-prefix}") String urlPrefix) {
+        this.reportMetrics = reportMetrics;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.urlPrefix = urlPrefix;
+    }
+
+    @Override
+    public void saveAndEnrichWithUrl(InputStream inputStream, ReportRequest reportRequest) {
+        try (InputStream source = inputStream) {
+            store(reportRequest, ReportStoragePaths.getPath(reportRequest), false, target -> {
+                if (source instanceof FileInputStream) {
+                    FileChannel channel = ((FileInputStream) source).getChannel();
+                    return transfer(channel, channel.position(), channel.size(), target);
+                }
+                ReadableByteChannel channel = Channels.newChannel(source);
+                long position = 0;
+                long transferred;
+                while ((transferred = target.transferFrom(channel, position, BUFFER_SIZE)) > 0) {
+                    position += transferred;
+                }
+                return position;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to " + directory, e);
+        }
+    }
+
+    @Override
+    public void saveAndEnrichWithUrl(Consumer<OutputStream> reportWriter, ReportRequest reportRequest) {
+        try {
+            store(reportRequest, ReportStoragePaths.getPath(reportRequest), false, target -> {
+                // the channel stays open until the file is forced to disk
+                OutputStream outputStream = new BufferedOutputStream(new FilterOutputStream(Channels.newOutputStream(target)) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                }, BUFFER_SIZE);
+                reportWriter.accept(outputStream);
+                outputStream.flush();
+                return target.size();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to " + directory, e);
+        }
+    }
+
+    @Override
+    public void saveAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, boolean resume) {
+        saveFile(reportFile, reportRequest, ReportStoragePaths.getPath(reportRequest), resume);
+    }
+
+    @Override
+    public void saveArtifactAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, String contentHash,
+                                             boolean resume) {
+        saveFile(reportFile, reportRequest,
+                ReportStoragePaths.getArtifactPath(contentHash, ReportFormat.of(reportRequest)), resume);
+    }
+
+    @Override
+    public void deleteArtifact(String contentHash, ReportFormat reportFormat) {
+        Path target = directory.resolve(ReportStoragePaths.getArtifactPath(contentHash, reportFormat));
+        try {
+            if (Files.deleteIfExists(target)) {
+                log.info("File {} deleted", target);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error deleting " + target, e);
+        }
+    }
+
+    private void saveFile(Path reportFile, ReportRequest reportRequest, String path, boolean resume) {
+        Path target = directory.resolve(path);
+        try {
+            long size = Files.size(reportFile);
+            if (resume && Files.exists(target) && Files.size(target) == size) {
+                log.info("Report {} is already stored as {}", reportRequest.getId(), target);
+                reportRequest.setFtpUrl(urlPrefix + path);
+                return;
+            }
+            store(reportRequest, path, true, partFile -> {
+                // a .part file left by an interrupted attempt is continued
+                long offset = resume && partFile.size() <= size ? partFile.size() : 0;
+                partFile.truncate(offset);
+                partFile.position(offset);
+                try (FileChannel source = FileChannel.open(reportFile)) {
+                    return transfer(source, offset, size, partFile);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to " + directory, e);
+        }
+    }
+
+    private void store(ReportRequest reportRequest, String path, boolean keepPartFile, ChannelWriter channelWriter)
+            throws IOException {
+        ReportType reportType = reportRequest.getReportType();
+        Path target = directory.resolve(path);
+        Path partFile = target.resolveSibling(target.getFileName() + ".part");
+        long start = System.nanoTime();
+        Files.createDirectories(target.getParent());
+        long stored;
+        try (FileChannel channel = keepPartFile
+                ? FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+                : FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            stored = channelWriter.write(channel);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            if (!keepPartFile) {
+                Files.deleteIfExists(partFile);
+            }
+            throw e;
+        }
+        Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        reportMetrics.record(ReportStage.UPLOAD, reportType, System.nanoTime() - start);
+        reportMetrics.recordBytesUploaded(reportType, stored);
+        reportRequest.setFtpUrl(urlPrefix + path);
+        log.info("File {} stored", target);
+    }
+
+    private static long transfer(FileChannel source, long from, long to, FileChannel target) throws IOException {
+        for (long position = from; position < to; ) {
+            position += source.transferTo(position, to - position, target);
+        }
+        return to - from;
+    }
+
+    // returns the number of bytes written
+    private interface ChannelWriter {
+        long write(FileChannel target) throws IOException;
+    }
+}
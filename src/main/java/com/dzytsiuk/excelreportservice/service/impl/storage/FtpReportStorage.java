@@ -0,0 +1,256 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.ReportStorage;
+import com.dzytsiuk.excelreportservice.service.impl.SpillingPipe;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientPool;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ByteCountingInputStream;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportStage;
+import lombok.SneakyThrows;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+@Service
+@ConditionalOnProperty(name = "report.storage.type", havingValue = "ftp", matchIfMissing = true)
+public class FtpReportStorage implements ReportStorage {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ExecutorService uploadExecutor;
+    private final FtpClientPool ftpClientPool;
+    private final ReportMetrics reportMetrics;
+    @Value("${ftp.host}")
+    private String host;
+    @Value("${ftp.username}")
+    private String username;
+    @Value("${ftp.upload.chunk-size}")
+    private Integer uploadChunkSize;
+    @Value("${ftp.upload.memory-chunks}")
+    private Integer uploadMemoryChunks;
+    @Value("${ftp.upload.spill-timeout}")
+    private Long uploadSpillTimeout;
+    @Value("${ftp.upload.spill-directory}")
+    private String uploadSpillDirectory;
+    @Value("${ftp.upload.parallel.threshold}")
+    private long parallelThreshold;
+    @Value("${ftp.upload.parallel.connections}")
+    private int parallelConnections;
+
+    public FtpReportStorage(@Qualifier("uploadExecutor") ExecutorService uploadExecutor, FtpClientPool ftpClientPool,
+                             ReportMetrics reportMetrics) {
+        this.uploadExecutor = uploadExecutor;
+        this.ftpClientPool = ftpClientPool;
+        this.reportMetrics = reportMetrics;
+    }
+
+    @Override
+    @SneakyThrows
+    public void saveAndEnrichWithUrl(InputStream inputStream, ReportRequest reportRequest) {
+        try {
+            String filename = getFileName(reportRequest);
+            store(filename, inputStream, reportRequest.getReportType());
+            reportRequest.setFtpUrl(getUrl(filename));
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to ftp", e);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Override
+    public void saveAndEnrichWithUrl(Consumer<OutputStream> reportWriter, ReportRequest reportRequest) {
+        String filename = getFileName(reportRequest);
+        try (SpillingPipe pipe = new SpillingPipe(uploadChunkSize, uploadMemoryChunks, uploadSpillTimeout,
+                Paths.get(uploadSpillDirectory))) {
+            Future<?> upload = uploadExecutor.submit(() -> {
+                try (InputStream inputStream = pipe.getInputStream()) {
+                    store(filename, inputStream, reportRequest.getReportType());
+                }
+                return null;
+            });
+            // closing the output ends the upload normally, so it is only closed once the whole report is written
+            OutputStream outputStream = pipe.getOutputStream();
+            try {
+                reportWriter.accept(outputStream);
+                outputStream.close();
+            } catch (IOException | RuntimeException | Error e) {
+                pipe.abort(e);
+                waitForAbortedUpload(upload);
+                throw e;
+            }
+            waitForUpload(upload, reportRequest);
+            log.info("Report {} streamed to ftp. Spilled to disk: {}", reportRequest.getId(), pipe.isSpilled());
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to ftp", e);
+        }
+        reportRequest.setFtpUrl(getUrl(filename));
+    }
+
+    @Override
+    public void saveAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, boolean resume) {
+        saveFile(reportFile, reportRequest, getFileName(reportRequest), resume);
+    }
+
+    // the artifact directory is created next to the report directories, which are expected to be there
+    @Override
+    public void saveArtifactAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, String contentHash,
+                                             boolean resume) {
+        String filename = "/" + ReportStoragePaths.getArtifactPath(contentHash, ReportFormat.of(reportRequest));
+        try {
+            ftpClientPool.execute(ftpClient -> ftpClient.makeDirectory(Paths.get(filename).getParent().toString()));
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to ftp", e);
+        }
+        saveFile(reportFile, reportRequest, filename, resume);
+    }
+
+    @Override
+    public void deleteArtifact(String contentHash, ReportFormat reportFormat) {
+        String filename = "/" + ReportStoragePaths.getArtifactPath(contentHash, reportFormat);
+        try {
+            if (ftpClientPool.execute(ftpClient -> ftpClient.deleteFile(filename))) {
+                log.info("File {} deleted from ftp", filename);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error deleting " + filename + " from ftp", e);
+        }
+    }
+
+    private void saveFile(Path reportFile, ReportRequest reportRequest, String filename, boolean resume) {
+        ReportType reportType = reportRequest.getReportType();
+        long start = System.nanoTime();
+        try {
+            long size = Files.size(reportFile);
+            long uploaded = parallelConnections > 1 && size >= parallelThreshold
+                    ? new ParallelFtpUpload(ftpClientPool, uploadExecutor, filename, reportFile, parallelConnections).upload(resume)
+                    : ftpClientPool.execute(ftpClient -> upload(ftpClient, filename, reportFile, size, resume));
+            reportMetrics.record(ReportStage.UPLOAD, reportType, System.nanoTime() - start);
+            reportMetrics.recordBytesUploaded(reportType, uploaded);
+            log.info("File {} sent to Ftp, {} of {} bytes uploaded by this attempt", filename, uploaded, size);
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to ftp", e);
+        }
+        reportRequest.setFtpUrl(getUrl(filename));
+    }
+
+    // resuming, the bytes the server already has are skipped and the rest is stored from there with REST
+    private long upload(FTPClient ftpClient, String filename, Path reportFile, long size, boolean resume)
+            throws IOException {
+        long offset = resume ? getRemoteSize(ftpClient, filename) : 0;
+        if (resume && offset == size) {
+            return 0;
+        }
+        if (offset > size) {
+            offset = 0;
+        }
+        try (FileChannel channel = FileChannel.open(reportFile)) {
+            channel.position(offset);
+            ByteCountingInputStream countingInputStream = new ByteCountingInputStream(Channels.newInputStream(channel));
+            ftpClient.setRestartOffset(offset);
+            if (!ftpClient.storeFile(filename, countingInputStream)) {
+                throw new IOException("Cannot save file " + filename + " to FTP: " + ftpClient.getReplyString());
+            }
+            return countingInputStream.getCount();
+        }
+    }
+
+    // 0 when the file is not there
+    static long getRemoteSize(FTPClient ftpClient, String filename) throws IOException {
+        if (ftpClient.sendCommand(FTPCmd.SIZE, filename) != FTPReply.FILE_STATUS) {
+            return 0;
+        }
+        return Long.parseLong(ftpClient.getReplyString().substring(4).trim());
+    }
+
+    private void waitForUpload(Future<?> upload, ReportRequest reportRequest) {
+        try {
+            upload.get();
+        } catch (InterruptedException e) {
+            upload.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while saving report " + reportRequest.getId() + " to ftp", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to ftp", e.getCause());
+        }
+    }
+
+    // the upload fails with the writer's failure and removes the partial file, the writer's failure is rethrown
+    private void waitForAbortedUpload(Future<?> upload) {
+        try {
+            upload.get();
+        } catch (InterruptedException e) {
+            upload.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.debug("Upload aborted", e.getCause());
+        }
+    }
+
+    // with streaming upload this also includes the time the upload waits for the report writer
+    private void store(String filename, InputStream inputStream, ReportType reportType) throws IOException {
+        long start = System.nanoTime();
+        ByteCountingInputStream countingInputStream = new ByteCountingInputStream(inputStream);
+        ftpClientPool.execute(ftpClient -> {
+            boolean saved;
+            try {
+                saved = ftpClient.storeFile(filename, countingInputStream);
+            } catch (IOException e) {
+                deletePartialFile(ftpClient, filename);
+                throw e;
+            }
+            if (!saved) {
+                throw new IOException("Cannot save file " + filename + " to FTP: " + ftpClient.getReplyString());
+            }
+            return null;
+        });
+        reportMetrics.record(ReportStage.UPLOAD, reportType, System.nanoTime() - start);
+        reportMetrics.recordBytesUploaded(reportType, countingInputStream.getCount());
+        log.info("File {} sent to Ftp", filename);
+    }
+
+    // the server keeps what arrived before the data connection was closed. Its reply to the transfer is read first,
+    // the file is closed on the server by then and cannot be written after it is deleted.
+    private void deletePartialFile(FTPClient ftpClient, String filename) {
+        try {
+            if (!FTPReply.isPositivePreliminary(ftpClient.getReplyCode())) {
+                // the transfer never started
+                return;
+            }
+            ftpClient.completePendingCommand();
+            if (ftpClient.deleteFile(filename)) {
+                log.info("Partial file {} deleted from ftp", filename);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot delete partial file {} from ftp", filename, e);
+        }
+    }
+
+    private String getUrl(String filename) {
+        return "ftp://" + username + "@" + host + "/" + filename;
+    }
+
+    private String getFileName(ReportRequest reportRequest) {
+        return "/" + ReportStoragePaths.getPath(reportRequest);
+    }
+}
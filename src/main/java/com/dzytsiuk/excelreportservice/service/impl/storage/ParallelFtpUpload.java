@@ -0,0 +1,256 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientPool;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ByteCountingInputStream;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A file stored as byte ranges, each with REST at its offset over its own pooled session, and checked against
+// the remote size and, where the server has MD5 or XMD5, the remote checksum. Some servers (Apache FtpServer
+// among them) truncate the file to the REST offset when a range is opened, so a range is only opened once the
+// server holds bytes of the range before it: the file cannot be longer than the new offset at that point.
+class ParallelFtpUpload {
+    private static final long POLL_MILLIS = 10;
+    private static final int BUFFER_SIZE = 65536;
+    private static final Pattern MD5_HASH = Pattern.compile("\\b[0-9a-fA-F]{32}\\b");
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final FtpClientPool ftpClientPool;
+    private final ExecutorService uploadExecutor;
+    private final String filename;
+    private final Path file;
+    private final long size;
+    private final long[] offsets;
+
+    ParallelFtpUpload(FtpClientPool ftpClientPool, ExecutorService uploadExecutor, String filename, Path file,
+                      int connections) throws IOException {
+        this.ftpClientPool = ftpClientPool;
+        this.uploadExecutor = uploadExecutor;
+        this.filename = filename;
+        this.file = file;
+        this.size = Files.size(file);
+        int ranges = (int) Math.max(1, Math.min(connections, size));
+        this.offsets = new long[ranges + 1];
+        for (int range = 0; range <= ranges; range++) {
+            offsets[range] = size * range / ranges;
+        }
+    }
+
+    // returns the number of bytes uploaded, 0 when resuming and the server already has the whole file
+    long upload(boolean resume) throws IOException {
+        if (resume && getRemoteSize() == size && isVerified(md5())) {
+            log.info("File {} is already on ftp", filename);
+            return 0;
+        }
+        List<Future<Long>> rangeUploads = new ArrayList<>();
+        String md5;
+        long uploaded;
+        try {
+            // ranges left by an earlier attempt may have holes, so the file is stored from scratch
+            ftpClientPool.execute(ftpClient -> ftpClient.deleteFile(filename));
+            for (int range = 0; range < offsets.length - 1; range++) {
+                if (range > 0) {
+                    awaitStarted(range - 1, rangeUploads.get(range - 1));
+                }
+                int current = range;
+                rangeUploads.add(uploadExecutor.submit(() -> uploadRange(current)));
+            }
+            // the local checksum is computed while the ranges upload
+            md5 = md5();
+        } finally {
+            uploaded = waitForRanges(rangeUploads);
+        }
+        if (!isVerified(md5)) {
+            throw new IOException("File " + filename + " on ftp does not match " + file);
+        }
+        log.info("File {} sent to Ftp over {} connections", filename, offsets.length - 1);
+        return uploaded;
+    }
+
+    private long uploadRange(int range) throws IOException {
+        return ftpClientPool.execute(ftpClient -> {
+            try (FileChannel channel = FileChannel.open(file)) {
+                ByteCountingInputStream inputStream = new ByteCountingInputStream(
+                        new RangeInputStream(channel, offsets[range], offsets[range + 1]));
+                ftpClient.setRestartOffset(offsets[range]);
+                if (!ftpClient.storeFile(filename, inputStream)) {
+                    throw new IOException("Cannot save range " + offsets[range] + "-" + offsets[range + 1] + " of "
+                            + filename + " to FTP: " + ftpClient.getReplyString());
+                }
+                return inputStream.getCount();
+            }
+        });
+    }
+
+    // the range has opened the file once the server holds bytes past its offset or once it is done
+    private void awaitStarted(int range, Future<Long> rangeUpload) throws IOException {
+        while (!rangeUpload.isDone() && getRemoteSize() <= offsets[range]) {
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while saving " + filename + " to ftp");
+            }
+        }
+        if (rangeUpload.isDone()) {
+            getRange(rangeUpload);
+        }
+    }
+
+    // every range is waited for, so none of them is still writing when the upload is retried
+    private long waitForRanges(List<Future<Long>> rangeUploads) throws IOException {
+        long uploaded = 0;
+        IOException failure = null;
+        for (Future<Long> rangeUpload : rangeUploads) {
+            try {
+                uploaded += getRange(rangeUpload);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return uploaded;
+    }
+
+    private long getRange(Future<Long> rangeUpload) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return rangeUpload.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot save " + filename + " to ftp", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // a session per poll, so the ranges waiting for one are not starved by the coordinator
+    private long getRemoteSize() throws IOException {
+        return ftpClientPool.execute(ftpClient -> FtpReportStorage.getRemoteSize(ftpClient, filename));
+    }
+
+    // the size has to match, the checksum only when the server can compute one
+    private boolean isVerified(String md5) throws IOException {
+        return ftpClientPool.execute(ftpClient -> {
+            long remoteSize = FtpReportStorage.getRemoteSize(ftpClient, filename);
+            if (remoteSize != size) {
+                log.warn("File {} has {} bytes on ftp instead of {}", filename, remoteSize, size);
+                return false;
+            }
+            String remoteMd5 = getRemoteMd5(ftpClient);
+            if (remoteMd5 == null) {
+                log.debug("Ftp server has no checksum command, only the size of {} is verified", filename);
+                return true;
+            }
+            if (!remoteMd5.equalsIgnoreCase(md5)) {
+                log.warn("File {} has md5 {} on ftp instead of {}", filename, remoteMd5, md5);
+                return false;
+            }
+            return true;
+        });
+    }
+
+    // the hash is the last one in the reply, MD5 repeats the file name before it
+    private String getRemoteMd5(FTPClient ftpClient) throws IOException {
+        for (String command : new String[]{"MD5", "XMD5"}) {
+            if (FTPReply.isPositiveCompletion(ftpClient.sendCommand(command, filename))) {
+                String md5 = null;
+                Matcher matcher = MD5_HASH.matcher(ftpClient.getReplyString());
+                while (matcher.find()) {
+                    md5 = matcher.group();
+                }
+                if (md5 != null) {
+                    return md5;
+                }
+            }
+        }
+        return null;
+    }
+
+    private String md5() throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder md5 = new StringBuilder();
+        for (byte b : digest.digest()) {
+            md5.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return md5.toString();
+    }
+
+    // positional reads, so the ranges do not share a file position
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read < 0) {
+                throw new IOException("File ended at " + position + " instead of " + end);
+            }
+            position += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+
+final class ReportStoragePaths {
+    private ReportStoragePaths() {
+    }
+
+    // report/movie/allMovies_<id>.xlsx, relative to the root of the storage
+    static String getPath(ReportRequest reportRequest) {
+        String path = "report";
+        ReportType reportType = reportRequest.getReportType();
+        if (reportType == ReportType.ADDED_DURING_PERIOD || reportType == ReportType.ALL_MOVIES) {
+            path += "/movie/";
+        } else if (reportType == ReportType.TOP_ACTIVE_USERS) {
+            path += "/user/";
+        }
+        return path + reportType.getName() + "_" + reportRequest.getId() + "." + ReportFormat.of(reportRequest).getExtension();
+    }
+
+    // report/artifact/<sha-256>.xlsx, the hash is computed by the service, never taken from a request
+    static String getArtifactPath(String contentHash, ReportFormat reportFormat) {
+        return "report/artifact/" + contentHash + "." + reportFormat.getExtension();
+    }
+}
@@ -0,0 +1,113 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// One multipart upload. Parts are sent on the upload executor, at most maxPartsInFlight at a time, while the
+// caller prepares the next one. Any failed part fails the upload, which is then aborted so S3 drops the parts.
+class S3MultipartUpload {
+    private final AmazonS3 amazonS3;
+    private final String bucket;
+    private final String key;
+    private final ExecutorService uploadExecutor;
+    private final Semaphore partsInFlight;
+    private final List<Future<PartETag>> parts = new ArrayList<>();
+    private final String uploadId;
+    private volatile Exception failure;
+
+    S3MultipartUpload(AmazonS3 amazonS3, String bucket, String key, ObjectMetadata objectMetadata,
+                      ExecutorService uploadExecutor, int maxPartsInFlight) {
+        this.amazonS3 = amazonS3;
+        this.bucket = bucket;
+        this.key = key;
+        this.uploadExecutor = uploadExecutor;
+        this.partsInFlight = new Semaphore(maxPartsInFlight);
+        this.uploadId = amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key, objectMetadata))
+                .getUploadId();
+    }
+
+    // the buffer is owned by the upload from here on
+    void uploadPart(byte[] buffer, int length) throws IOException {
+        submit(new UploadPartRequest()
+                .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+                .withPartSize(length));
+    }
+
+    void uploadPart(File file, long offset, long length) throws IOException {
+        submit(new UploadPartRequest()
+                .withFile(file)
+                .withFileOffset(offset)
+                .withPartSize(length));
+    }
+
+    void complete() throws IOException {
+        List<PartETag> partETags = new ArrayList<>(parts.size());
+        for (Future<PartETag> part : parts) {
+            partETags.add(await(part));
+        }
+        amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags));
+    }
+
+    void abort() {
+        for (Future<PartETag> part : parts) {
+            part.cancel(true);
+        }
+        try {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+        } catch (RuntimeException e) {
+            // keeps the original failure, parts of an upload that is never completed are not part of any object
+        }
+    }
+
+    private void submit(UploadPartRequest uploadPartRequest) throws IOException {
+        if (failure != null) {
+            throw new IOException("Error uploading part of " + key, failure);
+        }
+        try {
+            partsInFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading " + key, e);
+        }
+        uploadPartRequest.withBucketName(bucket)
+                .withKey(key)
+                .withUploadId(uploadId)
+                .withPartNumber(parts.size() + 1);
+        parts.add(uploadExecutor.submit(() -> {
+            try {
+                return amazonS3.uploadPart(uploadPartRequest).getPartETag();
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                partsInFlight.release();
+            }
+        }));
+    }
+
+    private PartETag await(Future<PartETag> part) throws IOException {
+        try {
+            return part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading " + key, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error uploading part of " + key, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.ReportStorage;
+import com.dzytsiuk.excelreportservice.service.impl.cache.ReportResultCache;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportStage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+// Reports in an S3 compatible bucket. A report larger than one part is sent as a multipart upload with the
+// parts going out in parallel, so a single report is not limited to the throughput of one connection.
+@Service
+@ConditionalOnProperty(name = "report.storage.type", havingValue = "s3")
+public class S3ReportStorage implements ReportStorage {
+    // S3 rejects parts below 5 MB except the last one
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 65536;
+    // user metadata holding the SHA-256 of an uploaded report file
+    static final String CONTENT_HASH = "content-sha256";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final AmazonS3 amazonS3;
+    private final ExecutorService uploadExecutor;
+    private final ReportMetrics reportMetrics;
+    private final String bucket;
+    private final int partSize;
+    private final int maxPartsInFlight;
+
+    public S3ReportStorage(AmazonS3 amazonS3, @Qualifier("uploadExecutor") ExecutorService uploadExecutor,
+                           ReportMetrics reportMetrics, @Value("${report.storage.s3.bucket}") String bucket,
+                           @Value("${report.storage.s3.part-size}") Integer partSize,
+                           @Value("${report.storage.s3.max-parts-in-flight}") Integer maxPartsInFlight) {
+        this.amazonS3 = amazonS3;
+        this.uploadExecutor = uploadExecutor;
+        this.reportMetrics = reportMetrics;
+        this.bucket = bucket;
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+        this.maxPartsInFlight = Math.max(1, maxPartsInFlight);
+    }
+
+    @Override
+    public void saveAndEnrichWithUrl(InputStream inputStream, ReportRequest reportRequest) {
+        try (InputStream source = inputStream) {
+            store(reportRequest, outputStream -> {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = source.read(buffer)) > 0) {
+                    outputStream.write(buffer, 0, read);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void saveAndEnrichWithUrl(Consumer<OutputStream> reportWriter, ReportRequest reportRequest) {
+        try {
+            store(reportRequest, reportWriter::accept);
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void saveAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, boolean resume) {
+        String contentHash;
+        try {
+            contentHash = ReportResultCache.hash(reportFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Error hashing report " + reportRequest.getId(), e);
+        }
+        saveFile(reportFile, reportRequest, ReportStoragePaths.getPath(reportRequest), contentHash, resume);
+    }
+
+    @Override
+    public void saveArtifactAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, String contentHash,
+                                             boolean resume) {
+        saveFile(reportFile, reportRequest,
+                ReportStoragePaths.getArtifactPath(contentHash, ReportFormat.of(reportRequest)), contentHash, resume);
+    }
+
+    @Override
+    public void deleteArtifact(String contentHash, ReportFormat reportFormat) {
+        String key = ReportStoragePaths.getArtifactPath(contentHash, reportFormat);
+        amazonS3.deleteObject(bucket, key);
+        log.info("Object {} deleted from bucket {}", key, bucket);
+    }
+
+    // parts are read straight from the file; resuming, an object is taken as already uploaded when the content
+    // hash stored with it matches the file, a regenerated report of the same size is uploaded again
+    private void saveFile(Path reportFile, ReportRequest reportRequest, String key, String contentHash, boolean resume) {
+        long start = System.nanoTime();
+        try {
+            long size = Files.size(reportFile);
+            if (resume && amazonS3.doesObjectExist(bucket, key)
+                    && contentHash.equals(amazonS3.getObjectMetadata(bucket, key).getUserMetaDataOf(CONTENT_HASH))) {
+                log.info("Report {} is already stored as {}", reportRequest.getId(), key);
+                reportRequest.setFtpUrl(getUrl(key));
+                return;
+            }
+            File file = reportFile.toFile();
+            ObjectMetadata objectMetadata = new ObjectMetadata();
+            objectMetadata.addUserMetadata(CONTENT_HASH, contentHash);
+            if (size <= partSize) {
+                amazonS3.putObject(new PutObjectRequest(bucket, key, file).withMetadata(objectMetadata));
+            } else {
+                S3MultipartUpload multipartUpload = new S3MultipartUpload(amazonS3, bucket, key, objectMetadata,
+                        uploadExecutor, maxPartsInFlight);
+                try {
+                    for (long offset = 0; offset < size; offset += partSize) {
+                        multipartUpload.uploadPart(file, offset, Math.min(partSize, size - offset));
+                    }
+                    multipartUpload.complete();
+                } catch (IOException | RuntimeException e) {
+                    multipartUpload.abort();
+                    throw e;
+                }
+            }
+            stored(reportRequest, key, size, start);
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving report " + reportRequest.getId() + " to bucket " + bucket, e);
+        }
+        log.info("Report {} stored as {} in bucket {}", reportRequest.getId(), key, bucket);
+    }
+
+    private void store(ReportRequest reportRequest, StreamWriter streamWriter) throws IOException {
+        String key = ReportStoragePaths.getPath(reportRequest);
+        long start = System.nanoTime();
+        PartOutputStream outputStream = new PartOutputStream(key);
+        try {
+            streamWriter.write(outputStream);
+            outputStream.finish();
+        } catch (IOException | RuntimeException e) {
+            outputStream.abort();
+            throw e;
+        }
+        stored(reportRequest, key, outputStream.count, start);
+        log.info("Report {} stored as {} in bucket {}, parts: {}", reportRequest.getId(), key, bucket,
+                outputStream.parts);
+    }
+
+    private void stored(ReportRequest reportRequest, String key, long bytes, long start) {
+        ReportType reportType = reportRequest.getReportType();
+        reportMetrics.record(ReportStage.UPLOAD, reportType, System.nanoTime() - start);
+        reportMetrics.recordBytesUploaded(reportType, bytes);
+        reportRequest.setFtpUrl(getUrl(key));
+    }
+
+    private String getUrl(String key) {
+        return amazonS3.getUrl(bucket, key).toString();
+    }
+
+    private interface StreamWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    // Fills one part at a time and hands every full part to the multipart upload. A report that fits into
+    // one part is sent with a single put.
+    private class PartOutputStream extends OutputStream {
+        private final String key;
+        private byte[] buffer = new byte[partSize];
+        private int length;
+        private long count;
+        private int parts;
+        private S3MultipartUpload multipartUpload;
+
+        private PartOutputStream(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == buffer.length) {
+                uploadPart();
+            }
+            buffer[length++] = (byte) b;
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (length == buffer.length) {
+                    uploadPart();
+                }
+                int copied = Math.min(len, buffer.length - length);
+                System.arraycopy(b, off, buffer, length, copied);
+                length += copied;
+                off += copied;
+                len -= copied;
+                count += copied;
+            }
+        }
+
+        private void finish() throws IOException {
+            if (multipartUpload == null) {
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(length);
+                amazonS3.putObject(new PutObjectRequest(bucket, key, new ByteArrayInputStream(buffer, 0, length), metadata));
+                parts = 1;
+                return;
+            }
+            if (length > 0) {
+                uploadPart();
+            }
+            multipartUpload.complete();
+        }
+
+        private void abort() {
+            if (multipartUpload != null) {
+                multipartUpload.abort();
+            }
+        }
+
+        private void uploadPart() throws IOException {
+            if (multipartUpload == null) {
+                multipartUpload = new S3MultipartUpload(amazonS3, bucket, key, new ObjectMetadata(), uploadExecutor,
+                        maxPartsInFlight);
+            }
+            multipartUpload.uploadPart(buffer, length);
+            parts++;
+            buffer = new byte[partSize];
+            length = 0;
+        }
+    }
+}
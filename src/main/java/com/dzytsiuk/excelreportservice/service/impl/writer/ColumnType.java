@@ -0,0 +1,5 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+public enum ColumnType {
+    INT, DOUBLE, STRING, DATE_TIME
+}
@@ -0,0 +1,163 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// RFC 4180 csv written straight to the output stream: CRLF line ends, fields with a separator, quote or line
+// break are quoted, blanks are empty fields. Memory use does not depend on the number of rows, numbers and
+// dates go through reused char buffers.
+public class CsvReportWriter implements ReportWriter {
+    private static final int BUFFER_SIZE = 65536;
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final String LINE_END = "\r\n";
+    // Double.toString switches to computerized scientific notation outside of this range
+    private static final double MIN_PLAIN_DOUBLE = 1e-3;
+    private static final double MAX_PLAIN_DOUBLE = 1e7;
+    private static final int FRACTION_DIGITS = 3;
+    private static final int FRACTION_SCALE = 1000;
+
+    private final Writer writer;
+    private final ReportDatePattern datePattern;
+    private final char[] dateBuffer;
+    // sign and the digits of a long
+    private final char[] numberBuffer = new char[20];
+    private int column;
+
+    public CsvReportWriter(OutputStream outputStream, ReportDatePattern datePattern) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.datePattern = datePattern;
+        this.dateBuffer = datePattern.createBuffer();
+    }
+
+    @Override
+    public void startReport(String name, List<ReportColumn> columns) throws IOException {
+        startRow();
+        for (ReportColumn reportColumn : columns) {
+            writeString(reportColumn.getTitle());
+        }
+        endRow();
+    }
+
+    @Override
+    public void startRow() {
+        column = 0;
+    }
+
+    @Override
+    public void writeInt(int value) throws IOException {
+        nextField();
+        int position = appendLong(value, numberBuffer.length);
+        writer.write(numberBuffer, position, numberBuffer.length - position);
+    }
+
+    // the same text as Double.toString, built without allocation for values with up to three decimals
+    @Override
+    public void writeDouble(double value) throws IOException {
+        nextField();
+        double absolute = Math.abs(value);
+        long scaled = Math.round(value * FRACTION_SCALE);
+        if (absolute < MIN_PLAIN_DOUBLE || absolute >= MAX_PLAIN_DOUBLE || (double) scaled / FRACTION_SCALE != value) {
+            writer.write(Double.toString(value));
+            return;
+        }
+        long fraction = Math.abs(scaled % FRACTION_SCALE);
+        int digits = FRACTION_DIGITS;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        int position = numberBuffer.length;
+        for (int i = 0; i < digits; i++) {
+            numberBuffer[--position] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        numberBuffer[--position] = '.';
+        position = appendLong(Math.abs(scaled / FRACTION_SCALE), position);
+        if (value < 0) {
+            numberBuffer[--position] = '-';
+        }
+        writer.write(numberBuffer, position, numberBuffer.length - position);
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        nextField();
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write(QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == QUOTE) {
+                writer.write(QUOTE);
+            }
+            writer.write(c);
+        }
+        writer.write(QUOTE);
+    }
+
+    @Override
+    public void writeDateTime(long epochMillis) throws IOException {
+        nextField();
+        datePattern.formatTo(epochMillis, dateBuffer, writer);
+    }
+
+    @Override
+    public void writeBlank() throws IOException {
+        nextField();
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        writer.write(LINE_END);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void nextField() throws IOException {
+        if (column++ > 0) {
+            writer.write(SEPARATOR);
+        }
+    }
+
+    // digits written backwards ending before end, returns the first position
+    private int appendLong(long value, int end) {
+        int position = end;
+        long remaining = Math.abs(value);
+        do {
+            numberBuffer[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        if (value < 0) {
+            numberBuffer[--position] = '-';
+        }
+        return position;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+
+@Component
+public class CsvReportWriterProvider implements ReportWriterProvider {
+    private final ReportDatePattern datePattern;
+
+    public CsvReportWriterProvider(ReportDatePattern datePattern) {
+        this.datePattern = datePattern;
+    }
+
+    @Override
+    public ReportFormat getFormat() {
+        return ReportFormat.CSV;
+    }
+
+    @Override
+    public ReportWriter create(OutputStream outputStream) {
+        return new CsvReportWriter(outputStream, datePattern);
+    }
+}
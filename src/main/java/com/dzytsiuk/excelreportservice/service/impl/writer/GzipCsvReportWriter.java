@@ -0,0 +1,45 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class GzipCsvReportWriter extends CsvReportWriter {
+    private static final int GZIP_BUFFER_SIZE = 65536;
+
+    private final DeflaterReleasingOutputStream gzipOutputStream;
+
+    public GzipCsvReportWriter(OutputStream outputStream, ReportDatePattern datePattern) throws IOException {
+        this(new DeflaterReleasingOutputStream(outputStream), datePattern);
+    }
+
+    private GzipCsvReportWriter(DeflaterReleasingOutputStream gzipOutputStream, ReportDatePattern datePattern) {
+        super(gzipOutputStream, datePattern);
+        this.gzipOutputStream = gzipOutputStream;
+    }
+
+    // writes the gzip trailer without closing the output stream
+    @Override
+    public void finish() throws IOException {
+        super.finish();
+        gzipOutputStream.finish();
+        gzipOutputStream.flush();
+    }
+
+    // the output stream stays open, so the deflater is ended here, finished or not
+    @Override
+    public void close() {
+        super.close();
+        gzipOutputStream.endDeflater();
+    }
+
+    private static class DeflaterReleasingOutputStream extends GZIPOutputStream {
+        DeflaterReleasingOutputStream(OutputStream outputStream) throws IOException {
+            super(outputStream, GZIP_BUFFER_SIZE);
+        }
+
+        void endDeflater() {
+            def.end();
+        }
+    }
+}
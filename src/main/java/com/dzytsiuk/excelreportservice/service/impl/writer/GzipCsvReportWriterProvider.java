@@ -0,0 +1,30 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Component
+public class GzipCsvReportWriterProvider implements ReportWriterProvider {
+    private final ReportDatePattern datePattern;
+
+    public GzipCsvReportWriterProvider(ReportDatePattern datePattern) {
+        this.datePattern = datePattern;
+    }
+
+    @Override
+    public ReportFormat getFormat() {
+        return ReportFormat.CSV_GZ;
+    }
+
+    @Override
+    public ReportWriter create(OutputStream outputStream) {
+        try {
+            return new GzipCsvReportWriter(outputStream, datePattern);
+        } catch (IOException e) {
+            throw new RuntimeException("Error starting gzip stream", e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+// One optional parquet column per report column: INT as int32, DOUBLE as double, STRING as utf8 binary and
+// DATE_TIME as int64 TIMESTAMP_MILLIS. Blanks are nulls. Rows are buffered by the parquet writer and flushed
+// as a row group whenever rowGroupSize bytes are reached, dictionary encoding is used where the dictionary
+// stays small (genres) and falls back to plain for the rest.
+public class ParquetReportWriter implements ReportWriter {
+    private static final String SCHEMA_NAME = "report";
+
+    private final OutputStream outputStream;
+    private final CompressionCodecName compressionCodec;
+    private final int rowGroupSize;
+    private final int pageSize;
+    private StreamOutputFile outputFile;
+    private ParquetWriter<RowBuffer> parquetWriter;
+    private RowBuffer row;
+
+    public ParquetReportWriter(OutputStream outputStream, CompressionCodecName compressionCodec, int rowGroupSize,
+                               int pageSize) {
+        this.outputStream = outputStream;
+        this.compressionCodec = compressionCodec;
+        this.rowGroupSize = rowGroupSize;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void startReport(String name, List<ReportColumn> columns) throws IOException {
+        MessageType schema = createSchema(columns);
+        row = new RowBuffer(columns);
+        outputFile = new StreamOutputFile(outputStream);
+        parquetWriter = new Builder(outputFile, schema)
+                .withCompressionCodec(compressionCodec)
+                .withRowGroupSize(rowGroupSize)
+                .withPageSize(pageSize)
+                .withDictionaryEncoding(true)
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .build();
+    }
+
+    @Override
+    public void startRow() {
+        row.clear();
+    }
+
+    @Override
+    public void writeInt(int value) {
+        row.longs[row.column++] = value;
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        if (Double.isNaN(value)) {
+            writeBlank();
+            return;
+        }
+        row.doubles[row.column++] = value;
+    }
+
+    @Override
+    public void writeString(String value) {
+        if (value == null) {
+            writeBlank();
+            return;
+        }
+        row.strings[row.column++] = value;
+    }
+
+    @Override
+    public void writeDateTime(long epochMillis) {
+        row.longs[row.column++] = epochMillis;
+    }
+
+    @Override
+    public void writeBlank() {
+        row.nulls[row.column++] = true;
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        parquetWriter.write(row);
+    }
+
+    // writes the last row group and the footer
+    @Override
+    public void finish() throws IOException {
+        ParquetWriter<RowBuffer> writer = parquetWriter;
+        parquetWriter = null;
+        writer.close();
+    }
+
+    // an unfinished report is not made readable: the last row group and the footer are dropped, closing the
+    // parquet writer only releases its buffers
+    @Override
+    public void close() throws IOException {
+        if (parquetWriter != null) {
+            outputFile.discard();
+            parquetWriter.close();
+        }
+    }
+
+    private static MessageType createSchema(List<ReportColumn> columns) {
+        Types.MessageTypeBuilder builder = Types.buildMessage();
+        for (ReportColumn column : columns) {
+            switch (column.getType()) {
+                case INT:
+                    builder.optional(PrimitiveTypeName.INT32).named(column.getName());
+                    break;
+                case DOUBLE:
+                    builder.optional(PrimitiveTypeName.DOUBLE).named(column.getName());
+                    break;
+                case STRING:
+                    builder.optional(PrimitiveTypeName.BINARY).as(OriginalType.UTF8).named(column.getName());
+                    break;
+                case DATE_TIME:
+                    builder.optional(PrimitiveTypeName.INT64).as(OriginalType.TIMESTAMP_MILLIS).named(column.getName());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported column type " + column.getType());
+            }
+        }
+        return builder.named(SCHEMA_NAME);
+    }
+
+    // values of the current row, reused for every row
+    private static class RowBuffer {
+        private final List<ReportColumn> columns;
+        private final long[] longs;
+        private final double[] doubles;
+        private final String[] strings;
+        private final boolean[] nulls;
+        private int column;
+
+        RowBuffer(List<ReportColumn> columns) {
+            this.columns = columns;
+            this.longs = new long[columns.size()];
+            this.doubles = new double[columns.size()];
+            this.strings = new String[columns.size()];
+            this.nulls = new boolean[columns.size()];
+        }
+
+        void clear() {
+            column = 0;
+            for (int i = 0; i < nulls.length; i++) {
+                nulls[i] = false;
+                strings[i] = null;
+            }
+        }
+    }
+
+    private static class RowWriteSupport extends WriteSupport<RowBuffer> {
+        private final MessageType schema;
+        private RecordConsumer recordConsumer;
+
+        RowWriteSupport(MessageType schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public WriteContext init(Configuration configuration) {
+            return new WriteContext(schema, Collections.emptyMap());
+        }
+
+        @Override
+        public void prepareForWrite(RecordConsumer recordConsumer) {
+            this.recordConsumer = recordConsumer;
+        }
+
+        @Override
+        public void write(RowBuffer row) {
+            recordConsumer.startMessage();
+            for (int i = 0; i < row.column; i++) {
+                if (row.nulls[i]) {
+                    continue;
+                }
+                ReportColumn column = row.columns.get(i);
+                recordConsumer.startField(column.getName(), i);
+                switch (column.getType()) {
+                    case INT:
+                        recordConsumer.addInteger((int) row.longs[i]);
+                        break;
+                    case DOUBLE:
+                        recordConsumer.addDouble(row.doubles[i]);
+                        break;
+                    case STRING:
+                        recordConsumer.addBinary(Binary.fromString(row.strings[i]));
+                        break;
+                    case DATE_TIME:
+                        recordConsumer.addLong(row.longs[i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported column type " + column.getType());
+                }
+                recordConsumer.endField(column.getName(), i);
+            }
+            recordConsumer.endMessage();
+        }
+    }
+
+    private static class Builder extends ParquetWriter.Builder<RowBuffer, Builder> {
+        private final MessageType schema;
+
+        Builder(OutputFile outputFile, MessageType schema) {
+            super(outputFile);
+            this.schema = schema;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<RowBuffer> getWriteSupport(Configuration configuration) {
+            return new RowWriteSupport(schema);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+
+@Component
+public class ParquetReportWriterProvider implements ReportWriterProvider {
+    private final CompressionCodecName compressionCodec;
+    private final int rowGroupSize;
+    private final int pageSize;
+
+    public ParquetReportWriterProvider(@Value("${report.parquet.compression}") CompressionCodecName compressionCodec,
+                                       @Value("${report.parquet.row-group-size}") Integer rowGroupSize,
+                                       @Value("${report.parquet.page-size}") Integer pageSize) {
+        this.compressionCodec = compressionCodec;
+        this.rowGroupSize = rowGroupSize;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public ReportFormat getFormat() {
+        return ReportFormat.PARQUET;
+    }
+
+    @Override
+    public ReportWriter create(OutputStream outputStream) {
+        return new ParquetReportWriter(outputStream, compressionCodec, rowGroupSize, pageSize);
+    }
+}
@@ -0,0 +1,10 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import lombok.Data;
+
+@Data
+public class ReportColumn {
+    private final String name;
+    private final String title;
+    private final ColumnType type;
+}
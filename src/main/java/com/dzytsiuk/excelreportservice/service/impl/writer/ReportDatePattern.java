@@ -0,0 +1,296 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// request.date.format compiled once. Numeric year, month, day, hour, minute, second and fraction fields with
+// literals between them are formatted straight from epoch millis into a caller owned char buffer, without
+// LocalDateTime or String. Any other pattern letter falls back to DateTimeFormatter for the whole pattern.
+public final class ReportDatePattern {
+    // xlsx date format when the pattern cannot be translated
+    private static final String DEFAULT_EXCEL_FORMAT = "yyyy-mm-dd hh:mm:ss";
+    private static final LocalDateTime SAMPLE_DATE_TIME = LocalDateTime.of(2000, 12, 31, 23, 59, 59);
+    private static final String EXCEL_PLAIN_LITERALS = " -/:.,()";
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int MAX_YEAR = 9999;
+
+    private static final int YEAR = 0;
+    private static final int YEAR_OF_CENTURY = 1;
+    private static final int MONTH = 2;
+    private static final int DAY = 3;
+    private static final int HOUR = 4;
+    private static final int MINUTE = 5;
+    private static final int SECOND = 6;
+    private static final int FRACTION = 7;
+    private static final int LITERAL = 8;
+
+    private final String pattern;
+    private final DateTimeFormatter formatter;
+    private final Field[] fields;
+    private final int maxLength;
+
+    private ReportDatePattern(String pattern, Field[] fields) {
+        this.pattern = pattern;
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+        this.fields = fields;
+        int length = 0;
+        if (fields != null) {
+            for (Field field : fields) {
+                length += field.getMaxLength();
+            }
+        }
+        this.maxLength = length;
+    }
+
+    public static ReportDatePattern of(String pattern) {
+        return new ReportDatePattern(pattern, compile(pattern));
+    }
+
+    public boolean isCompiled() {
+        return fields != null;
+    }
+
+    public char[] createBuffer() {
+        return new char[maxLength];
+    }
+
+    // width of a formatted date in characters
+    public int getWidth() {
+        return SAMPLE_DATE_TIME.format(formatter).length();
+    }
+
+    public void formatTo(long epochMillis, char[] buffer, Writer writer) throws IOException {
+        int length = format(epochMillis, buffer);
+        if (length < 0) {
+            formatter.formatTo(ReportDates.toLocalDateTime(epochMillis), writer);
+        } else {
+            writer.write(buffer, 0, length);
+        }
+    }
+
+    public String format(long epochMillis) {
+        return ReportDates.toLocalDateTime(epochMillis).format(formatter);
+    }
+
+    // -1 when the pattern is not compiled or the year is outside 1..9999
+    public int format(long epochMillis, char[] buffer) {
+        if (fields == null) {
+            return -1;
+        }
+        long days = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        int millisOfDay = (int) Math.floorMod(epochMillis, MILLIS_PER_DAY);
+        // civil from days, days counted from 0000-03-01 so the leap day ends the year
+        long shiftedDays = days + 719_468;
+        long era = Math.floorDiv(shiftedDays, 146_097);
+        int dayOfEra = (int) (shiftedDays - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+        if (year < 1 || year > MAX_YEAR) {
+            return -1;
+        }
+
+        int position = 0;
+        for (Field field : fields) {
+            switch (field.type) {
+                case YEAR:
+                    position = appendPadded(buffer, position, (int) year, field.width);
+                    break;
+                case YEAR_OF_CENTURY:
+                    position = appendPadded(buffer, position, (int) (year % 100), 2);
+                    break;
+                case MONTH:
+                    position = appendPadded(buffer, position, month, field.width);
+                    break;
+                case DAY:
+                    position = appendPadded(buffer, position, day, field.width);
+                    break;
+                case HOUR:
+                    position = appendPadded(buffer, position, millisOfDay / 3_600_000, field.width);
+                    break;
+                case MINUTE:
+                    position = appendPadded(buffer, position, millisOfDay / 60_000 % 60, field.width);
+                    break;
+                case SECOND:
+                    position = appendPadded(buffer, position, millisOfDay / 1000 % 60, field.width);
+                    break;
+                case FRACTION:
+                    position = appendFraction(buffer, position, millisOfDay % 1000, field.width);
+                    break;
+                default:
+                    field.literal.getChars(0, field.literal.length(), buffer, position);
+                    position += field.literal.length();
+            }
+        }
+        return position;
+    }
+
+    // the same fields as an xlsx number format, m is read as minutes after an hour and as month elsewhere
+    public String toExcelFormat() {
+        if (fields == null) {
+            return DEFAULT_EXCEL_FORMAT;
+        }
+        StringBuilder excelFormat = new StringBuilder();
+        for (Field field : fields) {
+            switch (field.type) {
+                case YEAR:
+                    excelFormat.append("yyyy");
+                    break;
+                case YEAR_OF_CENTURY:
+                    excelFormat.append("yy");
+                    break;
+                case MONTH:
+                case MINUTE:
+                    excelFormat.append(field.width == 1 ? "m" : "mm");
+                    break;
+                case DAY:
+                    excelFormat.append(field.width == 1 ? "d" : "dd");
+                    break;
+                case HOUR:
+                    excelFormat.append(field.width == 1 ? "h" : "hh");
+                    break;
+                case SECOND:
+                    excelFormat.append(field.width == 1 ? "s" : "ss");
+                    break;
+                case FRACTION:
+                    for (int i = 0; i < Math.min(field.width, 3); i++) {
+                        excelFormat.append('0');
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < field.literal.length(); i++) {
+                        char c = field.literal.charAt(i);
+                        if (EXCEL_PLAIN_LITERALS.indexOf(c) < 0) {
+                            excelFormat.append('\\');
+                        }
+                        excelFormat.append(c);
+                    }
+            }
+        }
+        return excelFormat.toString();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    // null when the pattern has a field that is not numeric
+    private static Field[] compile(String pattern) {
+        List<Field> fields = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                int end = pattern.indexOf('\'', i + 1);
+                if (end < 0) {
+                    return null;
+                }
+                literal.append(end == i + 1 ? "'" : pattern.substring(i + 1, end));
+                i = end + 1;
+                continue;
+            }
+            if ("[]{}#".indexOf(c) >= 0) {
+                return null;
+            }
+            if ((c < 'A' || c > 'Z') && (c < 'a' || c > 'z')) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            int count = 1;
+            while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+                count++;
+            }
+            Field field = createField(c, count);
+            if (field == null) {
+                return null;
+            }
+            if (literal.length() > 0) {
+                fields.add(new Field(LITERAL, 0, literal.toString()));
+                literal.setLength(0);
+            }
+            fields.add(field);
+            i += count;
+        }
+        if (literal.length() > 0) {
+            fields.add(new Field(LITERAL, 0, literal.toString()));
+        }
+        return fields.toArray(new Field[0]);
+    }
+
+    private static Field createField(char letter, int count) {
+        switch (letter) {
+            case 'y':
+            case 'u':
+                return count == 2 ? new Field(YEAR_OF_CENTURY, 2, null) : new Field(YEAR, count, null);
+            case 'M':
+                return count <= 2 ? new Field(MONTH, count, null) : null;
+            case 'd':
+                return count <= 2 ? new Field(DAY, count, null) : null;
+            case 'H':
+                return count <= 2 ? new Field(HOUR, count, null) : null;
+            case 'm':
+                return count <= 2 ? new Field(MINUTE, count, null) : null;
+            case 's':
+                return count <= 2 ? new Field(SECOND, count, null) : null;
+            case 'S':
+                return count <= 9 ? new Field(FRACTION, count, null) : null;
+            default:
+                return null;
+        }
+    }
+
+    private static int appendPadded(char[] buffer, int position, int value, int width) {
+        int digits = value < 10 ? 1 : value < 100 ? 2 : value < 1000 ? 3 : 4;
+        for (int i = digits; i < width; i++) {
+            buffer[position++] = '0';
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[position + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    // digits finer than millis are always zero
+    private static int appendFraction(char[] buffer, int position, int millis, int width) {
+        for (int i = 0, divisor = 100; i < width; i++, divisor /= 10) {
+            buffer[position++] = divisor == 0 ? '0' : (char) ('0' + millis / divisor % 10);
+        }
+        return position;
+    }
+
+    private static final class Field {
+        private final int type;
+        private final int width;
+        private final String literal;
+
+        private Field(int type, int width, String literal) {
+            this.type = type;
+            this.width = width;
+            this.literal = literal;
+        }
+
+        private int getMaxLength() {
+            switch (type) {
+                case YEAR:
+                    return Math.max(width, 4);
+                case FRACTION:
+                    return width;
+                case LITERAL:
+                    return literal.length();
+                default:
+                    return Math.max(width, 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+final class ReportDates {
+    // day 0 of the 1900 date system is 1899-12-30 once its false 1900-02-29 is behind
+    private static final double EXCEL_EPOCH_DAYS = 25569;
+    private static final double FIRST_EXACT_EXCEL_DATE = 61;
+    private static final double MILLIS_PER_DAY = 86_400_000;
+
+    private ReportDates() {
+    }
+
+    // report dates are local date times stored as epoch millis in UTC
+    static LocalDateTime toLocalDateTime(long epochMillis) {
+        long seconds = Math.floorDiv(epochMillis, 1000L);
+        int nanos = (int) Math.floorMod(epochMillis, 1000L) * 1_000_000;
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    // serial date of the 1900 date system, NaN before 1900-03-01
+    static double toExcelDate(long epochMillis) {
+        double excelDate = EXCEL_EPOCH_DAYS + epochMillis / MILLIS_PER_DAY;
+        return excelDate < FIRST_EXACT_EXCEL_DATE ? Double.NaN : excelDate;
+    }
+}
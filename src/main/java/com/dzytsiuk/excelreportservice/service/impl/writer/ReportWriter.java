@@ -0,0 +1,28 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+// Writes one report table row by row: startReport once, then for every row startRow, one write call per
+// column in column order and endRow. finish completes the output, close releases what the writer holds
+// and leaves the output stream open.
+public interface ReportWriter extends Closeable {
+    void startReport(String name, List<ReportColumn> columns) throws IOException;
+
+    void startRow() throws IOException;
+
+    void writeInt(int value) throws IOException;
+
+    void writeDouble(double value) throws IOException;
+
+    void writeString(String value) throws IOException;
+
+    void writeDateTime(long epochMillis) throws IOException;
+
+    void writeBlank() throws IOException;
+
+    void endRow() throws IOException;
+
+    void finish() throws IOException;
+}
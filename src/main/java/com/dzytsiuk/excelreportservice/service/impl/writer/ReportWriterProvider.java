@@ -0,0 +1,16 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+
+import java.io.OutputStream;
+import java.util.List;
+
+public interface ReportWriterProvider {
+    ReportFormat getFormat();
+
+    // called at startup for every column layout the generator uses
+    default void prepare(List<ReportColumn> columns) {
+    }
+
+    ReportWriter create(OutputStream outputStream);
+}
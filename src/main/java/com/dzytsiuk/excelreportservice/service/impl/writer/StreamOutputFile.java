@@ -0,0 +1,77 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Parquet output into a stream we do not own: the position is counted here and closing the file only flushes.
+// Once discarded, whatever the parquet writer still writes is dropped
+public class StreamOutputFile implements OutputFile {
+    private final OutputStream outputStream;
+    private boolean discarded;
+
+    public StreamOutputFile(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    public void discard() {
+        discarded = true;
+    }
+
+    @Override
+    public PositionOutputStream create(long blockSizeHint) {
+        return new PositionOutputStream() {
+            private long position;
+
+            @Override
+            public long getPos() {
+                return position;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                if (!discarded) {
+                    outputStream.write(b);
+                }
+                position++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (!discarded) {
+                    outputStream.write(b, off, len);
+                }
+                position += len;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (!discarded) {
+                    outputStream.flush();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+        return create(blockSizeHint);
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+        return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+        return 0;
+    }
+}
@@ -0,0 +1,76 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.util.List;
+
+// Header titles and column widths of a report layout, computed once and stamped onto every sheet.
+// Styles belong to a workbook, so they are created per report and passed in.
+public class XlsxReportTemplate {
+    private static final int INT_WIDTH = 10;
+    private static final int DOUBLE_WIDTH = 12;
+    private static final int STRING_WIDTH = 30;
+    private static final int WIDTH_PADDING = 2;
+
+    private final String[] titles;
+    private final int[] columnWidths;
+    private final boolean[] dateColumns;
+
+    public XlsxReportTemplate(List<ReportColumn> columns, ReportDatePattern datePattern) {
+        int dateTimeWidth = datePattern.getWidth();
+        titles = new String[columns.size()];
+        columnWidths = new int[columns.size()];
+        dateColumns = new boolean[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            ReportColumn column = columns.get(i);
+            titles[i] = column.getTitle();
+            dateColumns[i] = column.getType() == ColumnType.DATE_TIME;
+            int width = Math.max(column.getTitle().length(), getWidth(column.getType(), dateTimeWidth));
+            // in 1/256 of a character
+            columnWidths[i] = (width + WIDTH_PADDING) * 256;
+        }
+    }
+
+    // the column style covers the cells that are not written, a written cell shows the style it carries
+    public void applyColumns(Sheet sheet, CellStyle columnStyle, CellStyle dateStyle) {
+        for (int i = 0; i < titles.length; i++) {
+            sheet.setColumnWidth(i, columnWidths[i]);
+            sheet.setDefaultColumnStyle(i, dateColumns[i] ? dateStyle : columnStyle);
+        }
+    }
+
+    // the style a written cell of each column carries, null for the columns shown with the default style
+    public CellStyle[] getCellStyles(CellStyle dateStyle) {
+        CellStyle[] cellStyles = new CellStyle[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            if (dateColumns[i]) {
+                cellStyles[i] = dateStyle;
+            }
+        }
+        return cellStyles;
+    }
+
+    public void fillHeader(Row header, CellStyle headerStyle) {
+        for (int i = 0; i < titles.length; i++) {
+            Cell cell = header.createCell(i);
+            cell.setCellValue(titles[i]);
+            cell.setCellStyle(headerStyle);
+        }
+    }
+
+    private static int getWidth(ColumnType type, int dateTimeWidth) {
+        switch (type) {
+            case INT:
+                return INT_WIDTH;
+            case DOUBLE:
+                return DOUBLE_WIDTH;
+            case DATE_TIME:
+                return dateTimeWidth;
+            default:
+                return STRING_WIDTH;
+        }
+    }
+}
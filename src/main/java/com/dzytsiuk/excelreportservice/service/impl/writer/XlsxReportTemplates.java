@@ -0,0 +1,19 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keyed by the column list, one per report type since the generator keeps them in constants
+public class XlsxReportTemplates {
+    private final Map<List<ReportColumn>, XlsxReportTemplate> templates = new ConcurrentHashMap<>();
+    private final ReportDatePattern datePattern;
+
+    public XlsxReportTemplates(ReportDatePattern datePattern) {
+        this.datePattern = datePattern;
+    }
+
+    public XlsxReportTemplate get(List<ReportColumn> columns) {
+        return templates.computeIfAbsent(columns, key -> new XlsxReportTemplate(key, datePattern));
+    }
+}
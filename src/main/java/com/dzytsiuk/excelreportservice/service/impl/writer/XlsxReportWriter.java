@@ -0,0 +1,149 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import com.dzytsiuk.excelreportservice.service.impl.ReportWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+// Rows go to sheets of at most rowsPerSheet rows under a repeated header: name, name_2, name_3...
+public class XlsxReportWriter implements ReportWriter {
+    // rows of an xlsx sheet below the header
+    public static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+    private static final short SMALL_FONT_SIZE = 12;
+    private static final short LARGE_FONT_SIZE = 16;
+
+    private final ReportWorkbook workbook;
+    private final OutputStream outputStream;
+    private final ReportDatePattern datePattern;
+    private final XlsxReportTemplates templates;
+    private final int rowsPerSheet;
+    private String name;
+    private XlsxReportTemplate template;
+    private CellStyle headerStyle;
+    private CellStyle columnStyle;
+    private CellStyle dateStyle;
+    private CellStyle[] cellStyles;
+    private int sheetCount;
+    private Row row;
+    private int rowNumber;
+    private int column;
+
+    public XlsxReportWriter(ReportWorkbook workbook, OutputStream outputStream, ReportDatePattern datePattern,
+                            XlsxReportTemplates templates, int rowsPerSheet) {
+        this.workbook = workbook;
+        this.outputStream = outputStream;
+        this.datePattern = datePattern;
+        this.templates = templates;
+        this.rowsPerSheet = Math.max(1, Math.min(rowsPerSheet, MAX_ROWS_PER_SHEET));
+    }
+
+    @Override
+    public void startReport(String name, List<ReportColumn> columns) {
+        this.name = name;
+        template = templates.get(columns);
+        headerStyle = createCellStyle(LARGE_FONT_SIZE);
+        columnStyle = createCellStyle(SMALL_FONT_SIZE);
+        dateStyle = createCellStyle(SMALL_FONT_SIZE);
+        dateStyle.setDataFormat(workbook.createDataFormat().getFormat(datePattern.toExcelFormat()));
+        cellStyles = template.getCellStyles(dateStyle);
+        startSheet();
+    }
+
+    @Override
+    public void startRow() {
+        if (rowNumber > rowsPerSheet) {
+            startSheet();
+        }
+        row = workbook.createRow(rowNumber++);
+        column = 0;
+    }
+
+    @Override
+    public void writeInt(int value) {
+        nextCell().setCellValue(value);
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        nextCell().setCellValue(value);
+    }
+
+    @Override
+    public void writeString(String value) {
+        nextCell().setCellValue(value);
+    }
+
+    // a number in the date column style, only dates Excel cannot show are written as text
+    @Override
+    public void writeDateTime(long epochMillis) {
+        Cell cell = nextCell();
+        double excelDate = ReportDates.toExcelDate(epochMillis);
+        if (Double.isNaN(excelDate)) {
+            cell.setCellValue(datePattern.format(epochMillis));
+        } else {
+            cell.setCellValue(excelDate);
+        }
+    }
+
+    @Override
+    public void writeBlank() {
+        column++;
+    }
+
+    @Override
+    public void endRow() {
+        row = null;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        workbook.write(outputStream);
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        workbook.close();
+    }
+
+    public boolean isStreaming() {
+        return workbook.isStreaming();
+    }
+
+    public int getSheetCount() {
+        return sheetCount;
+    }
+
+    private void startSheet() {
+        sheetCount++;
+        Sheet sheet = workbook.createSheet(sheetCount == 1 ? name : name + "_" + sheetCount);
+        template.applyColumns(sheet, columnStyle, dateStyle);
+        template.fillHeader(workbook.createRow(0), headerStyle);
+        rowNumber = 1;
+    }
+
+    // a cell created in a styled column takes the style resolved for it once per report
+    private Cell nextCell() {
+        Cell cell = row.createCell(column);
+        CellStyle cellStyle = cellStyles[column++];
+        if (cellStyle != null) {
+            cell.setCellStyle(cellStyle);
+        }
+        return cell;
+    }
+
+    private CellStyle createCellStyle(short fontSize) {
+        Font font = workbook.createFont();
+        font.setFontHeightInPoints(fontSize);
+        CellStyle cellStyle = workbook.createCellStyle();
+        cellStyle.setFont(font);
+        return cellStyle;
+    }
+}
@@ -0,0 +1,48 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.service.impl.ReportWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.util.List;
+
+@Component
+public class XlsxReportWriterProvider implements ReportWriterProvider {
+    private final ReportDatePattern datePattern;
+    private final XlsxReportTemplates templates;
+    @Value("${report.streaming.enabled}")
+    private boolean streamingEnabled;
+    @Value("${report.streaming.row-threshold}")
+    private Integer streamingRowThreshold;
+    @Value("${report.streaming.window-size}")
+    private Integer rowAccessWindowSize;
+    @Value("${report.streaming.compress-tmp-files}")
+    private boolean compressTmpFiles;
+    @Value("${report.xlsx.rows-per-sheet}")
+    private Integer rowsPerSheet;
+
+    public XlsxReportWriterProvider(ReportDatePattern datePattern) {
+        this.datePattern = datePattern;
+        this.templates = new XlsxReportTemplates(datePattern);
+    }
+
+    @Override
+    public ReportFormat getFormat() {
+        return ReportFormat.XLSX;
+    }
+
+    @Override
+    public void prepare(List<ReportColumn> columns) {
+        templates.get(columns);
+    }
+
+    @Override
+    public ReportWriter create(OutputStream outputStream) {
+        // the workbook switches to streaming by itself once the row threshold is passed
+        ReportWorkbook workbook = new ReportWorkbook(streamingEnabled, streamingRowThreshold, rowAccessWindowSize,
+                compressTmpFiles);
+        return new XlsxReportWriter(workbook, outputStream, datePattern, templates, rowsPerSheet);
+    }
+}
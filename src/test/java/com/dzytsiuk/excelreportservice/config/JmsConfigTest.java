@@ -0,0 +1,98 @@
+package com.dzytsiuk.excelreportservice.config;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.RedeliveryPolicy;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JmsConfigTest {
+    private JmsConfig jmsConfig;
+
+    @Before
+    public void setUp() {
+        jmsConfig = new JmsConfig();
+        ReflectionTestUtils.setField(jmsConfig, "url", "vm://jms-config-test?create=false");
+        ReflectionTestUtils.setField(jmsConfig, "username", "admin");
+        ReflectionTestUtils.setField(jmsConfig, "password", "admin");
+        ReflectionTestUtils.setField(jmsConfig, "processingQueue", "processing");
+        ReflectionTestUtils.setField(jmsConfig, "listenerConcurrency", "1-4");
+        ReflectionTestUtils.setField(jmsConfig, "unitQueue", "processing.units");
+        ReflectionTestUtils.setField(jmsConfig, "listenerPrefetch", 1);
+        ReflectionTestUtils.setField(jmsConfig, "unitListenerConcurrency", "8-28");
+        ReflectionTestUtils.setField(jmsConfig, "maxRedeliveries", 5);
+        ReflectionTestUtils.setField(jmsConfig, "initialRedeliveryDelay", 1000L);
+        ReflectionTestUtils.setField(jmsConfig, "redeliveryMultiplier", 2.0);
+    }
+
+    // a consumer holds at most one unconsumed request, the rest stays on the broker for other instances
+    @Test
+    public void testConnectionFactoryLimitsPrefetchAndBacksOffRedelivery() {
+        ActiveMQConnectionFactory connectionFactory = (ActiveMQConnectionFactory) jmsConfig.connectionFactory();
+
+        assertEquals(1, connectionFactory.getPrefetchPolicy().getQueuePrefetch());
+        RedeliveryPolicy redeliveryPolicy = connectionFactory.getRedeliveryPolicy();
+        assertEquals(5, redeliveryPolicy.getMaximumRedeliveries());
+        assertEquals(1000, redeliveryPolicy.getInitialRedeliveryDelay());
+        assertTrue(redeliveryPolicy.isUseExponentialBackOff());
+        assertEquals(2.0, redeliveryPolicy.getBackOffMultiplier(), 0.0);
+    }
+
+    @Test
+    public void testBatchListenerIsTransactedWithConfiguredConcurrency() {
+        DefaultMessageListenerContainer container = createContainer(jmsConfig.jmsListenerContainerFactory(),
+                "processing");
+
+        assertTrue(container.isSessionTransacted());
+        assertEquals(1, container.getConcurrentConsumers());
+        assertEquals(4, container.getMaxConcurrentConsumers());
+    }
+
+    @Test
+    public void testUnitListenerIsTransactedWithConfiguredConcurrency() {
+        DefaultMessageListenerContainer container = createContainer(jmsConfig.unitListenerContainerFactory(),
+                "processing.units?consumer.prefetchSize=0");
+
+        assertTrue(container.isSessionTransacted());
+        assertEquals(8, container.getConcurrentConsumers());
+        assertEquals(28, container.getMaxConcurrentConsumers());
+        assertEquals("processing.units?consumer.prefetchSize=0", container.getDestinationName());
+    }
+
+    // a consumer beyond the reports admitted at once would only wait in the admission controller
+    @Test
+    public void testUnitListenerConcurrencyMatchesAdmissionLimits() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        Properties properties = yaml.getObject();
+        String concurrency = properties.getProperty("activemq.listener.units.concurrency");
+        int inFlight = 0;
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("admission.in-flight.")) {
+                inFlight += Integer.parseInt(properties.getProperty(name));
+            }
+        }
+
+        assertEquals(inFlight, Integer.parseInt(concurrency.substring(concurrency.indexOf('-') + 1)));
+    }
+
+    private DefaultMessageListenerContainer createContainer(DefaultJmsListenerContainerFactory factory,
+                                                            String destination) {
+        SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+        endpoint.setId(destination);
+        endpoint.setDestination(destination);
+        endpoint.setMessageListener(message -> {
+        });
+        return factory.createListenerContainer(endpoint);
+    }
+}
@@ -0,0 +1,64 @@
+package com.dzytsiuk.excelreportservice.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+
+public class LocalDateTimeDeserializerTest {
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final LocalDateTimeDeserializer deserializer = new LocalDateTimeDeserializer();
+
+    @Test
+    public void testMatchesLocalDateTimeParse() throws IOException {
+        String[] values = {"2019-01-02T10:15", "2019-01-02T10:15:30", "2019-01-02T10:15:30.1",
+                "2019-01-02T10:15:30.123", "2019-01-02T10:15:30.123456789", "2000-02-29T23:59:59",
+                "1969-12-31T23:59:59.999", "1900-03-01T00:00", "2019-12-31T00:00:00"};
+        for (String value : values) {
+            LocalDateTime expected = LocalDateTime.parse(value);
+            assertEquals(value, expected, deserialize(value));
+            long expectedMillis = expected.toInstant(ZoneOffset.UTC).toEpochMilli();
+            assertEquals(value, expectedMillis, parseEpochMillis(value));
+        }
+    }
+
+    @Test
+    public void testOtherFormatsFallBackToLocalDateTimeParse() throws IOException {
+        String value = "+12019-01-02T10:15:30";
+        assertEquals(LocalDateTime.parse(value), deserialize(value));
+    }
+
+    @Test(expected = DateTimeException.class)
+    public void testInvalidDateIsRejected() throws IOException {
+        parseEpochMillis("2019-02-29T10:15:30");
+    }
+
+    @Test(expected = DateTimeException.class)
+    public void testInvalidDateIsRejectedByDeserializer() throws IOException {
+        deserialize("2019-13-01T10:15:30");
+    }
+
+    private LocalDateTime deserialize(String value) throws IOException {
+        try (JsonParser parser = parser(value)) {
+            return deserializer.deserialize(parser, null);
+        }
+    }
+
+    private long parseEpochMillis(String value) throws IOException {
+        try (JsonParser parser = parser(value)) {
+            return LocalDateTimeDeserializer.parseEpochMillis(parser);
+        }
+    }
+
+    private JsonParser parser(String value) throws IOException {
+        JsonParser parser = jsonFactory.createParser("\"" + value + "\"");
+        parser.nextToken();
+        return parser;
+    }
+}
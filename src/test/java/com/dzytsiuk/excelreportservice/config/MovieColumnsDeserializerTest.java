@@ -0,0 +1,76 @@
+package com.dzytsiuk.excelreportservice.config;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MovieColumnsDeserializerTest {
+    private static final String PAGE = "[" +
+            "{\"id\":1,\"nameNative\":\"The Matrix\",\"nameRussian\":\"Matritsa\",\"description\":\"Neo\"," +
+            "\"rating\":8.7,\"price\":120.5,\"addDate\":\"2019-01-02T10:15:30\"," +
+            "\"lastModifiedDate\":\"2019-01-03T11:00:00\",\"reviewCount\":3,\"genres\":\"sci-fi, action\"," +
+            "\"countries\":[{\"id\":1,\"name\":\"USA\"}]}," +
+            "{\"id\":2,\"nameNative\":\"Heat\",\"description\":null,\"rating\":\"NaN\",\"price\":null," +
+            "\"addDate\":null,\"lastModifiedDate\":\"2019-01-04T12:30:00\",\"reviewCount\":0,\"genres\":\"sci-fi, action\"}," +
+            "{\"id\":3,\"genres\":\"drama\"}" +
+            "]";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testDecodesSameValuesAsReportMovie() throws Exception {
+        MovieColumns columns = objectMapper.readValue(PAGE, MovieColumns.class);
+        List<ReportMovie> movies = objectMapper.readValue(PAGE.replace(",\"countries\":[{\"id\":1,\"name\":\"USA\"}]", ""),
+                new TypeReference<List<ReportMovie>>() {
+                });
+
+        assertEquals(movies.size(), columns.size());
+        for (int i = 0; i < movies.size(); i++) {
+            ReportMovie movie = movies.get(i);
+            assertEquals(movie.getId(), columns.getId(i));
+            assertEquals(movie.getNameNative(), columns.getNameNative(i));
+            assertEquals(movie.getDescription(), columns.getDescription(i));
+            assertEquals(movie.getGenres(), columns.getGenres(i));
+            assertEquals(nvl(movie.getPrice()), columns.getPrice(i), 0.0);
+            assertEquals(nvl(movie.getRating()), columns.getRating(i), 0.0);
+            assertEquals(movie.getAddDate(), columns.getAddDate(i));
+            assertEquals(movie.getLastModifiedDate(), columns.getLastModifiedDate(i));
+            assertEquals(movie.getReviewCount(), columns.getReviewCount(i));
+        }
+    }
+
+    @Test
+    public void testNullsAndNaNAndGenreDictionary() throws Exception {
+        MovieColumns columns = objectMapper.readValue(PAGE, MovieColumns.class);
+
+        assertEquals(120.5, columns.getPrice(0), 0.0);
+        assertEquals(0.0, columns.getPrice(1), 0.0);
+        assertEquals(0.0, columns.getRating(1), 0.0);
+        assertFalse(columns.hasAddDate(1));
+        assertNull(columns.getAddDate(1));
+        assertTrue(columns.hasLastModifiedDate(1));
+        assertEquals(LocalDateTime.of(2019, 1, 4, 12, 30), columns.getLastModifiedDate(1));
+        assertNull(columns.getDescription(2));
+        assertFalse(columns.hasLastModifiedDate(2));
+        assertEquals(2, columns.getGenreDictionarySize());
+    }
+
+    @Test
+    public void testEmptyPage() throws Exception {
+        assertTrue(objectMapper.readValue("[]", MovieColumns.class).isEmpty());
+    }
+
+    private static double nvl(Double value) {
+        return value == null || value.isNaN() ? 0.0 : value;
+    }
+}
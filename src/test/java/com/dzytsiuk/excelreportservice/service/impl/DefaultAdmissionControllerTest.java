@@ -0,0 +1,59 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+
+public class DefaultAdmissionControllerTest {
+    private final ExecutorService consumers = Executors.newCachedThreadPool();
+    private DefaultAdmissionController admissionController;
+
+    @Before
+    public void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("admission.in-flight.allMovies", "2")
+                .withProperty("admission.in-flight.topActiveUsers", "1");
+        admissionController = new DefaultAdmissionController(environment);
+    }
+
+    @After
+    public void tearDown() {
+        consumers.shutdownNow();
+    }
+
+    @Test(timeout = 10_000)
+    public void testAcquireBlocksAtLimitOfItsType() throws Exception {
+        admissionController.acquire(ReportType.ALL_MOVIES);
+        admissionController.acquire(ReportType.ALL_MOVIES);
+
+        Future<?> blocked = consumers.submit(() -> admissionController.acquire(ReportType.ALL_MOVIES));
+
+        Thread.sleep(200);
+        assertFalse(blocked.isDone());
+        // other types have their own limits
+        admissionController.acquire(ReportType.TOP_ACTIVE_USERS);
+        admissionController.acquire(ReportType.ADDED_DURING_PERIOD);
+        blocked.cancel(true);
+    }
+
+    @Test(timeout = 10_000)
+    public void testReleaseFreesSlot() throws Exception {
+        admissionController.acquire(ReportType.TOP_ACTIVE_USERS);
+        Future<?> waiting = consumers.submit(() -> admissionController.acquire(ReportType.TOP_ACTIVE_USERS));
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        admissionController.release(ReportType.TOP_ACTIVE_USERS);
+
+        waiting.get(5, TimeUnit.SECONDS);
+    }
+}
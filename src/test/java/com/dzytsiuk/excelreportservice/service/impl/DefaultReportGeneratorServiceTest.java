@@ -0,0 +1,202 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.ReportCheckpointStore;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MovieFetchMode;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePageIteratorFactory;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportStage;
+import com.dzytsiuk.excelreportservice.service.impl.writer.CsvReportWriterProvider;
+import com.dzytsiuk.excelreportservice.service.impl.writer.GzipCsvReportWriterProvider;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportDatePattern;
+import com.dzytsiuk.excelreportservice.service.impl.writer.XlsxReportWriterProvider;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultReportGeneratorServiceTest {
+    private static final int TOTAL_ROWS = 1_000_000;
+    private static final int FETCH_SIZE = 1000;
+    private static final long HEAP_CEILING = 128L * 1024 * 1024;
+    private static final String REPORT_ID = "memory-footprint-test";
+
+    private final Path reportDirectory = Paths.get("tmp/checkpoints/" + REPORT_ID);
+    private final ExecutorService fetchExecutor = Executors.newSingleThreadExecutor();
+    private long baselineHeap;
+    private volatile long peakHeap;
+
+    @Before
+    public void setUp() throws Exception {
+        baselineHeap = usedHeap();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fetchExecutor.shutdownNow();
+        new ReportCheckpointStore(null, false, "tmp/checkpoints").delete(REPORT_ID);
+    }
+
+    @Test
+    public void testMovieReportHeapStaysBounded() throws Exception {
+        MovieService movieService = (page, count, reportParameter) -> {
+            int from = (page - 1) * count;
+            int to = Math.min(from + count, TOTAL_ROWS);
+            List<ReportMovie> movies = new ArrayList<>();
+            for (int id = from; id < to; id++) {
+                movies.add(createMovie(id));
+            }
+            return movies;
+        };
+        DefaultReportGeneratorService service = createService(movieService, new ReportMetrics(new SimpleMeterRegistry()));
+
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId(REPORT_ID);
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        // sampled through fetching, writing and finishing the workbook, not only while pages are fetched
+        ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor();
+        heapSampler.scheduleWithFixedDelay(() -> peakHeap = Math.max(peakHeap, usedHeap()), 0, 200, TimeUnit.MILLISECONDS);
+        try (InputStream inputStream = service.generateReport(reportRequest)) {
+            assertTrue(inputStream.available() > 0);
+        } finally {
+            heapSampler.shutdown();
+            heapSampler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertFalse(Files.exists(reportDirectory));
+
+        long heapGrowth = peakHeap - baselineHeap;
+        assertTrue("Heap grew by " + heapGrowth + " bytes", heapGrowth < HEAP_CEILING);
+    }
+
+    @Test
+    public void testStageMetricsAreRecorded() {
+        int totalRows = 2500;
+        MovieService movieService = createMovieService(totalRows);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DefaultReportGeneratorService service = createService(movieService, new ReportMetrics(meterRegistry));
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId("metrics-test");
+        reportRequest.setReportType(ReportType.ADDED_DURING_PERIOD);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        service.generateReport(reportRequest, outputStream);
+
+        String type = ReportType.ADDED_DURING_PERIOD.getName();
+        for (ReportStage stage : new ReportStage[]{ReportStage.FETCH, ReportStage.WRITE, ReportStage.SERIALIZE}) {
+            Timer timer = meterRegistry.get("report.stage").tag("type", type).tag("stage", stage.getName()).timer();
+            assertEquals(stage.getName(), 1, timer.count());
+        }
+        for (ReportStage stage : new ReportStage[]{ReportStage.QUEUE, ReportStage.UPLOAD, ReportStage.NOTIFY}) {
+            assertEquals(stage.getName(), 0,
+                    meterRegistry.get("report.stage").tag("type", type).tag("stage", stage.getName()).timer().count());
+        }
+        assertEquals(totalRows, meterRegistry.get("report.rows").tag("type", type).counter().count(), 0.0);
+        assertEquals(1, meterRegistry.get("report.rows.per.second").tag("type", type).summary().count());
+        assertEquals(outputStream.size(), meterRegistry.get("report.bytes.written").tag("type", type).counter().count(), 0.0);
+        assertEquals(0, meterRegistry.get("report.rows").tag("type", ReportType.ALL_MOVIES.getName()).counter().count(), 0.0);
+    }
+
+    @Test
+    public void testCsvReportHasLinePerMovie() throws Exception {
+        int totalRows = 2500;
+        MovieService movieService = createMovieService(totalRows);
+        DefaultReportGeneratorService service = createService(movieService, new ReportMetrics(new SimpleMeterRegistry()));
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId("csv-test");
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportFormat(ReportFormat.CSV_GZ);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        service.generateReport(reportRequest, outputStream);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray())), StandardCharsets.UTF_8))) {
+            assertEquals("Id,Title,Description,Genre,Price,Add Date,Last Modified Date,Rating,Reviews Count", reader.readLine());
+            assertEquals("0,Movie 0,\"Synthetic description of movie 0 long enough to look like a real one, "
+                    + "with a plot, a cast and a few more words to fill the cell.\",\"drama, comedy\",,2018-01-01 00:00:00,"
+                    + "2019-01-01 00:00:00,,0", reader.readLine());
+            long lines = 2;
+            while (reader.readLine() != null) {
+                lines++;
+            }
+            assertEquals(totalRows + 1, lines);
+        }
+    }
+
+    private MovieService createMovieService(int totalRows) {
+        return (page, count, reportParameter) -> {
+            List<ReportMovie> movies = new ArrayList<>();
+            for (int id = (page - 1) * count; id < Math.min(page * count, totalRows); id++) {
+                movies.add(createMovie(id));
+            }
+            return movies;
+        };
+    }
+
+    private DefaultReportGeneratorService createService(MovieService movieService, ReportMetrics reportMetrics) {
+        MoviePageIteratorFactory moviePageIteratorFactory = new MoviePageIteratorFactory(movieService, fetchExecutor,
+                MovieFetchMode.PREFETCH, FETCH_SIZE, 2, 1, 1, FETCH_SIZE);
+        ReportDatePattern datePattern = ReportDatePattern.of("yyyy-MM-dd HH:mm:ss");
+        XlsxReportWriterProvider xlsxReportWriterProvider = new XlsxReportWriterProvider(datePattern);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "streamingEnabled", false);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "streamingRowThreshold", 1000);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "rowAccessWindowSize", 100);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "compressTmpFiles", true);
+        ReflectionTestUtils.setField(xlsxReportWriterProvider, "rowsPerSheet", 1_000_000);
+        return new DefaultReportGeneratorService(moviePageIteratorFactory, Collections::emptyList,
+                Arrays.asList(xlsxReportWriterProvider, new CsvReportWriterProvider(datePattern),
+                        new GzipCsvReportWriterProvider(datePattern)), reportMetrics,
+                new ReportCheckpointStore(null, false, "tmp/checkpoints"), Runnable::run);
+    }
+
+    private ReportMovie createMovie(int id) {
+        ReportMovie movie = new ReportMovie();
+        movie.setId(id);
+        movie.setNameNative("Movie " + id);
+        movie.setDescription("Synthetic description of movie " + id + " long enough to look like a real one, "
+                + "with a plot, a cast and a few more words to fill the cell.");
+        movie.setGenres("drama, comedy");
+        movie.setPrice(id % 7 == 0 ? null : 100.5);
+        movie.setRating(id % 5 == 0 ? Double.NaN : 8.2);
+        movie.setAddDate(LocalDateTime.of(2018, 1, 1, 0, 0).plusMinutes(id));
+        movie.setLastModifiedDate(LocalDateTime.of(2019, 1, 1, 0, 0).plusMinutes(id));
+        movie.setReviewCount(id % 100);
+        return movie;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,449 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.config.JmsConfig;
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportStatus;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.AdmissionController;
+import com.dzytsiuk.excelreportservice.service.ReportGeneratorService;
+import com.dzytsiuk.excelreportservice.service.ReportScheduler;
+import com.dzytsiuk.excelreportservice.service.ReportStorage;
+import com.dzytsiuk.excelreportservice.service.impl.cache.MovieCache;
+import com.dzytsiuk.excelreportservice.service.impl.cache.MovieDataVersion;
+import com.dzytsiuk.excelreportservice.service.impl.cache.ReportResultCache;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.ReportCheckpoint;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.ReportCheckpointStore;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.ResumableReportService;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.retry.RetryPolicy;
+import com.dzytsiuk.excelreportservice.service.impl.scheduler.LaneStats;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.RedeliveryPolicy;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.Destination;
+import org.apache.activemq.broker.region.Subscription;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.SessionAwareMessageListener;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.jms.Message;
+import javax.jms.Queue;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DefaultRequestProcessorTest {
+    private static final String BROKER_NAME = "request-processor-test";
+    private static final long WORK_MILLIS = 20;
+    private static final int REQUESTS = 100;
+    private static final int BATCH_SIZE = 25;
+    private static final int REPEATED_REQUESTS = 1000;
+    private static final int MAX_REDELIVERIES = 3;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Queue batchQueue = new ActiveMQQueue("processing");
+    private final Queue unitQueue = new ActiveMQQueue("processing.units");
+    private final MessageConverter messageConverter = new JmsConfig().jacksonJmsMessageConverter();
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final Map<String, Integer> generations = new ConcurrentHashMap<>();
+    private final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+    private final Set<String> failAlways = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private final List<DefaultMessageListenerContainer> containers = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BrokerService broker;
+    private ActiveMQConnectionFactory connectionFactory;
+    private JmsTemplate jmsTemplate;
+    private DefaultRequestProcessor requestProcessor;
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private volatile CountDownLatch generated;
+
+    @Before
+    public void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setBrokerName(BROKER_NAME);
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory("vm://" + BROKER_NAME + "?create=false");
+        RedeliveryPolicy redeliveryPolicy = new RedeliveryPolicy();
+        redeliveryPolicy.setMaximumRedeliveries(MAX_REDELIVERIES);
+        redeliveryPolicy.setInitialRedeliveryDelay(0);
+        redeliveryPolicy.setRedeliveryDelay(0);
+        connectionFactory.setRedeliveryPolicy(redeliveryPolicy);
+        jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.setMessageConverter(messageConverter);
+        requestProcessor = createRequestProcessor(new ReportCheckpointStore(new JmsConfig().objectMapper(), false,
+                "tmp/checkpoints"), new ReportResultCache(null, null, false, false, false, 0, 0L,
+                "tmp/report-result-cache.json"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (DefaultMessageListenerContainer container : containers) {
+            container.shutdown();
+        }
+        workers.shutdownNow();
+        broker.stop();
+        broker.waitUntilStopped();
+    }
+
+    @Test
+    public void testBatchIsSplitIntoUnits() throws Exception {
+        startContainers(4);
+
+        List<ReportRequest> reportRequests = sendBatches(REQUESTS);
+
+        assertTrue(generated.await(30, TimeUnit.SECONDS));
+        for (ReportRequest reportRequest : reportRequests) {
+            assertEquals(Integer.valueOf(1), generations.get(reportRequest.getId()));
+        }
+    }
+
+    @Test
+    public void testOnlyFailedUnitIsRedelivered() throws Exception {
+        failOnce.add("7");
+        startContainers(4);
+
+        sendBatches(BATCH_SIZE);
+
+        assertTrue(generated.await(30, TimeUnit.SECONDS));
+        assertEquals(BATCH_SIZE, generations.size());
+        for (Map.Entry<String, Integer> entry : generations.entrySet()) {
+            assertEquals(entry.getKey(), "7".equals(entry.getKey()) ? 2 : 1, (int) entry.getValue());
+        }
+        // the redelivered unit succeeded, FAILED was never published for it
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void testFailedIsPublishedOnceRedeliveriesAreExhausted() throws Exception {
+        failAlways.add("9");
+        startContainers(4);
+
+        sendBatches(BATCH_SIZE);
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while ((generated.getCount() > 1 || !failures.containsKey("9")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, generated.getCount());
+        assertEquals(Integer.valueOf(MAX_REDELIVERIES + 1), generations.get("9"));
+        assertEquals(Collections.singletonMap("9", 1), failures);
+    }
+
+    @Test
+    public void testQueueAndTotalStagesAreRecordedPerOutcome() {
+        generated = new CountDownLatch(1);
+        requestProcessor.processReportRequest(createRequest(1), 1);
+        failOnce.add("2");
+        try {
+            requestProcessor.processReportRequest(createRequest(2), MAX_REDELIVERIES + 1);
+            fail("Failed report expected to roll back its unit");
+        } catch (RuntimeException e) {
+            assertEquals(Collections.singletonMap("2", 1), failures);
+        }
+
+        assertEquals(2, stageTimer("queue", "success").count());
+        Timer total = stageTimer("total", "success");
+        assertEquals(1, total.count());
+        assertTrue(total.totalTime(TimeUnit.MILLISECONDS) >= WORK_MILLIS);
+        assertEquals(1, stageTimer("total", "failure").count());
+    }
+
+    // every consumer pulls its next unit only when it is free, a unit never waits behind a slow report
+    @Test
+    public void testUnitConsumersDoNotPrefetch() throws Exception {
+        startContainers(4);
+        Destination units = broker.getDestination((ActiveMQQueue) unitQueue);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (units.getConsumers().size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(4, units.getConsumers().size());
+        for (Subscription subscription : units.getConsumers()) {
+            assertEquals(0, subscription.getConsumerInfo().getPrefetchSize());
+        }
+        List<ReportRequest> reportRequests = sendBatches(BATCH_SIZE);
+        assertTrue(generated.await(30, TimeUnit.SECONDS));
+        assertEquals(reportRequests.size(), generations.size());
+    }
+
+    // the unit listener runs up to 28 consumers, the sum of the admission limits. Wall-clock rates depend on the
+    // machine, they are logged to compare consumer counts and not asserted
+    @Test
+    public void testThroughputAcrossConsumerCounts() throws Exception {
+        for (int consumers : new int[]{1, 4, 28}) {
+            log.info("Requests per second with {} unit consumers: {}", consumers,
+                    String.format("%.1f", measureRequestsPerSecond(consumers)));
+        }
+    }
+
+    @Test
+    public void testRepeatedRequestIsServedFromResultCache() throws Exception {
+        ReportResultCache reportResultCache = new ReportResultCache(new FixedVersionMovieCache(),
+                new JmsConfig().objectMapper(), true, true, true, 100, Long.MAX_VALUE,
+                temporaryFolder.newFile().getAbsolutePath());
+        DefaultRequestProcessor cachingRequestProcessor = createRequestProcessor(new ReportCheckpointStore(
+                new JmsConfig().objectMapper(), true, temporaryFolder.newFolder().getAbsolutePath()), reportResultCache);
+        generated = new CountDownLatch(REPEATED_REQUESTS + 1);
+        ReportRequest first = createRequest(0);
+        cachingRequestProcessor.processReportRequest(first, 1);
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= REPEATED_REQUESTS; i++) {
+            ReportRequest repeated = createRequest(0);
+            repeated.setId("repeated-" + i);
+            cachingRequestProcessor.processReportRequest(repeated, 1);
+            assertEquals(first.getFtpUrl(), repeated.getFtpUrl());
+        }
+        double millisPerRequest = (System.nanoTime() - start) / 1e6 / REPEATED_REQUESTS;
+
+        assertEquals(0, generated.getCount());
+        assertEquals(Collections.singletonMap("0", 1), generations);
+        assertEquals(REPEATED_REQUESTS, reportResultCache.getMetrics().getHits());
+        assertTrue("Repeated request took " + millisPerRequest + " ms", millisPerRequest < 1);
+    }
+
+    private DefaultRequestProcessor createRequestProcessor(ReportCheckpointStore checkpointStore,
+                                                           ReportResultCache reportResultCache) {
+        ReportGeneratorService reportGeneratorService = new SleepingReportGeneratorService(checkpointStore);
+        ReportStorage reportStorage = new UrlReportStorage();
+        ResumableReportService resumableReportService = new ResumableReportService(reportGeneratorService, reportStorage,
+                checkpointStore, new RetryPolicy(1, 0, 0), new RetryPolicy(1, 0, 0), reportResultCache);
+        DefaultRequestProcessor requestProcessor = new DefaultRequestProcessor(new JmsConfig().objectMapper(),
+                reportGeneratorService, reportStorage, this::onStatus, messageConverter, unitQueue,
+                new NoLimitAdmissionController(), new ExecutorReportScheduler(), new ReportSingleFlight(),
+                new ReportMetrics(meterRegistry), resumableReportService, reportResultCache);
+        ReflectionTestUtils.setField(requestProcessor, "maxRedeliveries", MAX_REDELIVERIES);
+        return requestProcessor;
+    }
+
+    private Timer stageTimer(String stage, String outcome) {
+        return meterRegistry.get("report.stage").tag("type", ReportType.ADDED_DURING_PERIOD.getName())
+                .tag("stage", stage).tag("outcome", outcome).timer();
+    }
+
+    private double measureRequestsPerSecond(int unitConsumers) throws Exception {
+        startContainers(unitConsumers);
+        long start = System.nanoTime();
+        sendBatches(REQUESTS);
+        assertTrue(generated.await(60, TimeUnit.SECONDS));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (DefaultMessageListenerContainer container : containers) {
+            container.shutdown();
+        }
+        containers.clear();
+        generations.clear();
+        return REQUESTS / seconds;
+    }
+
+    private void startContainers(int unitConsumers) throws Exception {
+        SessionAwareMessageListener<Message> batchListener = (message, session) -> {
+            @SuppressWarnings("unchecked")
+            List<ReportRequest> reportRequests = (List<ReportRequest>) messageConverter.fromMessage(message);
+            requestProcessor.splitReportRequests(reportRequests, session);
+        };
+        SessionAwareMessageListener<Message> unitListener = (message, session) ->
+                requestProcessor.processReportRequest((ReportRequest) messageConverter.fromMessage(message),
+                        message.getIntProperty("JMSXDeliveryCount"));
+        startContainer(batchQueue, 1, batchListener);
+        startContainer(new ActiveMQQueue(getUnitDestination()), unitConsumers, unitListener);
+    }
+
+    // the destination the unit listener is annotated with, resolved with the configured properties
+    private String getUnitDestination() throws Exception {
+        JmsListener jmsListener = DefaultRequestProcessor.class
+                .getMethod("processReportRequest", ReportRequest.class, int.class).getAnnotation(JmsListener.class);
+        return new MockEnvironment()
+                .withProperty("activemq.queue.units", unitQueue.getQueueName())
+                .withProperty("activemq.listener.units.prefetch", "0")
+                .resolveRequiredPlaceholders(jmsListener.destination());
+    }
+
+    private void startContainer(Queue queue, int consumers, SessionAwareMessageListener<Message> listener) {
+        DefaultMessageListenerContainer container = new DefaultMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setDestination(queue);
+        container.setSessionTransacted(true);
+        container.setConcurrentConsumers(consumers);
+        container.setMaxConcurrentConsumers(consumers);
+        container.setReceiveTimeout(100);
+        container.setMessageListener(listener);
+        container.afterPropertiesSet();
+        container.start();
+        containers.add(container);
+    }
+
+    private List<ReportRequest> sendBatches(int requests) {
+        generated = new CountDownLatch(requests);
+        List<ReportRequest> reportRequests = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            reportRequests.add(createRequest(i));
+        }
+        for (int i = 0; i < requests; i += BATCH_SIZE) {
+            List<ReportRequest> batch = new ArrayList<>(reportRequests.subList(i, Math.min(i + BATCH_SIZE, requests)));
+            jmsTemplate.convertAndSend(batchQueue, batch);
+        }
+        return reportRequests;
+    }
+
+    private ReportRequest createRequest(int id) {
+        ReportParameter reportParameter = new ReportParameter();
+        reportParameter.setFromDate(LocalDateTime.of(2019, 1, 1, 0, 0).plusDays(id));
+        reportParameter.setToDate(LocalDateTime.of(2019, 1, 1, 0, 0).plusDays(id + 1));
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId(String.valueOf(id));
+        reportRequest.setReportType(ReportType.ADDED_DURING_PERIOD);
+        reportRequest.setReportParameter(reportParameter);
+        return reportRequest;
+    }
+
+    private void onStatus(ReportRequest reportRequest) {
+        if (reportRequest.getReportStatus() == ReportStatus.FAILED) {
+            failures.merge(reportRequest.getId(), 1, Integer::sum);
+        }
+        if (reportRequest.getReportStatus() == ReportStatus.GENERATED) {
+            generated.countDown();
+        }
+    }
+
+    private class SleepingReportGeneratorService implements ReportGeneratorService {
+        private final ReportCheckpointStore checkpointStore;
+
+        private SleepingReportGeneratorService(ReportCheckpointStore checkpointStore) {
+            this.checkpointStore = checkpointStore;
+        }
+
+        @Override
+        public InputStream generateReport(ReportRequest reportRequest) {
+            generate(reportRequest);
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void generateReport(ReportRequest reportRequest, OutputStream outputStream) {
+            generate(reportRequest);
+        }
+
+        private void generate(ReportRequest reportRequest) {
+            generations.merge(reportRequest.getId(), 1, Integer::sum);
+            try {
+                Thread.sleep(WORK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failOnce.remove(reportRequest.getId()) || failAlways.contains(reportRequest.getId())) {
+                throw new RuntimeException("Generation of report " + reportRequest.getId() + " failed");
+            }
+            // the movie pages of a report record the version of the movie cache they were read from
+            if (checkpointStore.isEnabled()) {
+                ReportCheckpoint checkpoint = checkpointStore.load(reportRequest.getId());
+                checkpoint.setDataVersion(FixedVersionMovieCache.DATA_VERSION);
+                checkpointStore.save(reportRequest.getId(), checkpoint);
+            }
+        }
+    }
+
+    private static class UrlReportStorage implements ReportStorage {
+        @Override
+        public void saveAndEnrichWithUrl(InputStream inputStream, ReportRequest reportRequest) {
+            reportRequest.setFtpUrl("ftp://localhost/report/" + reportRequest.getId() + ".xlsx");
+        }
+
+        @Override
+        public void saveAndEnrichWithUrl(Consumer<OutputStream> reportWriter, ReportRequest reportRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void saveAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, boolean resume) {
+            reportRequest.setFtpUrl("ftp://localhost/report/" + reportRequest.getId() + ".xlsx");
+        }
+
+        @Override
+        public void saveArtifactAndEnrichWithUrl(Path reportFile, ReportRequest reportRequest, String contentHash,
+                                                 boolean resume) {
+            reportRequest.setFtpUrl("ftp://localhost/report/artifact/" + contentHash + ".xlsx");
+        }
+
+        @Override
+        public void deleteArtifact(String contentHash, ReportFormat reportFormat) {
+        }
+    }
+
+    // every range selects the same movies of one catalogue version
+    private static class FixedVersionMovieCache extends MovieCache {
+        private static final MovieDataVersion DATA_VERSION = new MovieDataVersion(LocalDateTime.of(2019, 1, 1, 0, 0),
+                100, 0, 10);
+
+        private FixedVersionMovieCache() {
+            super(null, Clock.systemUTC(), 0L, 0L, 0, 0);
+        }
+
+        @Override
+        public MovieDataVersion getCurrentDataVersion(LocalDateTime fromDate, LocalDateTime toDate) {
+            return DATA_VERSION;
+        }
+    }
+
+    private static class NoLimitAdmissionController implements AdmissionController {
+        @Override
+        public void acquire(ReportType reportType) {
+        }
+
+        @Override
+        public void release(ReportType reportType) {
+        }
+    }
+
+    private class ExecutorReportScheduler implements ReportScheduler {
+        @Override
+        public CompletableFuture<Void> schedule(ReportRequest reportRequest, Runnable job) {
+            return CompletableFuture.runAsync(job, workers);
+        }
+
+        @Override
+        public List<LaneStats> getLaneStats() {
+            return Collections.emptyList();
+        }
+    }
+}
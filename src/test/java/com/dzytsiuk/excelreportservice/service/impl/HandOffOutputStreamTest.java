@@ -0,0 +1,102 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HandOffOutputStreamTest {
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        writeExecutor.shutdownNow();
+    }
+
+    // the stream may block on the upload, only the calling thread writes to it
+    @Test
+    public void testSerializedRowsAreWrittenByCaller() throws IOException {
+        Set<Thread> writers = new HashSet<>();
+        ByteArrayOutputStream report = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writers.add(Thread.currentThread());
+                super.write(b, off, len);
+            }
+        };
+        HandOffOutputStream handOffOutputStream = new HandOffOutputStream(report, writeExecutor);
+
+        handOffOutputStream.write(new byte[]{1, 2});
+        handOffOutputStream.serialize(() -> handOffOutputStream.write(new byte[]{3, 4, 5}));
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, report.toByteArray());
+        assertEquals(Set.of(Thread.currentThread()), writers);
+    }
+
+    // a finish writing the whole workbook is copied while it is serialized, not buffered whole
+    @Test
+    public void testLargeSerializationIsCopiedInChunks() throws IOException {
+        List<Integer> copies = new ArrayList<>();
+        ByteArrayOutputStream report = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                copies.add(len);
+                super.write(b, off, len);
+            }
+        };
+        HandOffOutputStream handOffOutputStream = new HandOffOutputStream(report, writeExecutor);
+        byte[] workbook = new byte[5 * 1024 * 1024 + 1];
+        new Random(1).nextBytes(workbook);
+
+        handOffOutputStream.serialize(() -> {
+            for (int off = 0; off < workbook.length; off += 8192) {
+                handOffOutputStream.write(workbook, off, Math.min(8192, workbook.length - off));
+            }
+        });
+
+        assertArrayEquals(workbook, report.toByteArray());
+        assertTrue(copies.toString(), copies.size() > 1);
+        for (int copy : copies) {
+            assertTrue(copies.toString(), copy <= 2 * 1024 * 1024);
+        }
+    }
+
+    // with thread.virtual off the write pool runs tasks on the report thread
+    @Test
+    public void testSerializationOnCallerWritesThrough() throws IOException {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        HandOffOutputStream handOffOutputStream = new HandOffOutputStream(report, Runnable::run);
+
+        handOffOutputStream.serialize(() -> handOffOutputStream.write(new byte[]{1, 2, 3}));
+        handOffOutputStream.serialize(() -> handOffOutputStream.write(new byte[]{4}));
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, report.toByteArray());
+    }
+
+    @Test
+    public void testSerializationFailureIsRethrown() {
+        IOException failure = new IOException("Disk is full");
+        HandOffOutputStream handOffOutputStream = new HandOffOutputStream(new ByteArrayOutputStream(), writeExecutor);
+        try {
+            handOffOutputStream.serialize(() -> {
+                throw failure;
+            });
+            fail("Serialization failure expected");
+        } catch (IOException e) {
+            assertEquals(failure, e);
+        }
+    }
+}
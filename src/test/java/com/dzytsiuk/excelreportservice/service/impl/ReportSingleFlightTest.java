@@ -0,0 +1,107 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReportSingleFlightTest {
+    private static final LocalDateTime WEEK_START = LocalDateTime.of(2019, 1, 7, 0, 0);
+    private static final LocalDateTime WEEK_END = LocalDateTime.of(2019, 1, 14, 0, 0);
+
+    private final ReportSingleFlight reportSingleFlight = new ReportSingleFlight();
+    private final AtomicInteger generations = new AtomicInteger();
+    private final AtomicInteger joins = new AtomicInteger();
+
+    @Test
+    public void testRequestJoinsGenerationInFlight() {
+        CompletableFuture<String> generation = new CompletableFuture<>();
+
+        CompletableFuture<String> leader = execute(request("1", WEEK_START, WEEK_END), generation);
+        CompletableFuture<String> follower = execute(request("2", WEEK_START, WEEK_END), new CompletableFuture<>());
+        assertFalse(follower.isDone());
+
+        generation.complete("ftp://admin@localhost//report/movie/addedDuringPeriod_1.xlsx");
+
+        assertEquals(1, generations.get());
+        assertEquals(1, joins.get());
+        assertEquals("ftp://admin@localhost//report/movie/addedDuringPeriod_1.xlsx", leader.join());
+        assertSame(leader.join(), follower.join());
+        assertEquals(0, reportSingleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testDifferentRangeIsGeneratedSeparately() {
+        execute(request("1", WEEK_START, WEEK_END), new CompletableFuture<>());
+        execute(request("2", WEEK_START, WEEK_END.plusDays(1)), new CompletableFuture<>());
+
+        assertEquals(2, generations.get());
+        assertEquals(0, joins.get());
+    }
+
+    @Test
+    public void testFailureIsPropagatedToAllWaiters() {
+        CompletableFuture<String> generation = new CompletableFuture<>();
+        CompletableFuture<String> leader = execute(request("1", WEEK_START, WEEK_END), generation);
+        CompletableFuture<String> follower = execute(request("2", WEEK_START, WEEK_END), new CompletableFuture<>());
+
+        IllegalStateException failure = new IllegalStateException("Movieland is down");
+        generation.completeExceptionally(failure);
+
+        assertFailedWith(failure, leader);
+        assertFailedWith(failure, follower);
+        assertEquals(0, reportSingleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testCompletedGenerationIsNotReused() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        execute(request("1", WEEK_START, WEEK_END), first);
+        first.complete("ftp://first");
+
+        CompletableFuture<String> second = execute(request("2", WEEK_START, WEEK_END),
+                CompletableFuture.completedFuture("ftp://second"));
+
+        assertEquals(2, generations.get());
+        assertEquals("ftp://second", second.join());
+    }
+
+    private CompletableFuture<String> execute(ReportRequest reportRequest, CompletableFuture<String> generation) {
+        return reportSingleFlight.execute(reportRequest, () -> {
+            generations.incrementAndGet();
+            return generation;
+        }, joins::incrementAndGet);
+    }
+
+    private void assertFailedWith(Throwable expected, CompletableFuture<String> future) {
+        try {
+            future.join();
+            fail("Failure expected");
+        } catch (CompletionException e) {
+            assertSame(expected, e.getCause());
+        }
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    private ReportRequest request(String id, LocalDateTime fromDate, LocalDateTime toDate) {
+        ReportParameter reportParameter = new ReportParameter();
+        reportParameter.setFromDate(fromDate);
+        reportParameter.setToDate(toDate);
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId(id);
+        reportRequest.setReportType(ReportType.ADDED_DURING_PERIOD);
+        reportRequest.setReportParameter(reportParameter);
+        return reportRequest;
+    }
+}
@@ -0,0 +1,102 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SpillingPipeTest {
+    private static final int CHUNK_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ExecutorService reader = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        reader.shutdownNow();
+    }
+
+    @Test
+    public void testSlowReaderGetsSpilledChunksInOrder() throws Exception {
+        byte[] report = new byte[CHUNK_SIZE * 20 + 17];
+        new Random(42).nextBytes(report);
+        try (SpillingPipe pipe = createPipe()) {
+            // nothing is read until the whole report is written, so all but two chunks are spilled
+            try (OutputStream outputStream = pipe.getOutputStream()) {
+                outputStream.write(report);
+            }
+            Future<byte[]> read = reader.submit(() -> readAll(pipe.getInputStream()));
+
+            assertArrayEquals(report, read.get(10, TimeUnit.SECONDS));
+            assertTrue(pipe.isSpilled());
+        }
+    }
+
+    @Test
+    public void testReaderFailureFailsWriter() throws Exception {
+        try (SpillingPipe pipe = createPipe()) {
+            pipe.getInputStream().close();
+            OutputStream outputStream = pipe.getOutputStream();
+            try {
+                outputStream.write(new byte[CHUNK_SIZE * 2]);
+                fail("Writing to a closed upload expected to fail");
+            } catch (IOException e) {
+                assertEquals("Upload aborted", e.getMessage());
+            }
+        }
+    }
+
+    // a normal end of stream would let the upload commit the truncated report
+    @Test
+    public void testWriterFailureNeverEndsStream() throws Exception {
+        try (SpillingPipe pipe = createPipe()) {
+            Future<byte[]> read = reader.submit(() -> readAll(pipe.getInputStream()));
+            OutputStream outputStream = pipe.getOutputStream();
+            outputStream.write(new byte[CHUNK_SIZE * 3]);
+            IllegalStateException failure = new IllegalStateException("Movieland is down");
+
+            pipe.abort(failure);
+            outputStream.close();
+
+            try {
+                read.get(10, TimeUnit.SECONDS);
+                fail("Reader expected to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+                assertEquals(failure, e.getCause().getCause());
+            }
+        }
+    }
+
+    private SpillingPipe createPipe() {
+        return new SpillingPipe(CHUNK_SIZE, 2, 10, temporaryFolder.getRoot().toPath());
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,190 @@
+package com.dzytsiuk.excelreportservice.service.impl;
+
+import com.dzytsiuk.excelreportservice.config.VirtualThreads;
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import com.dzytsiuk.excelreportservice.service.impl.checkpoint.ReportCheckpointStore;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MovieFetchMode;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePageIteratorFactory;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import com.dzytsiuk.excelreportservice.service.impl.writer.CsvReportWriterProvider;
+import com.dzytsiuk.excelreportservice.service.impl.writer.ReportDatePattern;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+// 500 reports submitted at once against a MovieService with the latency of a remote call, once on the default
+// pools and once on virtual threads with rows serialized on a pool of the size of the cores. On the default pools
+// the 32 fetch threads bound throughput to about 160 reports/s; on virtual threads the reports in flight have to
+// outnumber the platform threads and finish at least twice as fast. Only runs on Java 21.
+public class VirtualThreadLoadTest {
+    private static final int REPORTS = 500;
+    private static final int PAGES = 10;
+    private static final int FETCH_SIZE = 50;
+    private static final long FETCH_LATENCY_MILLIS = 20;
+    // thread.pool.max and thread.pool.fetch
+    private static final int REPORT_THREADS = 64;
+    private static final int FETCH_THREADS = 32;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("No virtual threads on Java " + System.getProperty("java.version"),
+                VirtualThreads.isAvailable());
+    }
+
+    @Test
+    public void testVirtualThreadsRaiseThroughput() throws Exception {
+        LoadResult platform = run(Executors.newFixedThreadPool(REPORT_THREADS),
+                Executors.newFixedThreadPool(FETCH_THREADS), null);
+        LoadResult virtual = run(VirtualThreads.newThreadPerTaskExecutor("report_thread_"),
+                VirtualThreads.newThreadPerTaskExecutor("movie_fetch_thread_"),
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+
+        log.info("Platform threads: {}", platform);
+        log.info("Virtual threads: {}", virtual);
+        assertTrue("Virtual threads: " + virtual, virtual.peakReports > virtual.peakThreads);
+        assertTrue("Platform threads: " + platform + ", virtual threads: " + virtual,
+                virtual.getReportsPerSecond() > 2 * platform.getReportsPerSecond());
+    }
+
+    // writeExecutor null writes on the report thread, as with thread.virtual off
+    private LoadResult run(ExecutorService reportExecutor, ExecutorService fetchExecutor, ExecutorService writeExecutor)
+            throws Exception {
+        DefaultReportGeneratorService reportGeneratorService = createService(fetchExecutor,
+                writeExecutor == null ? Runnable::run : writeExecutor);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        AtomicInteger reportsInFlight = new AtomicInteger();
+        AtomicInteger peakReports = new AtomicInteger();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        System.gc();
+        threads.resetPeakThreadCount();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> reports = new ArrayList<>();
+            for (int i = 0; i < REPORTS; i++) {
+                ReportRequest reportRequest = createRequest(i);
+                reports.add(reportExecutor.submit(() -> {
+                    peakReports.accumulateAndGet(reportsInFlight.incrementAndGet(), Math::max);
+                    try {
+                        reportGeneratorService.generateReport(reportRequest, OutputStream.nullOutputStream());
+                    } finally {
+                        reportsInFlight.decrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> report : reports) {
+                report.get();
+            }
+        } finally {
+            sampler.shutdownNow();
+            reportExecutor.shutdownNow();
+            fetchExecutor.shutdownNow();
+            if (writeExecutor != null) {
+                writeExecutor.shutdownNow();
+            }
+        }
+        return new LoadResult(System.nanoTime() - start, peakHeap.get(), threads.getPeakThreadCount(),
+                peakReports.get());
+    }
+
+    private DefaultReportGeneratorService createService(ExecutorService fetchExecutor, Executor writeExecutor) {
+        MovieService movieService = (page, count, reportParameter) -> {
+            try {
+                Thread.sleep(FETCH_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            List<ReportMovie> movies = new ArrayList<>();
+            if (page <= PAGES) {
+                for (int id = (page - 1) * count; id < page * count; id++) {
+                    movies.add(createMovie(id));
+                }
+            }
+            return movies;
+        };
+        MoviePageIteratorFactory moviePageIteratorFactory = new MoviePageIteratorFactory(movieService, fetchExecutor,
+                MovieFetchMode.PREFETCH, FETCH_SIZE, 2, 1, 1, FETCH_SIZE);
+        return new DefaultReportGeneratorService(moviePageIteratorFactory, Collections::emptyList,
+                Collections.singletonList(new CsvReportWriterProvider(ReportDatePattern.of("yyyy-MM-dd HH:mm:ss"))),
+                new ReportMetrics(new SimpleMeterRegistry()), new ReportCheckpointStore(null, false, "tmp/checkpoints"),
+                writeExecutor);
+    }
+
+    private ReportRequest createRequest(int i) {
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId("load-test-" + i);
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportFormat(ReportFormat.CSV);
+        return reportRequest;
+    }
+
+    private ReportMovie createMovie(int id) {
+        ReportMovie movie = new ReportMovie();
+        movie.setId(id);
+        movie.setNameNative("Movie " + id);
+        movie.setDescription("Description of movie " + id);
+        movie.setGenres("drama, comedy");
+        movie.setPrice(100.5);
+        movie.setRating(8.2);
+        movie.setAddDate(LocalDateTime.of(2018, 1, 1, 0, 0).plusMinutes(id));
+        movie.setLastModifiedDate(LocalDateTime.of(2019, 1, 1, 0, 0).plusMinutes(id));
+        movie.setReviewCount(id % 100);
+        return movie;
+    }
+
+    private static class LoadResult {
+        private final long elapsedNanos;
+        private final long peakHeap;
+        private final int peakThreads;
+        private final int peakReports;
+
+        private LoadResult(long elapsedNanos, long peakHeap, int peakThreads, int peakReports) {
+            this.elapsedNanos = elapsedNanos;
+            this.peakHeap = peakHeap;
+            this.peakThreads = peakThreads;
+            this.peakReports = peakReports;
+        }
+
+        private double getReportsPerSecond() {
+            return REPORTS * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f reports/s, peak heap %d MB, peak platform threads %d, peak reports in flight %d",
+                    getReportsPerSecond(), peakHeap / (1024 * 1024), peakThreads, peakReports);
+        }
+    }
+}
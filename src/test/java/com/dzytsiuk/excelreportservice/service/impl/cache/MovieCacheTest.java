@@ -0,0 +1,285 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.entity.User;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import com.dzytsiuk.excelreportservice.service.impl.DefaultMovieService;
+import com.dzytsiuk.excelreportservice.service.impl.client.MovielandClient;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.MoviePageIterator;
+import com.dzytsiuk.excelreportservice.service.impl.fetch.SerialMoviePageIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MovieCacheTest {
+    private static final LocalDateTime START = LocalDateTime.of(2019, 1, 1, 0, 0);
+    private static final long TTL_MILLIS = 1000;
+    private static final long FULL_RELOAD_MILLIS = 10_000;
+
+    private FakeMovielandClient movielandClient;
+    private MutableClock clock;
+    private MovieCache movieCache;
+
+    @Before
+    public void setUp() {
+        movielandClient = new FakeMovielandClient();
+        // movie i was added i days after START, inserted out of order
+        for (int id = 100; id >= 1; id--) {
+            movielandClient.put(movie(id, START.plusDays(id), START.minusDays(id)));
+        }
+        clock = new MutableClock();
+        movieCache = new MovieCache(movielandClient, clock, TTL_MILLIS, FULL_RELOAD_MILLIS, 1000, 7);
+    }
+
+    @Test
+    public void testRangeQueryIsServedFromSortedIndex() {
+        List<ReportMovie> range = movieCache.getMovies(START.plusDays(10), START.plusDays(20));
+        List<ReportMovie> firstPage = page(range, 1, 5);
+        List<ReportMovie> thirdPage = page(range, 3, 5);
+        List<ReportMovie> emptyPage = page(range, 4, 5);
+
+        assertEquals(ids(10, 14), ids(firstPage));
+        assertEquals(ids(20, 20), ids(thirdPage));
+        assertTrue(emptyPage.isEmpty());
+        assertEquals(ids(1, 100), ids(page(movieCache.getMovies(null, null), 1, 1000)));
+        int fetchesAfterLoad = movielandClient.fetches;
+        movieCache.getMovies(START, START.plusDays(3));
+        assertEquals(fetchesAfterLoad, movielandClient.fetches);
+    }
+
+    @Test
+    public void testDeltaRefreshMergesModifiedMovies() {
+        movieCache.getMovies(null, null);
+        LocalDateTime modified = START.plusHours(1);
+        movielandClient.put(movie(5, START.plusDays(200), modified));
+        movielandClient.put(movie(101, START.plusDays(101), modified));
+
+        movieCache.getMovies(null, null);
+        assertEquals(100, movieCache.getMetrics().getSize());
+
+        clock.advance(TTL_MILLIS);
+        List<ReportMovie> latest = page(movieCache.getMovies(START.plusDays(99), null), 1, 3);
+
+        assertEquals(listOf(99, 100, 101), ids(latest));
+        assertEquals(listOf(5), ids(page(movieCache.getMovies(START.plusDays(150), null), 1, 10)));
+        assertEquals(modified, movieCache.getCachedMovies().getDataVersion());
+        CacheMetrics metrics = movieCache.getMetrics();
+        assertEquals(101, metrics.getSize());
+        assertEquals(1, metrics.getFullReloads());
+        assertEquals(1, metrics.getDeltaRefreshes());
+        assertEquals(103, metrics.getRowsFetched());
+    }
+
+    @Test
+    public void testRangesSelectingSameMoviesHaveSameDataVersion() {
+        MovieDataVersion version = getDataVersion(START.plusDays(10), START.plusDays(20));
+
+        assertEquals(version, getDataVersion(START.plusDays(9).plusHours(1), START.plusDays(20).plusHours(23)));
+        assertEquals(getDataVersion(START.minusDays(5), START), getDataVersion(START.plusDays(500), null));
+
+        movielandClient.put(movie(101, START.plusDays(101), START.plusHours(1)));
+        clock.advance(TTL_MILLIS);
+        MovieDataVersion refreshed = getDataVersion(START.plusDays(10), START.plusDays(20));
+
+        assertNotEquals(version, refreshed);
+        assertEquals(START.plusHours(1), refreshed.getLastModifiedDate());
+        assertEquals(11, refreshed.getToIndex() - refreshed.getFromIndex());
+    }
+
+    @Test
+    public void testFullReloadDropsDeletedMovies() {
+        movieCache.getMovies(null, null);
+        movielandClient.remove(50);
+
+        clock.advance(TTL_MILLIS);
+        movieCache.getMovies(null, null);
+        assertEquals(100, movieCache.getMetrics().getSize());
+
+        clock.advance(FULL_RELOAD_MILLIS);
+        movieCache.getMovies(null, null);
+        assertEquals(99, movieCache.getMetrics().getSize());
+        assertEquals(2, movieCache.getMetrics().getFullReloads());
+    }
+
+    @Test
+    public void testHitMissAndStalenessMetrics() {
+        movieCache.getMovies(null, null);
+        movieCache.getMovies(null, null);
+        clock.advance(400);
+
+        CacheMetrics metrics = movieCache.getMetrics();
+        assertEquals(2, metrics.getHits());
+        assertEquals(0, metrics.getMisses());
+        assertEquals(400, metrics.getStalenessMillis());
+
+        clock.advance(TTL_MILLIS);
+        movieCache.getMovies(null, null);
+        assertEquals(0, movieCache.getMetrics().getStalenessMillis());
+    }
+
+    @Test
+    public void testCatalogueLargerThanMaxSizeIsNotCached() {
+        MovieCache smallCache = new MovieCache(movielandClient, clock, TTL_MILLIS, FULL_RELOAD_MILLIS, 50, 7);
+
+        assertNull(smallCache.getMovies(null, null));
+        assertNull(smallCache.getMovies(null, null));
+        assertEquals(2, smallCache.getMetrics().getMisses());
+        assertEquals(0, smallCache.getMetrics().getSize());
+    }
+
+    @Test
+    public void testRefreshDuringReportDoesNotShiftItsPages() {
+        MovieService movieService = new DefaultMovieService(movielandClient, movieCache, new ObjectMapper(), true);
+        ReportParameter reportParameter = new ReportParameter();
+        MoviePageIterator report = new SerialMoviePageIterator(movieService.forReport(reportParameter), reportParameter,
+                10, 1);
+        List<Integer> reported = new ArrayList<>();
+        MovieColumns firstPage = report.next().getMovies();
+        for (int row = 0; row < firstPage.size(); row++) {
+            reported.add(firstPage.getId(row));
+        }
+
+        // movies added before the reported ones move every later page of the refreshed snapshot
+        for (int id = 101; id <= 105; id++) {
+            movielandClient.put(movie(id, START.minusDays(id), START.plusHours(1)));
+        }
+        clock.advance(TTL_MILLIS);
+        movieService.forReport(reportParameter);
+        assertEquals(105, movieCache.getMetrics().getSize());
+
+        while (report.hasNext()) {
+            MovieColumns page = report.next().getMovies();
+            for (int row = 0; row < page.size(); row++) {
+                reported.add(page.getId(row));
+            }
+        }
+        assertEquals(ids(1, 100), reported);
+    }
+
+    private MovieDataVersion getDataVersion(LocalDateTime fromDate, LocalDateTime toDate) {
+        return movieCache.getCachedMovies(fromDate, toDate).getDataVersion();
+    }
+
+    private static ReportMovie movie(int id, LocalDateTime addDate, LocalDateTime lastModifiedDate) {
+        ReportMovie movie = new ReportMovie();
+        movie.setId(id);
+        movie.setAddDate(addDate);
+        movie.setLastModifiedDate(lastModifiedDate);
+        return movie;
+    }
+
+    private static List<Integer> ids(List<ReportMovie> movies) {
+        return movies.stream().map(ReportMovie::getId).collect(Collectors.toList());
+    }
+
+    private static List<Integer> ids(int from, int to) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static List<Integer> listOf(Integer... ids) {
+        List<Integer> list = new ArrayList<>();
+        Collections.addAll(list, ids);
+        return list;
+    }
+
+    private static List<ReportMovie> page(List<ReportMovie> movies, int page, int count) {
+        int from = Math.min((page - 1) * count, movies.size());
+        return new ArrayList<>(movies.subList(from, Math.min(from + count, movies.size())));
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis = 1_000_000;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    private static class FakeMovielandClient implements MovielandClient {
+        private final Map<Integer, ReportMovie> movies = new TreeMap<>();
+        private int fetches;
+
+        void put(ReportMovie movie) {
+            movies.put(movie.getId(), movie);
+        }
+
+        void remove(int id) {
+            movies.remove(id);
+        }
+
+        @Override
+        public List<ReportMovie> getMovies(Integer page, Integer count, LocalDateTime fromDate, LocalDateTime toDate) {
+            fetches++;
+            return page(new ArrayList<>(movies.values()), page, count);
+        }
+
+        @Override
+        public MovieColumns getMovieColumns(Integer page, Integer count, LocalDateTime fromDate, LocalDateTime toDate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Response getMoviesResponse(Integer page, Integer count, LocalDateTime fromDate, LocalDateTime toDate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ReportMovie> getModifiedMovies(Integer page, Integer count, LocalDateTime modifiedFrom) {
+            fetches++;
+            List<ReportMovie> modified = movies.values().stream()
+                    .filter(movie -> !movie.getLastModifiedDate().isBefore(modifiedFrom))
+                    .collect(Collectors.toList());
+            return page(modified, page, count);
+        }
+
+        @Override
+        public List<User> getUsers() {
+            return Collections.emptyList();
+        }
+
+    }
+}
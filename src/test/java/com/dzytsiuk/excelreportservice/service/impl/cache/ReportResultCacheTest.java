@@ -0,0 +1,219 @@
+package com.dzytsiuk.excelreportservice.service.impl.cache;
+
+import com.dzytsiuk.excelreportservice.config.JmsConfig;
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReportResultCacheTest {
+    private static final LocalDateTime VERSION = LocalDateTime.of(2019, 1, 1, 0, 0);
+    private static final String URL = "ftp://localhost/report/artifact/a.csv";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final MovieDataVersion dataVersion = new MovieDataVersion(VERSION, 100, 10, 20);
+    private final MovieCache movieCache = new MovieCache(null, Clock.systemUTC(), 0L, 0L, 0, 0) {
+        @Override
+        public MovieDataVersion getCurrentDataVersion(LocalDateTime fromDate, LocalDateTime toDate) {
+            return currentDataVersion;
+        }
+    };
+    private MovieDataVersion currentDataVersion;
+
+    @Test
+    public void testReportOfChangedDataIsNotServed() {
+        ReportResultCache reportResultCache = createCache(10, Long.MAX_VALUE);
+        ReportRequest reportRequest = createRequest(ReportType.ALL_MOVIES);
+        reportResultCache.put(reportResultCache.getKey(reportRequest, dataVersion), "a", 10, URL);
+        currentDataVersion = dataVersion;
+
+        assertEquals(URL, reportResultCache.get(reportResultCache.getCurrentKey(reportRequest)));
+
+        currentDataVersion = new MovieDataVersion(VERSION.plusMinutes(1), 100, 10, 20);
+
+        assertNull(reportResultCache.get(reportResultCache.getCurrentKey(reportRequest)));
+        assertEquals(1, reportResultCache.getMetrics().getHits());
+        assertEquals(1, reportResultCache.getMetrics().getMisses());
+    }
+
+    @Test
+    public void testReportWithoutDataVersionIsNotCached() {
+        ReportRequest reportRequest = createRequest(ReportType.ALL_MOVIES);
+        assertNull(createCache(10, Long.MAX_VALUE).getKey(createRequest(ReportType.TOP_ACTIVE_USERS), dataVersion));
+        assertNull(createCache(10, Long.MAX_VALUE).getKey(reportRequest, null));
+        assertNull(new ReportResultCache(movieCache, new JmsConfig().objectMapper(), true, false, true, 10,
+                Long.MAX_VALUE, getIndexFile()).getKey(reportRequest, dataVersion));
+        // without a checkpoint there is no record of the movies a report was generated from
+        assertNull(new ReportResultCache(movieCache, new JmsConfig().objectMapper(), true, true, false, 10,
+                Long.MAX_VALUE, getIndexFile()).getKey(reportRequest, dataVersion));
+    }
+
+    // a stale movie cache is not refreshed for the hit check, the request is a miss instead
+    @Test
+    public void testHitCheckDoesNotRefresh() {
+        ReportResultCache reportResultCache = createCache(10, Long.MAX_VALUE);
+        ReportRequest reportRequest = createRequest(ReportType.ALL_MOVIES);
+        reportResultCache.put(reportResultCache.getKey(reportRequest, dataVersion), "a", 10, URL);
+
+        assertNull(reportResultCache.get(reportResultCache.getCurrentKey(reportRequest)));
+
+        currentDataVersion = dataVersion;
+
+        assertEquals(URL, reportResultCache.get(reportResultCache.getCurrentKey(reportRequest)));
+    }
+
+    @Test
+    public void testEqualContentIsStoredOnce() {
+        ReportResultCache reportResultCache = createCache(10, Long.MAX_VALUE);
+
+        reportResultCache.put(key(1), "a", 10, URL);
+        assertEquals(URL, reportResultCache.putIfStored(key(2), "a"));
+
+        assertEquals(URL, reportResultCache.get(key(2)));
+        assertNull(reportResultCache.putIfStored(key(3), "b"));
+        ResultCacheMetrics metrics = reportResultCache.getMetrics();
+        assertEquals(2, metrics.getEntries());
+        assertEquals(1, metrics.getArtifacts());
+        assertEquals(10, metrics.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultIsEvicted() {
+        ReportResultCache reportResultCache = createCache(2, Long.MAX_VALUE);
+        reportResultCache.put(key(1), "a", 10, URL);
+        reportResultCache.put(key(2), "b", 10, URL);
+        reportResultCache.get(key(1));
+
+        reportResultCache.put(key(3), "c", 10, URL);
+
+        assertEquals(URL, reportResultCache.get(key(1)));
+        assertNull(reportResultCache.get(key(2)));
+        assertNull(reportResultCache.putIfStored(null, "b"));
+        assertEquals(1, reportResultCache.getMetrics().getEvictions());
+        List<ReportResultCache.Artifact> released = reportResultCache.takeReleased();
+        assertEquals(1, released.size());
+        assertEquals("b", released.get(0).getContentHash());
+        assertEquals(ReportFormat.CSV, released.get(0).getReportFormat());
+        assertTrue(reportResultCache.takeReleased().isEmpty());
+    }
+
+    // evicted and stored again before it was deleted, the report has to stay
+    @Test
+    public void testReportStoredAgainIsNotReleased() {
+        ReportResultCache reportResultCache = createCache(1, Long.MAX_VALUE);
+        reportResultCache.put(key(1), "a", 10, URL);
+        reportResultCache.put(key(2), "b", 10, URL);
+
+        reportResultCache.put(key(3), "a", 10, URL);
+
+        List<ReportResultCache.Artifact> released = reportResultCache.takeReleased();
+        assertEquals(1, released.size());
+        assertEquals("b", released.get(0).getContentHash());
+    }
+
+    @Test
+    public void testResultsSurviveRestart() {
+        ReportResultCache reportResultCache = createCache(2, Long.MAX_VALUE);
+        reportResultCache.put(key(1), "a", 10, URL);
+        reportResultCache.put(key(2), "b", 20, URL);
+        reportResultCache.put(key(3), "a", 10, URL);
+        reportResultCache.get(key(2));
+        reportResultCache.flush();
+
+        ReportResultCache restarted = createCache(2, Long.MAX_VALUE);
+
+        assertEquals(30, restarted.getMetrics().getSize());
+        assertEquals(2, restarted.getMetrics().getArtifacts());
+        // key(3) was used least recently before the restart
+        restarted.put(key(4), "c", 5, URL);
+        assertNull(restarted.get(key(1)));
+        assertNull(restarted.get(key(3)));
+        assertEquals(URL, restarted.get(key(2)));
+        assertEquals("a", restarted.takeReleased().get(0).getContentHash());
+    }
+
+    // a report evicted before a crash is deleted after it, one reported as deleted is not
+    @Test
+    public void testReportsToDeleteSurviveRestart() {
+        ReportResultCache reportResultCache = createCache(1, Long.MAX_VALUE);
+        reportResultCache.put(key(1), "a", 10, URL);
+        reportResultCache.put(key(2), "b", 10, URL);
+        reportResultCache.put(key(3), "c", 10, URL);
+        List<ReportResultCache.Artifact> released = reportResultCache.takeReleased();
+        reportResultCache.deleted(released.get(0));
+        reportResultCache.flush();
+
+        released = createCache(1, Long.MAX_VALUE).takeReleased();
+
+        assertEquals(1, released.size());
+        assertEquals("b", released.get(0).getContentHash());
+    }
+
+    @Test
+    public void testFailedSaveIsRetried() throws IOException {
+        Path indexDirectory = temporaryFolder.getRoot().toPath().resolve("index");
+        Files.write(indexDirectory, new byte[0]);
+        String indexFile = indexDirectory.resolve("report-result-cache.json").toString();
+        ReportResultCache reportResultCache = new ReportResultCache(movieCache, new JmsConfig().objectMapper(), true,
+                true, true, 10, Long.MAX_VALUE, indexFile);
+        reportResultCache.put(key(1), "a", 10, URL);
+
+        reportResultCache.flush();
+
+        Files.delete(indexDirectory);
+        reportResultCache.flush();
+        assertEquals(URL, new ReportResultCache(movieCache, new JmsConfig().objectMapper(), true, true, true, 10,
+                Long.MAX_VALUE, indexFile).get(key(1)));
+    }
+
+    @Test
+    public void testResultsAreEvictedBeyondMaxSize() {
+        ReportResultCache reportResultCache = createCache(10, 100);
+        reportResultCache.put(key(1), "a", 60, URL);
+        reportResultCache.put(key(2), "a", 60, URL);
+
+        reportResultCache.put(key(3), "b", 60, URL);
+
+        assertNull(reportResultCache.get(key(1)));
+        assertNull(reportResultCache.get(key(2)));
+        assertEquals(URL, reportResultCache.get(key(3)));
+        assertEquals(60, reportResultCache.getMetrics().getSize());
+    }
+
+    private ReportResultCache createCache(int maxEntries, long maxSize) {
+        return new ReportResultCache(movieCache, new JmsConfig().objectMapper(), true, true, true, maxEntries, maxSize,
+                getIndexFile());
+    }
+
+    private String getIndexFile() {
+        return temporaryFolder.getRoot().toPath().resolve("report-result-cache.json").toString();
+    }
+
+    private ReportResultCache.ResultKey key(int fromIndex) {
+        return new ReportResultCache.ResultKey(ReportType.ALL_MOVIES, ReportFormat.CSV,
+                new MovieDataVersion(VERSION, 100, fromIndex, 20));
+    }
+
+    private ReportRequest createRequest(ReportType reportType) {
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId("1");
+        reportRequest.setReportType(reportType);
+        reportRequest.setReportFormat(ReportFormat.CSV);
+        return reportRequest;
+    }
+}
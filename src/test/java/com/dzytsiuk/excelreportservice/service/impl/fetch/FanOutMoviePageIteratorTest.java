@@ -0,0 +1,200 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutMoviePageIteratorTest {
+    private static final int FETCH_SIZE = 10;
+    private static final int CONCURRENCY = 4;
+
+    private final ExecutorService fetchExecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger maxRequestedPage = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testOutOfOrderCompletionIsReassembledInRowOrder() {
+        // earlier pages answer slower than later ones
+        MovieService movieService = movieService(100, page -> (10 - page) * 20L);
+
+        List<MoviePage> pages = drain(iterator(movieService, new Semaphore(CONCURRENCY)));
+
+        assertEquals(11, pages.size());
+        List<Integer> rowNumbers = rowNumbers(pages);
+        assertEquals(100, rowNumbers.size());
+        for (int i = 0; i < rowNumbers.size(); i++) {
+            assertEquals(i + 1, (int) rowNumbers.get(i));
+        }
+        assertEquals(0, pages.get(10).getMovies().size());
+    }
+
+    @Test
+    public void testLastPartialPageStopsIssuingRequests() {
+        MovieService movieService = movieService(25, page -> 10L);
+
+        List<MoviePage> pages = drain(iterator(movieService, new Semaphore(CONCURRENCY)));
+
+        assertEquals(3, pages.size());
+        assertEquals(5, pages.get(2).getMovies().size());
+        assertEquals(25, rowNumbers(pages).size());
+        assertTrue("Requested up to page " + maxRequestedPage.get(), maxRequestedPage.get() < 3 + CONCURRENCY);
+    }
+
+    @Test
+    public void testEmptyResultSet() {
+        MovieService movieService = movieService(0, page -> 0L);
+
+        MoviePageIterator iterator = iterator(movieService, new Semaphore(CONCURRENCY));
+        MoviePage moviePage = iterator.next();
+
+        assertEquals(1, moviePage.getPage());
+        assertTrue(moviePage.getMovies().isEmpty());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testGlobalLimitIsSharedBetweenReports() {
+        MovieService movieService = movieService(200, page -> 20L);
+        Semaphore globalPermits = new Semaphore(3);
+
+        MoviePageIterator first = iterator(movieService, globalPermits);
+        MoviePageIterator second = iterator(movieService, globalPermits);
+        List<MoviePage> firstPages = new ArrayList<>();
+        List<MoviePage> secondPages = new ArrayList<>();
+        while (first.hasNext() || second.hasNext()) {
+            if (first.hasNext()) {
+                firstPages.add(first.next());
+            }
+            if (second.hasNext()) {
+                secondPages.add(second.next());
+            }
+        }
+
+        assertEquals(200, rowNumbers(firstPages).size());
+        assertEquals(200, rowNumbers(secondPages).size());
+        assertTrue("Max concurrent calls " + maxRunning.get(), maxRunning.get() <= 3);
+    }
+
+    // a report over the global limit waits for a permit before it submits a page, it does not take a fetch
+    // thread to wait on. One more page may be submitted while a fetch that gave back its permit leaves the pool
+    @Test
+    public void testPagesAreSubmittedOnlyWithPermit() throws InterruptedException {
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger maxSubmitted = new AtomicInteger();
+        ExecutorService countingExecutor = new ThreadPoolExecutor(8, 8, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable command) {
+                maxSubmitted.accumulateAndGet(submitted.incrementAndGet(), Math::max);
+                super.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        submitted.decrementAndGet();
+                    }
+                });
+            }
+        };
+        MovieService movieService = movieService(200, page -> 5L);
+        Semaphore globalPermits = new Semaphore(2);
+        try {
+            MoviePageIterator first = iterator(movieService, globalPermits, countingExecutor);
+            MoviePageIterator second = iterator(movieService, globalPermits, countingExecutor);
+            while (first.hasNext() || second.hasNext()) {
+                if (first.hasNext()) {
+                    first.next();
+                }
+                if (second.hasNext()) {
+                    second.next();
+                }
+            }
+            // fetches cancelled after the last page give their permits back, started ones once they end
+            countingExecutor.shutdown();
+            assertTrue(countingExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            countingExecutor.shutdownNow();
+        }
+
+        assertTrue("Max submitted pages " + maxSubmitted.get(), maxSubmitted.get() <= 3);
+        assertEquals(2, globalPermits.availablePermits());
+    }
+
+    private MoviePageIterator iterator(MovieService movieService, Semaphore globalPermits) {
+        return iterator(movieService, globalPermits, fetchExecutor);
+    }
+
+    private MoviePageIterator iterator(MovieService movieService, Semaphore globalPermits,
+                                       ExecutorService fetchExecutor) {
+        return new FanOutMoviePageIterator(movieService, new ReportParameter(), FETCH_SIZE, CONCURRENCY,
+                globalPermits, fetchExecutor, 1);
+    }
+
+    private MovieService movieService(int totalMovies, PageLatency pageLatency) {
+        return (page, count, reportParameter) -> {
+            maxRequestedPage.accumulateAndGet(page, Math::max);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(Math.max(0, pageLatency.millis(page)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            List<ReportMovie> movies = new ArrayList<>();
+            for (int id = (page - 1) * count; id < Math.min(page * count, totalMovies); id++) {
+                ReportMovie movie = new ReportMovie();
+                movie.setId(id);
+                movies.add(movie);
+            }
+            return movies;
+        };
+    }
+
+    private List<MoviePage> drain(MoviePageIterator iterator) {
+        List<MoviePage> pages = new ArrayList<>();
+        while (iterator.hasNext()) {
+            pages.add(iterator.next());
+        }
+        return pages;
+    }
+
+    private List<Integer> rowNumbers(List<MoviePage> pages) {
+        List<Integer> rowNumbers = new ArrayList<>();
+        for (MoviePage moviePage : pages) {
+            MovieColumns movies = moviePage.getMovies();
+            for (int i = 0; i < movies.size(); i++) {
+                int rowNumber = ((moviePage.getPage() - 1) * FETCH_SIZE) + i + 1;
+                assertEquals(rowNumber - 1, movies.getId(i));
+                rowNumbers.add(rowNumber);
+            }
+        }
+        return rowNumbers;
+    }
+
+    private interface PageLatency {
+        long millis(int page);
+    }
+}
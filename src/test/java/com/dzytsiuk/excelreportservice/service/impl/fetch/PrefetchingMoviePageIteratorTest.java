@@ -0,0 +1,176 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.entity.User;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import com.dzytsiuk.excelreportservice.service.impl.DefaultMovieService;
+import com.dzytsiuk.excelreportservice.service.impl.client.MovielandClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PrefetchingMoviePageIteratorTest {
+    private static final int FETCH_SIZE = 10;
+    private static final int TOTAL_MOVIES = 95;
+    private static final long FETCH_LATENCY_MILLIS = 40;
+    private static final long WRITE_LATENCY_MILLIS = 40;
+
+    private final ExecutorService fetchExecutor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testPrefetchKeepsOrderAndBeatsSerialFetch() {
+        MovieService movieService = new DefaultMovieService(new SlowMovielandClient(TOTAL_MOVIES, -1), null, new ObjectMapper(), false);
+
+        long serialStart = System.nanoTime();
+        List<Integer> serialIds = drain(new SerialMoviePageIterator(movieService, new ReportParameter(), FETCH_SIZE, 1));
+        long serialMillis = (System.nanoTime() - serialStart) / 1_000_000;
+
+        long prefetchStart = System.nanoTime();
+        List<Integer> prefetchIds = drain(new PrefetchingMoviePageIterator(movieService, new ReportParameter(),
+                FETCH_SIZE, 3, fetchExecutor, 1));
+        long prefetchMillis = (System.nanoTime() - prefetchStart) / 1_000_000;
+
+        assertEquals(TOTAL_MOVIES, prefetchIds.size());
+        assertEquals(serialIds, prefetchIds);
+        assertTrue("Serial " + serialMillis + "ms, prefetch " + prefetchMillis + "ms",
+                prefetchMillis < serialMillis * 3 / 4);
+    }
+
+    @Test
+    public void testFetchErrorIsPropagatedToConsumer() {
+        MovieService movieService = new DefaultMovieService(new SlowMovielandClient(TOTAL_MOVIES, 3), null, new ObjectMapper(), false);
+        List<Integer> ids = new ArrayList<>();
+        MoviePageIterator iterator = new PrefetchingMoviePageIterator(movieService, new ReportParameter(),
+                FETCH_SIZE, 3, fetchExecutor, 1);
+        try {
+            while (iterator.hasNext()) {
+                MovieColumns movies = iterator.next().getMovies();
+                for (int i = 0; i < movies.size(); i++) {
+                    ids.add(movies.getId(i));
+                }
+            }
+            fail("Fetch error expected");
+        } catch (IllegalStateException e) {
+            assertEquals("Movieland is down", e.getMessage());
+        } finally {
+            iterator.close();
+        }
+        assertEquals(2 * FETCH_SIZE, ids.size());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(timeout = 10_000)
+    public void testFetchErrorOfProducerIsPropagatedToConsumer() {
+        MovieService movieService = (page, count, reportParameter) -> {
+            if (page == 2) {
+                throw new OutOfMemoryError("Java heap space");
+            }
+            return new SlowMovielandClient(TOTAL_MOVIES, -1).getMovies(page, count, null, null);
+        };
+        MoviePageIterator iterator = new PrefetchingMoviePageIterator(movieService, new ReportParameter(),
+                FETCH_SIZE, 3, fetchExecutor, 1);
+        try {
+            assertEquals(1, iterator.next().getPage());
+            iterator.next();
+            fail("Error expected");
+        } catch (OutOfMemoryError e) {
+            assertEquals("Java heap space", e.getMessage());
+        } finally {
+            iterator.close();
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    private List<Integer> drain(MoviePageIterator iterator) {
+        List<Integer> ids = new ArrayList<>();
+        try {
+            int expectedPage = 1;
+            while (iterator.hasNext()) {
+                MoviePage moviePage = iterator.next();
+                assertEquals(expectedPage++, moviePage.getPage());
+                MovieColumns movies = moviePage.getMovies();
+                for (int i = 0; i < movies.size(); i++) {
+                    ids.add(movies.getId(i));
+                }
+                sleep(WRITE_LATENCY_MILLIS);
+            }
+        } finally {
+            iterator.close();
+        }
+        return ids;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class SlowMovielandClient implements MovielandClient {
+        private final int totalMovies;
+        private final int failingPage;
+
+        SlowMovielandClient(int totalMovies, int failingPage) {
+            this.totalMovies = totalMovies;
+            this.failingPage = failingPage;
+        }
+
+        @Override
+        public List<ReportMovie> getMovies(Integer page, Integer count, LocalDateTime fromDate, LocalDateTime toDate) {
+            sleep(FETCH_LATENCY_MILLIS);
+            if (page == failingPage) {
+                throw new IllegalStateException("Movieland is down");
+            }
+            List<ReportMovie> movies = new ArrayList<>();
+            for (int id = (page - 1) * count; id < Math.min(page * count, totalMovies); id++) {
+                ReportMovie movie = new ReportMovie();
+                movie.setId(id);
+                movies.add(movie);
+            }
+            return movies;
+        }
+
+        @Override
+        public MovieColumns getMovieColumns(Integer page, Integer count, LocalDateTime fromDate, LocalDateTime toDate) {
+            return MovieColumns.of(getMovies(page, count, fromDate, toDate));
+        }
+
+        @Override
+        public Response getMoviesResponse(Integer page, Integer count, LocalDateTime fromDate, LocalDateTime toDate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ReportMovie> getModifiedMovies(Integer page, Integer count, LocalDateTime modifiedFrom) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<User> getUsers() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.dzytsiuk.excelreportservice.service.impl.fetch;
+
+import com.dzytsiuk.excelreportservice.entity.MovieColumns;
+import com.dzytsiuk.excelreportservice.entity.ReportMovie;
+import com.dzytsiuk.excelreportservice.entity.ReportParameter;
+import com.dzytsiuk.excelreportservice.service.MovieService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingMoviePageIteratorTest {
+    private static final int FETCH_SIZE = 20;
+    private static final int CHUNK_SIZE = 7;
+    private static final LocalDateTime ADD_DATE = LocalDateTime.of(2019, 2, 28, 23, 59, 1);
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final AtomicInteger openReaders = new AtomicInteger();
+
+    @Test
+    public void testChunksKeepRowOrderAcrossPages() {
+        StreamingMoviePageIterator iterator = new StreamingMoviePageIterator(movieService(45, -1),
+                new ReportParameter(), FETCH_SIZE, CHUNK_SIZE, 1);
+        List<Integer> ids = new ArrayList<>();
+        MovieColumns buffer = null;
+        while (iterator.hasNext()) {
+            MoviePage chunk = iterator.next();
+            MovieColumns movies = chunk.getMovies();
+            if (buffer != null) {
+                assertSame(buffer, movies);
+            }
+            buffer = movies;
+            assertTrue(movies.size() <= CHUNK_SIZE);
+            assertEquals(ids.size(), chunk.getFirstRow());
+            for (int i = 0; i < movies.size(); i++) {
+                assertEquals(ids.size(), movies.getId(i));
+                assertEquals(ADD_DATE.plusMinutes(movies.getId(i)), movies.getAddDate(i));
+                ids.add(movies.getId(i));
+            }
+        }
+
+        assertEquals(45, ids.size());
+        assertEquals(CHUNK_SIZE, buffer.getCapacity());
+        assertEquals(0, openReaders.get());
+    }
+
+    @Test
+    public void testFullLastPageEndsWithEmptyChunk() {
+        StreamingMoviePageIterator iterator = new StreamingMoviePageIterator(movieService(40, -1),
+                new ReportParameter(), FETCH_SIZE, FETCH_SIZE, 1);
+        int rows = 0;
+        int chunks = 0;
+        while (iterator.hasNext()) {
+            rows += iterator.next().getMovies().size();
+            chunks++;
+        }
+
+        assertEquals(40, rows);
+        assertEquals(3, chunks);
+    }
+
+    @Test
+    public void testReaderIsClosedOnError() {
+        StreamingMoviePageIterator iterator = new StreamingMoviePageIterator(movieService(45, 12),
+                new ReportParameter(), FETCH_SIZE, CHUNK_SIZE, 1);
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+            fail("Decode error expected");
+        } catch (UncheckedIOException e) {
+            assertFalse(iterator.hasNext());
+        }
+        assertEquals(0, openReaders.get());
+    }
+
+    // movie with the broken id ends the stream in the middle of its object
+    private MovieService movieService(int totalMovies, int brokenId) {
+        return new MovieService() {
+            @Override
+            public List<ReportMovie> getMovies(Integer page, Integer count, ReportParameter reportParameter) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public MovieReader openMovies(Integer page, Integer count, ReportParameter reportParameter) {
+                byte[] json = json((page - 1) * count, Math.min(page * count, totalMovies), brokenId);
+                openReaders.incrementAndGet();
+                try {
+                    return new JsonMovieReader(jsonFactory.createParser(new ByteArrayInputStream(json)),
+                            openReaders::decrementAndGet);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private byte[] json(int from, int to, int brokenId) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputStream)) {
+            generator.writeStartArray();
+            for (int id = from; id < to; id++) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", id);
+                if (id == brokenId) {
+                    generator.flush();
+                    return outputStream.toByteArray();
+                }
+                generator.writeStringField("nameNative", "Movie " + id);
+                generator.writeStringField("addDate", ADD_DATE.plusMinutes(id).toString());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,151 @@
+package com.dzytsiuk.excelreportservice.service.impl.ftp;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FtpClientPoolTest {
+    private static final String USERNAME = "admin";
+    private static final String PASSWORD = "secret";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private int port;
+    private File homeDirectory;
+    private FtpServer ftpServer;
+    private FtpClientPool ftpClientPool;
+
+    @Before
+    public void setUp() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        homeDirectory = temporaryFolder.newFolder("ftp");
+        ftpServer = startServer();
+    }
+
+    @After
+    public void tearDown() {
+        if (ftpClientPool != null) {
+            ftpClientPool.close();
+        }
+        ftpServer.stop();
+    }
+
+    @Test
+    public void testSessionIsReusedBetweenUploads() throws Exception {
+        ftpClientPool = createPool(60_000, 60_000);
+
+        upload("first.txt", "first");
+        upload("second.txt", "second");
+        upload("third.txt", "third");
+
+        FtpPoolMetrics metrics = ftpClientPool.getMetrics();
+        assertEquals(1, metrics.getCreated());
+        assertEquals(3, metrics.getBorrowed());
+        assertEquals(1, metrics.getIdle());
+        assertEquals("third", new String(Files.readAllBytes(new File(homeDirectory, "third.txt").toPath()),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIdleSessionIsEvicted() throws Exception {
+        ftpClientPool = createPool(100, 60_000, 50);
+
+        upload("report.txt", "report");
+        Thread.sleep(500);
+
+        FtpPoolMetrics metrics = ftpClientPool.getMetrics();
+        assertEquals(0, metrics.getIdle());
+        assertTrue(metrics.getDestroyedByEvictor() >= 1);
+    }
+
+    @Test
+    public void testSessionIsRecycledAfterMaxLifetime() throws Exception {
+        ftpClientPool = createPool(60_000, 100);
+
+        upload("first.txt", "first");
+        Thread.sleep(200);
+        upload("second.txt", "second");
+
+        FtpPoolMetrics metrics = ftpClientPool.getMetrics();
+        assertEquals(2, metrics.getCreated());
+        assertEquals(1, metrics.getDestroyedByBorrowValidation());
+    }
+
+    @Test
+    public void testPoolRecoversAfterServerSideDisconnect() throws Exception {
+        ftpClientPool = createPool(60_000, 60_000);
+        upload("before.txt", "before");
+
+        ftpServer.stop();
+        ftpServer = startServer();
+        upload("after.txt", "after");
+
+        FtpPoolMetrics metrics = ftpClientPool.getMetrics();
+        assertEquals(2, metrics.getCreated());
+        assertEquals(1, metrics.getDestroyedByBorrowValidation());
+        assertTrue(new File(homeDirectory, "after.txt").exists());
+    }
+
+    private void upload(String filename, String content) throws IOException {
+        ftpClientPool.execute(ftpClient -> {
+            assertTrue(ftpClient.storeFile(filename, new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))));
+            return null;
+        });
+    }
+
+    // without the evictor only borrow validation destroys sessions
+    private FtpClientPool createPool(long idleEvictionMillis, long maxLifetimeMillis) {
+        return createPool(idleEvictionMillis, maxLifetimeMillis, -1);
+    }
+
+    private FtpClientPool createPool(long idleEvictionMillis, long maxLifetimeMillis, long evictionRunMillis) {
+        GenericObjectPoolConfig<FTPClient> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(4);
+        poolConfig.setTestOnBorrow(true);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setMinEvictableIdleTimeMillis(idleEvictionMillis);
+        poolConfig.setTimeBetweenEvictionRunsMillis(evictionRunMillis);
+        poolConfig.setJmxEnabled(false);
+        return new FtpClientPool(new FtpClientFactory("localhost", port, USERNAME, PASSWORD, maxLifetimeMillis),
+                poolConfig);
+    }
+
+    private FtpServer startServer() throws Exception {
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(port);
+        serverFactory.addListener("default", listenerFactory.createListener());
+        BaseUser user = new BaseUser();
+        user.setName(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(homeDirectory.getAbsolutePath());
+        user.setAuthorities(Collections.singletonList(new WritePermission()));
+        serverFactory.getUserManager().save(user);
+        FtpServer server = serverFactory.createServer();
+        server.start();
+        return server;
+    }
+}
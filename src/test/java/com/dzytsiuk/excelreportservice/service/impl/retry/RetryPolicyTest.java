@@ -0,0 +1,48 @@
+package com.dzytsiuk.excelreportservice.service.impl.retry;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RetryPolicyTest {
+    @Test
+    public void testDelayDoublesUpToMaxDelay() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 100, 1000);
+
+        assertEquals(100, retryPolicy.getDelayMillis(1));
+        assertEquals(200, retryPolicy.getDelayMillis(2));
+        assertEquals(800, retryPolicy.getDelayMillis(4));
+        assertEquals(1000, retryPolicy.getDelayMillis(5));
+        assertEquals(1000, retryPolicy.getDelayMillis(60));
+    }
+
+    @Test
+    public void testTaskIsRetriedUntilItSucceeds() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        new RetryPolicy(3, 1, 1).execute("task", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("attempt " + attempts.get());
+            }
+        });
+
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testLastFailureIsRethrown() {
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            new RetryPolicy(3, 1, 1).execute("task", () -> {
+                throw new IllegalStateException("attempt " + attempts.incrementAndGet());
+            });
+            fail("Task succeeded although every attempt failed");
+        } catch (IllegalStateException e) {
+            assertEquals("attempt 3", e.getMessage());
+        }
+        assertEquals(3, attempts.get());
+    }
+}
@@ -0,0 +1,160 @@
+package com.dzytsiuk.excelreportservice.service.impl.scheduler;
+
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReportJobQueueTest {
+    private static final int WORKERS = 4;
+    private static final long LONG_JOB_MILLIS = 120_000;
+    private static final long SHORT_JOB_MILLIS = 500;
+    private static final long NO_AGING = Long.MAX_VALUE / 2;
+
+    @Test
+    public void testShortJobTailLatencyUnderMixedLoad() {
+        long fairP99 = percentile(simulate(fairQueue(NO_AGING), mixedLoad()), 0.99);
+        // aging threshold 0 always takes the oldest request, which is a plain FIFO
+        long fifoP99 = percentile(simulate(new ReportJobQueue<>(Collections.emptyMap(), Collections.emptyMap(),
+                Integer.MAX_VALUE, 0), mixedLoad()), 0.99);
+
+        assertTrue("Fair p99 " + fairP99 + "ms", fairP99 <= 2 * SHORT_JOB_MILLIS);
+        assertTrue("FIFO p99 " + fifoP99 + "ms", fifoP99 > 10 * LONG_JOB_MILLIS / WORKERS);
+    }
+
+    @Test
+    public void testUserCannotMonopolizeLane() {
+        ReportJobQueue<SimulatedJob> queue = fairQueue(NO_AGING);
+        for (int i = 0; i < 10; i++) {
+            SimulatedJob job = new SimulatedJob(ReportType.ADDED_DURING_PERIOD, "greedy", 0, LONG_JOB_MILLIS);
+            queue.add(job, job.reportType, job.userKey, 0, 0);
+        }
+        SimulatedJob other = new SimulatedJob(ReportType.ADDED_DURING_PERIOD, "other", 1, LONG_JOB_MILLIS);
+        queue.add(other, other.reportType, other.userKey, 1, 1);
+
+        assertEquals("greedy", queue.poll(2).userKey);
+        assertEquals("other", queue.poll(2).userKey);
+        assertEquals("greedy", queue.poll(2).userKey);
+        assertEquals("greedy", queue.poll(2).userKey);
+        // greedy user reached max running per user
+        assertEquals(null, queue.poll(2));
+
+        queue.complete(ReportType.ADDED_DURING_PERIOD, "greedy");
+        assertEquals("greedy", queue.poll(3).userKey);
+    }
+
+    @Test
+    public void testOldRequestIsNotStarved() {
+        ReportJobQueue<SimulatedJob> queue = fairQueue(60_000);
+        SimulatedJob first = new SimulatedJob(ReportType.ALL_MOVIES, "patient", 0, LONG_JOB_MILLIS);
+        SimulatedJob old = new SimulatedJob(ReportType.ALL_MOVIES, "patient", 0, LONG_JOB_MILLIS);
+        queue.add(first, first.reportType, first.userKey, 0, 0);
+        queue.add(old, old.reportType, old.userKey, 0, 0);
+        for (int i = 0; i < 20; i++) {
+            SimulatedJob job = new SimulatedJob(ReportType.TOP_ACTIVE_USERS, "user" + i, 1_000, SHORT_JOB_MILLIS);
+            queue.add(job, job.reportType, job.userKey, 1_000, 1_000);
+        }
+
+        assertEquals(first, queue.poll(1_000));
+        // the heavier lane is ahead by weight
+        assertEquals(ReportType.TOP_ACTIVE_USERS, queue.poll(2_000).reportType);
+        assertEquals(ReportType.TOP_ACTIVE_USERS, queue.poll(2_000).reportType);
+        // until the remaining movie report gets too old
+        assertEquals(old, queue.poll(61_000));
+    }
+
+    @Test
+    public void testLaneStatsReportDepthAndWait() {
+        ReportJobQueue<SimulatedJob> queue = fairQueue(NO_AGING);
+        SimulatedJob job = new SimulatedJob(ReportType.TOP_ACTIVE_USERS, "user", 0, SHORT_JOB_MILLIS);
+        queue.add(job, job.reportType, job.userKey, 0, 0);
+        queue.add(job, job.reportType, job.userKey, 0, 100);
+        queue.poll(1_000);
+
+        LaneStats stats = queue.getLaneStats(1_500).get(ReportType.TOP_ACTIVE_USERS.ordinal());
+        assertEquals(1, stats.getQueueDepth());
+        assertEquals(1, stats.getRunning());
+        assertEquals(1_000, stats.getMeanWaitMillis());
+        assertEquals(1_400, stats.getOldestWaitMillis());
+    }
+
+    private ReportJobQueue<SimulatedJob> fairQueue(long agingThresholdMillis) {
+        Map<ReportType, Integer> weights = new EnumMap<>(ReportType.class);
+        weights.put(ReportType.ALL_MOVIES, 1);
+        weights.put(ReportType.ADDED_DURING_PERIOD, 2);
+        weights.put(ReportType.TOP_ACTIVE_USERS, 8);
+        Map<ReportType, Integer> maxRunning = new EnumMap<>(ReportType.class);
+        maxRunning.put(ReportType.ALL_MOVIES, WORKERS - 1);
+        return new ReportJobQueue<>(weights, maxRunning, 3, agingThresholdMillis);
+    }
+
+    // a burst of long ALL_MOVIES reports from two users followed by a steady stream of short reports
+    private List<SimulatedJob> mixedLoad() {
+        List<SimulatedJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            jobs.add(new SimulatedJob(ReportType.ALL_MOVIES, i % 2 == 0 ? "a" : "b", 0, LONG_JOB_MILLIS));
+        }
+        for (long arrival = 1_000; arrival < 600_000; arrival += 3_000) {
+            jobs.add(new SimulatedJob(ReportType.TOP_ACTIVE_USERS, "u" + (arrival % 5), arrival, SHORT_JOB_MILLIS));
+        }
+        return jobs;
+    }
+
+    // discrete event simulation on a virtual clock, returns latencies of short jobs
+    private List<Long> simulate(ReportJobQueue<SimulatedJob> queue, List<SimulatedJob> arrivals) {
+        PriorityQueue<SimulatedJob> running = new PriorityQueue<>((a, b) -> Long.compare(a.finishedAt, b.finishedAt));
+        List<Long> shortLatencies = new ArrayList<>();
+        int next = 0;
+        while (next < arrivals.size() || queue.size() > 0 || !running.isEmpty()) {
+            long nextArrival = next < arrivals.size() ? arrivals.get(next).arrivedAt : Long.MAX_VALUE;
+            long nextFinish = running.isEmpty() ? Long.MAX_VALUE : running.peek().finishedAt;
+            long now = Math.min(nextArrival, nextFinish);
+            while (!running.isEmpty() && running.peek().finishedAt <= now) {
+                SimulatedJob finished = running.poll();
+                queue.complete(finished.reportType, finished.userKey);
+                if (finished.reportType == ReportType.TOP_ACTIVE_USERS) {
+                    shortLatencies.add(finished.finishedAt - finished.arrivedAt);
+                }
+            }
+            while (next < arrivals.size() && arrivals.get(next).arrivedAt <= now) {
+                SimulatedJob job = arrivals.get(next++);
+                queue.add(job, job.reportType, job.userKey, job.arrivedAt, now);
+            }
+            SimulatedJob job;
+            while (running.size() < WORKERS && (job = queue.poll(now)) != null) {
+                job.finishedAt = now + job.durationMillis;
+                running.add(job);
+            }
+        }
+        return shortLatencies;
+    }
+
+    private long percentile(List<Long> latencies, double percentile) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(percentile * sorted.size()) - 1);
+    }
+
+    private static class SimulatedJob {
+        private final ReportType reportType;
+        private final String userKey;
+        private final long arrivedAt;
+        private final long durationMillis;
+        private long finishedAt;
+
+        SimulatedJob(ReportType reportType, String userKey, long arrivedAt, long durationMillis) {
+            this.reportType = reportType;
+            this.userKey = userKey;
+            this.arrivedAt = arrivedAt;
+            this.durationMillis = durationMillis;
+        }
+    }
+}
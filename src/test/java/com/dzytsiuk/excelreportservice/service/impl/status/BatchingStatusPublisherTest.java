@@ -0,0 +1,172 @@
+package com.dzytsiuk.excelreportservice.service.impl.status;
+
+import com.dzytsiuk.excelreportservice.config.JmsConfig;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportStatus;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerFilter;
+import org.apache.activemq.broker.BrokerPlugin;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.ConnectionContext;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.TransactionId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.Message;
+import javax.jms.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchingStatusPublisherTest {
+    private static final String BROKER_NAME = "status-publisher-test";
+    private static final long RECEIVE_TIMEOUT_MILLIS = 5000;
+
+    private final Queue queue = new ActiveMQQueue("processing");
+    private final MessageConverter messageConverter = new JmsConfig().jacksonJmsMessageConverter();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger commits = new AtomicInteger();
+    private BrokerService broker;
+    private CachingConnectionFactory cachingConnectionFactory;
+    private JmsTemplate senderTemplate;
+    private JmsTemplate receiverTemplate;
+    private BatchingStatusPublisher statusPublisher;
+
+    @Before
+    public void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setBrokerName(BROKER_NAME);
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.setPlugins(new BrokerPlugin[]{next -> new BrokerFilter(next) {
+            @Override
+            public void commitTransaction(ConnectionContext context, TransactionId xid, boolean onePhase) throws Exception {
+                commits.incrementAndGet();
+                super.commitTransaction(context, xid, onePhase);
+            }
+        }});
+        broker.start();
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory("vm://" + BROKER_NAME + "?create=false");
+        cachingConnectionFactory = new CachingConnectionFactory(connectionFactory);
+        senderTemplate = new JmsTemplate(cachingConnectionFactory);
+        senderTemplate.setMessageConverter(messageConverter);
+        senderTemplate.setSessionTransacted(true);
+        receiverTemplate = new JmsTemplate(connectionFactory);
+        receiverTemplate.setMessageConverter(messageConverter);
+        receiverTemplate.setReceiveTimeout(RECEIVE_TIMEOUT_MILLIS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (statusPublisher != null) {
+            statusPublisher.close();
+        }
+        cachingConnectionFactory.destroy();
+        broker.stop();
+        broker.waitUntilStopped();
+    }
+
+    @Test
+    public void testSupersededStatusIsCoalesced() throws Exception {
+        statusPublisher = createPublisher(100, 500);
+        ReportRequest reportRequest = createRequest("1", ReportStatus.IN_PROGRESS);
+
+        statusPublisher.publish(reportRequest);
+        reportRequest.setReportStatus(ReportStatus.GENERATED);
+        reportRequest.setFtpUrl("ftp://admin@localhost/report/movie/allMovies_1.xlsx");
+        statusPublisher.publish(reportRequest);
+
+        Message message = receiverTemplate.receive(queue);
+        assertTrue(message.getBooleanProperty("reply"));
+        ReportRequest reply = (ReportRequest) messageConverter.fromMessage(message);
+        assertEquals("1", reply.getId());
+        assertEquals(ReportStatus.GENERATED, reply.getReportStatus());
+        assertEquals(reportRequest.getFtpUrl(), reply.getFtpUrl());
+        receiverTemplate.setReceiveTimeout(1000);
+        assertNull(receiverTemplate.receive(queue));
+    }
+
+    // a report generated again goes back to IN_PROGRESS, the status published last is the current one
+    @Test
+    public void testLaterStatusReplacesEarlierOne() throws Exception {
+        statusPublisher = createPublisher(100, 500);
+
+        statusPublisher.publish(createRequest("1", ReportStatus.GENERATED));
+        statusPublisher.publish(createRequest("1", ReportStatus.IN_PROGRESS));
+
+        ReportRequest reply = (ReportRequest) receiverTemplate.receiveAndConvert(queue);
+        assertEquals(ReportStatus.IN_PROGRESS, reply.getReportStatus());
+        receiverTemplate.setReceiveTimeout(1000);
+        assertNull(receiverTemplate.receive(queue));
+    }
+
+    @Test
+    public void testStatusesAreSentInBatches() throws Exception {
+        int reports = 250;
+        statusPublisher = createPublisher(100, 20);
+
+        for (int i = 0; i < reports; i++) {
+            statusPublisher.publish(createRequest(String.valueOf(i), ReportStatus.IN_PROGRESS));
+        }
+
+        for (int i = 0; i < reports; i++) {
+            ReportRequest reply = (ReportRequest) receiverTemplate.receiveAndConvert(queue);
+            assertEquals(String.valueOf(i), reply.getId());
+        }
+        assertEquals(0, statusPublisher.getPendingCount());
+        // at least three batches of 100, far fewer than a transaction per status
+        assertTrue("Statuses sent in " + commits.get() + " transactions", commits.get() >= 3 && commits.get() <= 10);
+        // the notify stage is recorded after the commit, closing waits for the publisher thread to record it
+        statusPublisher.close();
+        assertEquals(reports, meterRegistry.get("report.stage").tag("stage", "notify")
+                .tag("type", ReportType.ALL_MOVIES.getName()).timer().count());
+    }
+
+    @Test
+    public void testCloseSendsPendingStatuses() throws Exception {
+        statusPublisher = createPublisher(100, 60_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            statusPublisher.publish(createRequest(String.valueOf(i), ReportStatus.GENERATED));
+        }
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+
+        statusPublisher.close();
+
+        for (int i = 0; i < 3; i++) {
+            ReportRequest reply = (ReportRequest) receiverTemplate.receiveAndConvert(queue);
+            assertEquals(String.valueOf(i), reply.getId());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPublishAfterCloseFails() {
+        statusPublisher = createPublisher(100, 20);
+        statusPublisher.close();
+
+        statusPublisher.publish(createRequest("1", ReportStatus.GENERATED));
+    }
+
+    private BatchingStatusPublisher createPublisher(int batchSize, long lingerMillis) {
+        return new BatchingStatusPublisher(senderTemplate, queue, new ReportMetrics(meterRegistry), batchSize,
+                lingerMillis, 100);
+    }
+
+    private ReportRequest createRequest(String id, ReportStatus reportStatus) {
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId(id);
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportStatus(reportStatus);
+        return reportRequest;
+    }
+}
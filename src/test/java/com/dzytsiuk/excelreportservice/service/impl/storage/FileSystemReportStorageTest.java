@@ -0,0 +1,148 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class FileSystemReportStorageTest {
+    private static final String PATH = "report/movie/allMovies_fs-test.csv";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final byte[] report = new byte[1_000_000];
+    private Path directory;
+    private FileSystemReportStorage reportStorage;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(report);
+        directory = temporaryFolder.newFolder("reports").toPath();
+        reportStorage = new FileSystemReportStorage(new ReportMetrics(meterRegistry), directory.toString(),
+                "file:reports/");
+    }
+
+    @Test
+    public void testStreamedReportIsStored() {
+        ReportRequest reportRequest = createRequest();
+
+        reportStorage.saveAndEnrichWithUrl(outputStream -> {
+            try {
+                outputStream.write(report);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, reportRequest);
+
+        assertStored();
+        assertEquals("file:reports/" + PATH, reportRequest.getFtpUrl());
+    }
+
+    @Test
+    public void testFileIsTransferred() throws IOException {
+        Path reportFile = temporaryFolder.newFile().toPath();
+        Files.write(reportFile, report);
+
+        reportStorage.saveAndEnrichWithUrl(new FileInputStream(reportFile.toFile()), createRequest());
+
+        assertStored();
+        assertEquals(1, meterRegistry.get("report.stage").tag("type", ReportType.ALL_MOVIES.getName())
+                .tag("stage", "upload").timer().count());
+    }
+
+    @Test
+    public void testInterruptedCopyContinuesFromPartFile() throws IOException {
+        Path reportFile = temporaryFolder.newFile().toPath();
+        Files.write(reportFile, report);
+        Files.createDirectories(directory.resolve(PATH).getParent());
+        Files.write(directory.resolve(PATH + ".part"), Arrays.copyOf(report, 300_000));
+
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), true);
+
+        assertStored();
+        assertEquals(report.length - 300_000, meterRegistry.get("report.bytes.uploaded")
+                .tag("type", ReportType.ALL_MOVIES.getName()).counter().count(), 0.0);
+    }
+
+    @Test
+    public void testPartFileOfAnotherReportIsReplaced() throws IOException {
+        Path reportFile = temporaryFolder.newFile().toPath();
+        Files.write(reportFile, report);
+        Files.createDirectories(directory.resolve(PATH).getParent());
+        Files.write(directory.resolve(PATH + ".part"), new byte[300_000]);
+
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), false);
+
+        assertStored();
+        assertEquals(report.length, meterRegistry.get("report.bytes.uploaded")
+                .tag("type", ReportType.ALL_MOVIES.getName()).counter().count(), 0.0);
+    }
+
+    @Test
+    public void testArtifactIsStoredUnderContentHash() throws IOException {
+        Path reportFile = temporaryFolder.newFile().toPath();
+        Files.write(reportFile, report);
+        ReportRequest reportRequest = createRequest();
+
+        reportStorage.saveArtifactAndEnrichWithUrl(reportFile, reportRequest, "0123abcd", false);
+
+        Path artifact = directory.resolve("report/artifact/0123abcd.csv");
+        assertArrayEquals(report, Files.readAllBytes(artifact));
+        assertEquals("file:reports/report/artifact/0123abcd.csv", reportRequest.getFtpUrl());
+        assertFalse(Files.exists(directory.resolve(PATH)));
+
+        reportStorage.deleteArtifact("0123abcd", ReportFormat.CSV);
+
+        assertFalse(Files.exists(artifact));
+    }
+
+    @Test
+    public void testFailedReportLeavesNoFile() {
+        try {
+            reportStorage.saveAndEnrichWithUrl(outputStream -> {
+                throw new IllegalStateException("Movieland is not available");
+            }, createRequest());
+            fail("Report stored although it failed");
+        } catch (IllegalStateException e) {
+            assertFalse(Files.exists(directory.resolve(PATH)));
+            assertFalse(Files.exists(directory.resolve(PATH + ".part")));
+        }
+    }
+
+    private void assertStored() {
+        try {
+            assertArrayEquals(report, Files.readAllBytes(directory.resolve(PATH)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        assertFalse(Files.exists(directory.resolve(PATH + ".part")));
+    }
+
+    private ReportRequest createRequest() {
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId("fs-test");
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportFormat(ReportFormat.CSV);
+        return reportRequest;
+    }
+}
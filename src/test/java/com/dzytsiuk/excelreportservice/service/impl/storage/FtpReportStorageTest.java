@@ -0,0 +1,142 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientFactory;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientPool;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class FtpReportStorageTest {
+    private static final String USERNAME = "admin";
+    private static final String PASSWORD = "secret";
+    private static final String REMOTE_FILE = "report/movie/allMovies_streaming-test.csv";
+    private static final int REPORT_SIZE = 1_000_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ExecutorService uploadExecutor = Executors.newFixedThreadPool(2);
+    private final byte[] report = new byte[REPORT_SIZE];
+    private Path homeDirectory;
+    private FtpServer ftpServer;
+    private FtpClientPool ftpClientPool;
+    private FtpReportStorage reportStorage;
+
+    @Before
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        homeDirectory = temporaryFolder.newFolder("ftp").toPath();
+        Files.createDirectories(homeDirectory.resolve("report/movie"));
+        new Random(42).nextBytes(report);
+        ftpServer = startServer(port);
+        GenericObjectPoolConfig<FTPClient> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setJmxEnabled(false);
+        ftpClientPool = new FtpClientPool(new FtpClientFactory("localhost", port, USERNAME, PASSWORD, 60_000), poolConfig);
+        reportStorage = new FtpReportStorage(uploadExecutor, ftpClientPool, new ReportMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(reportStorage, "host", "localhost");
+        ReflectionTestUtils.setField(reportStorage, "username", USERNAME);
+        ReflectionTestUtils.setField(reportStorage, "uploadChunkSize", 65536);
+        ReflectionTestUtils.setField(reportStorage, "uploadMemoryChunks", 4);
+        ReflectionTestUtils.setField(reportStorage, "uploadSpillTimeout", 2000L);
+        ReflectionTestUtils.setField(reportStorage, "uploadSpillDirectory", temporaryFolder.newFolder("spill").toString());
+    }
+
+    @After
+    public void tearDown() {
+        ftpClientPool.close();
+        ftpServer.stop();
+        uploadExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamedReportIsStored() throws IOException {
+        ReportRequest reportRequest = createRequest();
+
+        reportStorage.saveAndEnrichWithUrl(outputStream -> write(outputStream, REPORT_SIZE), reportRequest);
+
+        assertArrayEquals(report, Files.readAllBytes(homeDirectory.resolve(REMOTE_FILE)));
+        assertEquals("ftp://admin@localhost//" + REMOTE_FILE, reportRequest.getFtpUrl());
+    }
+
+    @Test
+    public void testFailedReportWriterLeavesNoFile() {
+        IllegalStateException failure = new IllegalStateException("Movieland is down");
+        try {
+            reportStorage.saveAndEnrichWithUrl(outputStream -> {
+                write(outputStream, REPORT_SIZE / 2);
+                throw failure;
+            }, createRequest());
+            fail("Report writer failure expected");
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+
+        assertFalse(Files.exists(homeDirectory.resolve(REMOTE_FILE)));
+    }
+
+    private void write(OutputStream outputStream, int length) {
+        try {
+            outputStream.write(report, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ReportRequest createRequest() {
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId("streaming-test");
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportFormat(ReportFormat.CSV);
+        return reportRequest;
+    }
+
+    private FtpServer startServer(int port) throws Exception {
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(port);
+        serverFactory.addListener("default", listenerFactory.createListener());
+        BaseUser user = new BaseUser();
+        user.setName(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(homeDirectory.toString());
+        user.setAuthorities(Collections.singletonList(new WritePermission()));
+        serverFactory.getUserManager().save(user);
+        FtpServer server = serverFactory.createServer();
+        server.start();
+        return server;
+    }
+}
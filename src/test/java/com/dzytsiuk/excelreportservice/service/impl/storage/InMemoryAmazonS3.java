@@ -0,0 +1,197 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Objects and multipart uploads of one bucket in memory. Every part upload takes partDelayMillis so that
+// parallel parts overlap.
+class InMemoryAmazonS3 extends AbstractAmazonS3 {
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> userMetadata = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> uploadUserMetadata = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger partsInFlight = new AtomicInteger();
+    private final AtomicInteger maxPartsInFlight = new AtomicInteger();
+    private final AtomicInteger partUploads = new AtomicInteger();
+    private final AtomicInteger aborted = new AtomicInteger();
+    private final long partDelayMillis;
+    private volatile int failingPart;
+
+    InMemoryAmazonS3(long partDelayMillis) {
+        this.partDelayMillis = partDelayMillis;
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new ConcurrentHashMap<>());
+        uploadUserMetadata.put(uploadId, getUserMetadata(request.getObjectMetadata()));
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId(uploadId);
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+        int inFlight = partsInFlight.incrementAndGet();
+        maxPartsInFlight.accumulateAndGet(inFlight, Math::max);
+        try {
+            Thread.sleep(partDelayMillis);
+            if (request.getPartNumber() == failingPart) {
+                throw new AmazonS3Exception("Part " + failingPart + " failed");
+            }
+            byte[] part = new byte[(int) request.getPartSize()];
+            if (request.getFile() != null) {
+                try (RandomAccessFile file = new RandomAccessFile(request.getFile(), "r")) {
+                    file.seek(request.getFileOffset());
+                    file.readFully(part);
+                }
+            } else {
+                new DataInputStream(request.getInputStream()).readFully(part);
+            }
+            uploads.get(request.getUploadId()).put(request.getPartNumber(), part);
+            partUploads.incrementAndGet();
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag(Integer.toHexString(request.getPartNumber()));
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonS3Exception("Interrupted");
+        } finally {
+            partsInFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        Map<Integer, byte[]> parts = uploads.remove(request.getUploadId());
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        int partNumber = 1;
+        for (PartETag partETag : request.getPartETags()) {
+            if (partETag.getPartNumber() != partNumber++) {
+                throw new AmazonS3Exception("Parts are out of order");
+            }
+            byte[] part = parts.get(partETag.getPartNumber());
+            object.write(part, 0, part.length);
+        }
+        objects.put(request.getKey(), object.toByteArray());
+        userMetadata.put(request.getKey(), uploadUserMetadata.remove(request.getUploadId()));
+        return new CompleteMultipartUploadResult();
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        uploads.remove(request.getUploadId());
+        uploadUserMetadata.remove(request.getUploadId());
+        aborted.incrementAndGet();
+    }
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest request) {
+        try {
+            if (request.getFile() != null) {
+                objects.put(request.getKey(), Files.readAllBytes(request.getFile().toPath()));
+            } else {
+                objects.put(request.getKey(), readAll(request.getInputStream()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        userMetadata.put(request.getKey(), getUserMetadata(request.getMetadata()));
+        return new PutObjectResult();
+    }
+
+    @Override
+    public boolean doesObjectExist(String bucketName, String objectName) {
+        return objects.containsKey(objectName);
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+        byte[] object = objects.get(key);
+        if (object == null) {
+            throw new AmazonS3Exception("Not Found");
+        }
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(object.length);
+        metadata.setUserMetadata(userMetadata.getOrDefault(key, Map.of()));
+        return metadata;
+    }
+
+    @Override
+    public URL getUrl(String bucketName, String key) {
+        try {
+            return new URL("http://localhost/" + bucketName + "/" + key);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    byte[] getObject(String key) {
+        return objects.get(key);
+    }
+
+    int getMaxPartsInFlight() {
+        return maxPartsInFlight.get();
+    }
+
+    int getPartUploads() {
+        return partUploads.get();
+    }
+
+    int getAborted() {
+        return aborted.get();
+    }
+
+    int getOpenUploads() {
+        return uploads.size();
+    }
+
+    void failPart(int partNumber) {
+        failingPart = partNumber;
+    }
+
+    private static Map<String, String> getUserMetadata(ObjectMetadata metadata) {
+        return metadata == null ? Map.of() : Map.copyOf(metadata.getUserMetadata());
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) > 0) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,219 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientFactory;
+import com.dzytsiuk.excelreportservice.service.impl.ftp.FtpClientPool;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpRequest;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.TransferRatePermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelFtpUploadTest {
+    private static final String USERNAME = "admin";
+    private static final String PASSWORD = "secret";
+    private static final String REMOTE_FILE = "report/movie/allMovies_parallel-test.csv";
+    private static final int REPORT_SIZE = 4_000_000;
+    // a range of a quarter of the report takes half a second
+    private static final int UPLOAD_RATE = 2_000_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicInteger uploads = new AtomicInteger();
+    private final AtomicInteger maxUploads = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService uploadExecutor = Executors.newFixedThreadPool(4);
+    private final byte[] report = new byte[REPORT_SIZE];
+    private int port;
+    private Path homeDirectory;
+    private Path reportFile;
+    private FtpServer ftpServer;
+    private FtpClientPool ftpClientPool;
+    private FtpReportStorage reportStorage;
+
+    @Before
+    public void setUp() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        homeDirectory = temporaryFolder.newFolder("ftp").toPath();
+        Files.createDirectories(homeDirectory.resolve("report/movie"));
+        new Random(42).nextBytes(report);
+        reportFile = temporaryFolder.newFile().toPath();
+        Files.write(reportFile, report);
+        ftpServer = startServer(port);
+        createStorage(GenericObjectPoolConfig.DEFAULT_MAX_TOTAL);
+    }
+
+    @After
+    public void tearDown() {
+        ftpClientPool.close();
+        ftpServer.stop();
+        uploadExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testLargeFileIsUploadedInParallelRanges() throws IOException {
+        ReportRequest reportRequest = createRequest();
+
+        reportStorage.saveAndEnrichWithUrl(reportFile, reportRequest, false);
+
+        assertArrayEquals(report, Files.readAllBytes(homeDirectory.resolve(REMOTE_FILE)));
+        assertTrue("Parallel uploads: " + maxUploads.get(), maxUploads.get() > 1);
+        assertEquals(REPORT_SIZE, getBytesUploaded(), 0.0);
+        assertEquals("ftp://admin@localhost//" + REMOTE_FILE, reportRequest.getFtpUrl());
+    }
+
+    @Test
+    public void testSmallFileIsUploadedOverOneSession() throws IOException {
+        ReflectionTestUtils.setField(reportStorage, "parallelThreshold", REPORT_SIZE + 1L);
+
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), false);
+
+        assertArrayEquals(report, Files.readAllBytes(homeDirectory.resolve(REMOTE_FILE)));
+        assertEquals(1, maxUploads.get());
+    }
+
+    // same size, different content: only the checksum tells them apart
+    @Test
+    public void testFileWithWrongChecksumIsUploadedAgain() throws IOException {
+        byte[] corrupt = Arrays.copyOf(report, REPORT_SIZE);
+        corrupt[REPORT_SIZE / 2] ^= 1;
+        Files.write(homeDirectory.resolve(REMOTE_FILE), corrupt);
+
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), true);
+
+        assertArrayEquals(report, Files.readAllBytes(homeDirectory.resolve(REMOTE_FILE)));
+        assertEquals(REPORT_SIZE, getBytesUploaded(), 0.0);
+    }
+
+    @Test
+    public void testVerifiedFileIsNotUploadedAgain() throws IOException {
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), false);
+        ReportRequest reportRequest = createRequest();
+
+        reportStorage.saveAndEnrichWithUrl(reportFile, reportRequest, true);
+
+        assertEquals(REPORT_SIZE, getBytesUploaded(), 0.0);
+        assertEquals("ftp://admin@localhost//" + REMOTE_FILE, reportRequest.getFtpUrl());
+    }
+
+    // two uploads of four ranges share two sessions, a coordinator holding one would starve the ranges
+    @Test
+    public void testConcurrentUploadsShareSmallerPool() throws Exception {
+        ftpClientPool.close();
+        createStorage(2);
+        ExecutorService requestExecutor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> uploads = new ArrayList<>();
+            for (String id : new String[]{"parallel-test", "parallel-test-2"}) {
+                uploads.add(requestExecutor.submit(
+                        () -> reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(id), false)));
+            }
+            for (Future<?> upload : uploads) {
+                upload.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            requestExecutor.shutdownNow();
+        }
+
+        assertArrayEquals(report, Files.readAllBytes(homeDirectory.resolve(REMOTE_FILE)));
+        assertArrayEquals(report, Files.readAllBytes(homeDirectory.resolve("report/movie/allMovies_parallel-test-2.csv")));
+        assertEquals(2 * REPORT_SIZE, getBytesUploaded(), 0.0);
+    }
+
+    private void createStorage(int maxSessions) {
+        GenericObjectPoolConfig<FTPClient> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setJmxEnabled(false);
+        poolConfig.setMaxTotal(maxSessions);
+        poolConfig.setMaxWaitMillis(10_000);
+        ftpClientPool = new FtpClientPool(new FtpClientFactory("localhost", port, USERNAME, PASSWORD, 60_000), poolConfig);
+        reportStorage = new FtpReportStorage(uploadExecutor, ftpClientPool, new ReportMetrics(meterRegistry));
+        ReflectionTestUtils.setField(reportStorage, "host", "localhost");
+        ReflectionTestUtils.setField(reportStorage, "username", USERNAME);
+        ReflectionTestUtils.setField(reportStorage, "parallelThreshold", (long) REPORT_SIZE);
+        ReflectionTestUtils.setField(reportStorage, "parallelConnections", 4);
+    }
+
+    private double getBytesUploaded() {
+        return meterRegistry.get("report.bytes.uploaded").tag("type", ReportType.ALL_MOVIES.getName()).counter().count();
+    }
+
+    private ReportRequest createRequest() {
+        return createRequest("parallel-test");
+    }
+
+    private ReportRequest createRequest(String id) {
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId(id);
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportFormat(ReportFormat.CSV);
+        return reportRequest;
+    }
+
+    private FtpServer startServer(int port) throws Exception {
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(port);
+        serverFactory.addListener("default", listenerFactory.createListener());
+        serverFactory.setFtplets(Collections.singletonMap("uploads", new DefaultFtplet() {
+            @Override
+            public FtpletResult onUploadStart(FtpSession session, FtpRequest request) {
+                maxUploads.accumulateAndGet(uploads.incrementAndGet(), Math::max);
+                return FtpletResult.DEFAULT;
+            }
+
+            @Override
+            public FtpletResult onUploadEnd(FtpSession session, FtpRequest request) {
+                uploads.decrementAndGet();
+                return FtpletResult.DEFAULT;
+            }
+        }));
+        BaseUser user = new BaseUser();
+        user.setName(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(homeDirectory.toString());
+        user.setAuthorities(Arrays.asList(new WritePermission(), new TransferRatePermission(0, UPLOAD_RATE)));
+        serverFactory.getUserManager().save(user);
+        FtpServer server = serverFactory.createServer();
+        server.start();
+        return server;
+    }
+}
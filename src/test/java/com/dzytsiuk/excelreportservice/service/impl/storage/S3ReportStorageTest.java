@@ -0,0 +1,134 @@
+package com.dzytsiuk.excelreportservice.service.impl.storage;
+
+import com.dzytsiuk.excelreportservice.entity.ReportFormat;
+import com.dzytsiuk.excelreportservice.entity.ReportRequest;
+import com.dzytsiuk.excelreportservice.entity.ReportType;
+import com.dzytsiuk.excelreportservice.service.impl.metrics.ReportMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class S3ReportStorageTest {
+    private static final int PART_SIZE = S3ReportStorage.MIN_PART_SIZE;
+    private static final String KEY = "report/movie/allMovies_s3-test.csv";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ExecutorService uploadExecutor = Executors.newFixedThreadPool(8);
+    private final InMemoryAmazonS3 amazonS3 = new InMemoryAmazonS3(100);
+    private final S3ReportStorage reportStorage = new S3ReportStorage(amazonS3, uploadExecutor,
+            new ReportMetrics(new SimpleMeterRegistry()), "reports", PART_SIZE, 4);
+
+    @After
+    public void tearDown() {
+        uploadExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamedReportIsUploadedInParallelParts() {
+        byte[] report = createReport(4 * PART_SIZE + PART_SIZE / 2);
+        ReportRequest reportRequest = createRequest();
+
+        reportStorage.saveAndEnrichWithUrl(outputStream -> write(outputStream, report), reportRequest);
+
+        assertArrayEquals(report, amazonS3.getObject(KEY));
+        assertEquals(5, amazonS3.getPartUploads());
+        assertTrue("Parts in flight: " + amazonS3.getMaxPartsInFlight(), amazonS3.getMaxPartsInFlight() > 1);
+        assertEquals("http://localhost/reports/" + KEY, reportRequest.getFtpUrl());
+    }
+
+    @Test
+    public void testSmallReportIsSinglePut() {
+        byte[] report = createReport(PART_SIZE);
+
+        reportStorage.saveAndEnrichWithUrl(outputStream -> write(outputStream, report), createRequest());
+
+        assertArrayEquals(report, amazonS3.getObject(KEY));
+        assertEquals(0, amazonS3.getPartUploads());
+    }
+
+    @Test
+    public void testFailedPartAbortsUpload() {
+        amazonS3.failPart(2);
+        try {
+            reportStorage.saveAndEnrichWithUrl(outputStream -> write(outputStream, createReport(3 * PART_SIZE)),
+                    createRequest());
+            fail("Report stored although a part failed");
+        } catch (RuntimeException e) {
+            assertEquals(1, amazonS3.getAborted());
+        }
+        assertNull(amazonS3.getObject(KEY));
+        assertEquals(0, amazonS3.getOpenUploads());
+    }
+
+    @Test
+    public void testFileIsUploadedOnce() throws IOException {
+        byte[] report = createReport(2 * PART_SIZE + 1);
+        Path reportFile = temporaryFolder.newFile().toPath();
+        Files.write(reportFile, report);
+
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), false);
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), true);
+
+        assertArrayEquals(report, amazonS3.getObject(KEY));
+        assertEquals(3, amazonS3.getPartUploads());
+    }
+
+    // a report regenerated between two attempts can have the size of the one stored before
+    @Test
+    public void testChangedFileOfSameSizeIsUploadedAgain() throws IOException {
+        Path reportFile = temporaryFolder.newFile().toPath();
+        Files.write(reportFile, createReport(PART_SIZE));
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), false);
+        byte[] report = createReport(PART_SIZE);
+        report[0]++;
+        Files.write(reportFile, report);
+
+        reportStorage.saveAndEnrichWithUrl(reportFile, createRequest(), true);
+
+        assertArrayEquals(report, amazonS3.getObject(KEY));
+    }
+
+    private ReportRequest createRequest() {
+        ReportRequest reportRequest = new ReportRequest();
+        reportRequest.setId("s3-test");
+        reportRequest.setReportType(ReportType.ALL_MOVIES);
+        reportRequest.setReportFormat(ReportFormat.CSV);
+        return reportRequest;
+    }
+
+    private static byte[] createReport(int size) {
+        byte[] report = new byte[size];
+        new Random(size).nextBytes(report);
+        return report;
+    }
+
+    // in slices of odd size, the way a report writer flushes
+    private static void write(OutputStream outputStream, byte[] report) {
+        try {
+            for (int offset = 0; offset < report.length; offset += 70_001) {
+                outputStream.write(report, offset, Math.min(70_001, report.length - offset));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class CsvReportWriterTest {
+    private static final ReportDatePattern DATE_PATTERN = ReportDatePattern.of("yyyy-MM-dd HH:mm:ss");
+    private static final List<ReportColumn> COLUMNS = Arrays.asList(
+            new ReportColumn("id", "Id", ColumnType.INT),
+            new ReportColumn("title", "Title", ColumnType.STRING),
+            new ReportColumn("price", "Price", ColumnType.DOUBLE),
+            new ReportColumn("addDate", "Add Date", ColumnType.DATE_TIME));
+    private static final long ADD_DATE = LocalDateTime.of(2019, 3, 8, 17, 45, 12).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    @Test
+    public void testRowsAreWrittenAsCsv() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ReportWriter reportWriter = new CsvReportWriter(outputStream, DATE_PATTERN)) {
+            writeRows(reportWriter);
+        }
+
+        assertEquals(expectedCsv(), new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGzipCsvLeavesOutputStreamOpen() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ReportWriter reportWriter = new GzipCsvReportWriter(outputStream, DATE_PATTERN)) {
+            writeRows(reportWriter);
+        }
+        outputStream.write('x');
+
+        byte[] bytes = outputStream.toByteArray();
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 1))) {
+            ByteArrayOutputStream csv = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                csv.write(buffer, 0, read);
+            }
+            assertEquals(expectedCsv(), new String(csv.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testNumbersAreWrittenLikeToString() throws IOException {
+        int[] ints = {0, 7, -42, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        double[] doubles = {100.5, 8.2, -3.25, 0.5, 0.125, 1234567.891, 9999999.999, 1e7, 1e-4, 0.1 + 0.2,
+                -0.0, Double.NaN, Double.POSITIVE_INFINITY};
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        StringBuilder expected = new StringBuilder();
+        try (ReportWriter reportWriter = new CsvReportWriter(outputStream, DATE_PATTERN)) {
+            reportWriter.startRow();
+            for (int value : ints) {
+                reportWriter.writeInt(value);
+                expected.append(value).append(',');
+            }
+            for (double value : doubles) {
+                reportWriter.writeDouble(value);
+                expected.append(value).append(',');
+            }
+            reportWriter.endRow();
+            reportWriter.finish();
+        }
+        expected.setLength(expected.length() - 1);
+
+        assertEquals(expected + "\r\n", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private void writeRows(ReportWriter reportWriter) throws IOException {
+        reportWriter.startReport("movies", COLUMNS);
+        reportWriter.startRow();
+        reportWriter.writeInt(1);
+        reportWriter.writeString("Plain title");
+        reportWriter.writeDouble(100.5);
+        reportWriter.writeDateTime(ADD_DATE);
+        reportWriter.endRow();
+        reportWriter.startRow();
+        reportWriter.writeInt(2);
+        reportWriter.writeString("Say \"hi\", then\nleave");
+        reportWriter.writeBlank();
+        reportWriter.writeBlank();
+        reportWriter.endRow();
+        reportWriter.startRow();
+        reportWriter.writeInt(-3);
+        reportWriter.writeString(null);
+        reportWriter.writeDouble(0);
+        reportWriter.writeString("\u041c\u0430\u0442\u0440\u0438\u0446\u044f");
+        reportWriter.endRow();
+        reportWriter.finish();
+    }
+
+    private String expectedCsv() {
+        return "Id,Title,Price,Add Date\r\n"
+                + "1,Plain title,100.5,2019-03-08 17:45:12\r\n"
+                + "2,\"Say \"\"hi\"\", then\nleave\",,\r\n"
+                + "-3,,0.0,\u041c\u0430\u0442\u0440\u0438\u0446\u044f\r\n";
+    }
+}
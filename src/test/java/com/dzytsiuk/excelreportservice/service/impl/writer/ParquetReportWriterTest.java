@@ -0,0 +1,198 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import org.apache.parquet.column.Encoding;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.DelegatingSeekableInputStream;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.io.SeekableInputStream;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParquetReportWriterTest {
+    private static final int ROWS = 5000;
+    private static final String[] GENRES = {"drama", "comedy", "drama, comedy", "horror"};
+    private static final List<ReportColumn> COLUMNS = Arrays.asList(
+            new ReportColumn("id", "Id", ColumnType.INT),
+            new ReportColumn("title", "Title", ColumnType.STRING),
+            new ReportColumn("genres", "Genre", ColumnType.STRING),
+            new ReportColumn("price", "Price", ColumnType.DOUBLE),
+            new ReportColumn("addDate", "Add Date", ColumnType.DATE_TIME));
+    private static final long START = LocalDateTime.of(2019, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    @Test
+    public void testSchemaAndValuesAreReadBack() throws IOException {
+        byte[] parquet = writeReport(CompressionCodecName.UNCOMPRESSED);
+
+        try (ParquetFileReader reader = ParquetFileReader.open(inputFile(parquet))) {
+            MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+            assertEquals(PrimitiveTypeName.INT32, schema.getType("id").asPrimitiveType().getPrimitiveTypeName());
+            assertEquals(OriginalType.UTF8, schema.getType("title").getOriginalType());
+            assertEquals(PrimitiveTypeName.DOUBLE, schema.getType("price").asPrimitiveType().getPrimitiveTypeName());
+            assertEquals(PrimitiveTypeName.INT64, schema.getType("addDate").asPrimitiveType().getPrimitiveTypeName());
+            assertEquals(OriginalType.TIMESTAMP_MILLIS, schema.getType("addDate").getOriginalType());
+
+            List<Group> rows = readRows(reader, schema);
+            assertEquals(ROWS, rows.size());
+            for (int id = 0; id < ROWS; id++) {
+                Group row = rows.get(id);
+                assertEquals(id, row.getInteger("id", 0));
+                assertEquals("Movie " + id, row.getString("title", 0));
+                assertEquals(GENRES[id % GENRES.length], row.getString("genres", 0));
+                if (id % 7 == 0) {
+                    assertEquals(0, row.getFieldRepetitionCount("price"));
+                } else {
+                    assertEquals(id + 0.5, row.getDouble("price", 0), 0.0);
+                }
+                if (id % 11 == 0) {
+                    assertEquals(0, row.getFieldRepetitionCount("addDate"));
+                } else {
+                    assertEquals(START + id * 60_000L, row.getLong("addDate", 0));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRowGroupsAreFlushedWhileWriting() throws IOException {
+        byte[] parquet = writeReport(CompressionCodecName.SNAPPY);
+
+        try (ParquetFileReader reader = ParquetFileReader.open(inputFile(parquet))) {
+            List<BlockMetaData> rowGroups = reader.getRowGroups();
+            assertTrue("Row groups: " + rowGroups.size(), rowGroups.size() > 1);
+            long rows = 0;
+            for (BlockMetaData rowGroup : rowGroups) {
+                rows += rowGroup.getRowCount();
+                ColumnChunkMetaData genres = rowGroup.getColumns().get(2);
+                assertEquals("[genres]", genres.getPath().toString());
+                assertTrue(genres.getEncodings().toString(), genres.getEncodings().contains(Encoding.PLAIN_DICTIONARY));
+            }
+            assertEquals(ROWS, rows);
+        }
+    }
+
+    @Test
+    public void testUnfinishedReportGetsNoFooter() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int written;
+        try (ReportWriter reportWriter = new ParquetReportWriter(outputStream, CompressionCodecName.SNAPPY, 16 * 1024,
+                4 * 1024)) {
+            reportWriter.startReport("movies", COLUMNS);
+            for (int id = 0; id < ROWS / 2; id++) {
+                reportWriter.startRow();
+                reportWriter.writeInt(id);
+                reportWriter.writeString("Movie " + id);
+                reportWriter.writeString(GENRES[id % GENRES.length]);
+                reportWriter.writeDouble(id + 0.5);
+                reportWriter.writeDateTime(START + id * 60_000L);
+                reportWriter.endRow();
+            }
+            written = outputStream.size();
+        }
+
+        assertEquals(written, outputStream.size());
+        try {
+            ParquetFileReader.open(inputFile(outputStream.toByteArray())).close();
+            fail("Unfinished report expected to be unreadable");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not a Parquet file"));
+        }
+    }
+
+    private byte[] writeReport(CompressionCodecName compressionCodec) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ReportWriter reportWriter = new ParquetReportWriter(outputStream, compressionCodec, 16 * 1024, 4 * 1024)) {
+            reportWriter.startReport("movies", COLUMNS);
+            for (int id = 0; id < ROWS; id++) {
+                reportWriter.startRow();
+                reportWriter.writeInt(id);
+                reportWriter.writeString("Movie " + id);
+                reportWriter.writeString(GENRES[id % GENRES.length]);
+                reportWriter.writeDouble(id % 7 == 0 ? Double.NaN : id + 0.5);
+                if (id % 11 == 0) {
+                    reportWriter.writeBlank();
+                } else {
+                    reportWriter.writeDateTime(START + id * 60_000L);
+                }
+                reportWriter.endRow();
+            }
+            reportWriter.finish();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private List<Group> readRows(ParquetFileReader reader, MessageType schema) throws IOException {
+        List<Group> rows = new ArrayList<>();
+        MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(schema);
+        PageReadStore pages;
+        while ((pages = reader.readNextRowGroup()) != null) {
+            RecordReader<Group> recordReader = columnIO.getRecordReader(pages, new GroupRecordConverter(schema));
+            for (long i = 0; i < pages.getRowCount(); i++) {
+                rows.add(recordReader.read());
+            }
+        }
+        return rows;
+    }
+
+    private static InputFile inputFile(byte[] bytes) {
+        return new InputFile() {
+            @Override
+            public long getLength() {
+                return bytes.length;
+            }
+
+            @Override
+            public SeekableInputStream newStream() {
+                SeekableByteArrayInputStream inputStream = new SeekableByteArrayInputStream(bytes);
+                return new DelegatingSeekableInputStream(inputStream) {
+                    @Override
+                    public long getPos() {
+                        return inputStream.getPos();
+                    }
+
+                    @Override
+                    public void seek(long newPos) {
+                        inputStream.seek(newPos);
+                    }
+                };
+            }
+        };
+    }
+
+    private static class SeekableByteArrayInputStream extends ByteArrayInputStream {
+        SeekableByteArrayInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        long getPos() {
+            return pos;
+        }
+
+        void seek(long newPos) {
+            pos = (int) newPos;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReportDatePatternTest {
+    private static final String[] PATTERNS = {"yyyy-MM-dd HH:mm:ss", "dd.MM.yy H:m:s", "d/M/yyyy 'at' HH:mm:ss.SSS",
+            "yyyyMMdd'T'HHmmssSSSSSS", "uuuu-MM-dd''HH"};
+    private static final long FROM = LocalDateTime.of(1900, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    private static final long TO = LocalDateTime.of(2100, 12, 31, 23, 59).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    @Test
+    public void testCompiledPatternFormatsLikeDateTimeFormatter() {
+        Random random = new Random(42);
+        for (String pattern : PATTERNS) {
+            ReportDatePattern datePattern = ReportDatePattern.of(pattern);
+            assertTrue(pattern, datePattern.isCompiled());
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+            char[] buffer = datePattern.createBuffer();
+            for (int i = 0; i < 10_000; i++) {
+                long epochMillis = FROM + (long) (random.nextDouble() * (TO - FROM));
+                String expected = LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                        (int) Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC).format(formatter);
+                int length = datePattern.format(epochMillis, buffer);
+                assertEquals(pattern, expected, new String(buffer, 0, length));
+            }
+        }
+    }
+
+    @Test
+    public void testLeapDaysAndYearEnds() {
+        ReportDatePattern datePattern = ReportDatePattern.of("yyyy-MM-dd HH:mm:ss");
+        for (LocalDateTime dateTime : new LocalDateTime[]{LocalDateTime.of(2000, 2, 29, 12, 0),
+                LocalDateTime.of(1900, 3, 1, 0, 0), LocalDateTime.of(1969, 12, 31, 23, 59, 59),
+                LocalDateTime.of(1970, 1, 1, 0, 0), LocalDateTime.of(2016, 12, 31, 23, 59, 59)}) {
+            assertEquals(dateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")),
+                    datePattern.format(dateTime.toInstant(ZoneOffset.UTC).toEpochMilli()));
+        }
+    }
+
+    @Test
+    public void testTextFieldsFallBackToDateTimeFormatter() throws IOException {
+        ReportDatePattern datePattern = ReportDatePattern.of("dd MMM yyyy, EEE");
+        assertFalse(datePattern.isCompiled());
+        long epochMillis = LocalDateTime.of(2019, 3, 8, 17, 45).toInstant(ZoneOffset.UTC).toEpochMilli();
+        StringWriter writer = new StringWriter();
+        datePattern.formatTo(epochMillis, datePattern.createBuffer(), writer);
+
+        assertEquals(LocalDateTime.of(2019, 3, 8, 17, 45).format(DateTimeFormatter.ofPattern("dd MMM yyyy, EEE")),
+                writer.toString());
+        assertEquals("yyyy-mm-dd hh:mm:ss", datePattern.toExcelFormat());
+    }
+
+    @Test
+    public void testExcelFormat() {
+        assertEquals("yyyy-mm-dd hh:mm:ss", ReportDatePattern.of("yyyy-MM-dd HH:mm:ss").toExcelFormat());
+        assertEquals("d.m.yy h:mm:ss.000", ReportDatePattern.of("d.M.yy H:mm:ss.SSS").toExcelFormat());
+        assertEquals("yyyy-mm-dd\\Thh:mm", ReportDatePattern.of("yyyy-MM-dd'T'HH:mm").toExcelFormat());
+    }
+}
@@ -0,0 +1,176 @@
+package com.dzytsiuk.excelreportservice.service.impl.writer;
+
+import com.dzytsiuk.excelreportservice.service.impl.ReportWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class XlsxReportWriterTest {
+    private static final ReportDatePattern DATE_PATTERN = ReportDatePattern.of("yyyy-MM-dd HH:mm:ss");
+    private static final List<ReportColumn> COLUMNS = Arrays.asList(
+            new ReportColumn("id", "Id", ColumnType.INT),
+            new ReportColumn("title", "Title", ColumnType.STRING));
+    private static final int ROWS_PER_SHEET = 100;
+    private static final XlsxReportTemplates TEMPLATES = new XlsxReportTemplates(DATE_PATTERN);
+
+    @Test
+    public void testRowsBelowLimitStayOnOneSheet() throws IOException {
+        assertSheets(writeReport(ROWS_PER_SHEET - 1, false), ROWS_PER_SHEET - 1);
+    }
+
+    @Test
+    public void testRowsAtLimitStayOnOneSheet() throws IOException {
+        assertSheets(writeReport(ROWS_PER_SHEET, false), ROWS_PER_SHEET);
+    }
+
+    @Test
+    public void testRowAboveLimitStartsNewSheet() throws IOException {
+        assertSheets(writeReport(ROWS_PER_SHEET + 1, false), ROWS_PER_SHEET, 1);
+    }
+
+    @Test
+    public void testEmptyReportHasHeaderOnly() throws IOException {
+        assertSheets(writeReport(0, false), 0);
+    }
+
+    @Test
+    public void testStreamingReportIsPartitioned() throws IOException {
+        assertSheets(writeReport(3 * ROWS_PER_SHEET, true), ROWS_PER_SHEET, ROWS_PER_SHEET, ROWS_PER_SHEET);
+        assertSheets(writeReport(3 * ROWS_PER_SHEET + 1, true), ROWS_PER_SHEET, ROWS_PER_SHEET, ROWS_PER_SHEET, 1);
+    }
+
+    // sheets below the streaming threshold still add up to it
+    @Test
+    public void testStreamingThresholdCountsAllSheets() throws IOException {
+        ReportWorkbook workbook = new ReportWorkbook(false, 2 * ROWS_PER_SHEET, 10, true);
+        try (XlsxReportWriter reportWriter = new XlsxReportWriter(workbook, new ByteArrayOutputStream(),
+                DATE_PATTERN, TEMPLATES, ROWS_PER_SHEET)) {
+            reportWriter.startReport("movies", COLUMNS);
+            writeRows(reportWriter, ROWS_PER_SHEET);
+            assertFalse(reportWriter.isStreaming());
+            writeRows(reportWriter, ROWS_PER_SHEET);
+            assertTrue(reportWriter.isStreaming());
+        }
+    }
+
+    @Test
+    public void testRowsPerSheetIsCappedAtExcelLimit() throws IOException {
+        ReportWorkbook workbook = new ReportWorkbook(true, 0, 10, true);
+        try (XlsxReportWriter reportWriter = new XlsxReportWriter(workbook, new ByteArrayOutputStream(),
+                DATE_PATTERN, TEMPLATES, Integer.MAX_VALUE)) {
+            reportWriter.startReport("movies", COLUMNS);
+            writeRows(reportWriter, XlsxReportWriter.MAX_ROWS_PER_SHEET + 1);
+            assertEquals(2, reportWriter.getSheetCount());
+        }
+    }
+
+    @Test
+    public void testTemplateIsStampedOnEverySheet() throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(writeReport(ROWS_PER_SHEET + 1, true)))) {
+            for (Sheet sheet : workbook) {
+                Row header = sheet.getRow(0);
+                assertEquals(16, workbook.getFontAt(header.getCell(0).getCellStyle().getFontIndexAsInt())
+                        .getFontHeightInPoints());
+                assertEquals(12 * 256, sheet.getColumnWidth(0));
+                assertEquals(32 * 256, sheet.getColumnWidth(1));
+                assertEquals(12, workbook.getFontAt(sheet.getColumnStyle(1).getFontIndexAsInt()).getFontHeightInPoints());
+                assertFalse(sheet.getRow(1).isFormatted());
+            }
+        }
+    }
+
+    @Test
+    public void testTemplateIsBuiltOncePerColumnLayout() {
+        XlsxReportTemplates templates = new XlsxReportTemplates(DATE_PATTERN);
+        assertSame(templates.get(COLUMNS), templates.get(COLUMNS));
+    }
+
+    @Test
+    public void testDatesAreExcelDates() throws IOException {
+        LocalDateTime addDate = LocalDateTime.of(2019, 3, 8, 17, 45, 12);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (XlsxReportWriter reportWriter = new XlsxReportWriter(new ReportWorkbook(true, 0, 10, true), outputStream,
+                DATE_PATTERN, TEMPLATES, ROWS_PER_SHEET)) {
+            reportWriter.startReport("movies", Collections.singletonList(
+                    new ReportColumn("addDate", "Add Date", ColumnType.DATE_TIME)));
+            reportWriter.startRow();
+            reportWriter.writeDateTime(addDate.toInstant(ZoneOffset.UTC).toEpochMilli());
+            reportWriter.endRow();
+            reportWriter.startRow();
+            reportWriter.writeDateTime(LocalDateTime.of(1899, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+            reportWriter.endRow();
+            reportWriter.finish();
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            Cell date = sheet.getRow(1).getCell(0);
+            double expected = ChronoUnit.DAYS.between(LocalDate.of(1899, 12, 30), addDate.toLocalDate())
+                    + addDate.toLocalTime().toSecondOfDay() / 86400.0;
+            assertEquals(expected, date.getNumericCellValue(), 1e-9);
+            assertEquals("yyyy-mm-dd hh:mm:ss", date.getCellStyle().getDataFormatString());
+            assertTrue(DateUtil.isCellDateFormatted(date));
+            assertEquals("1899-01-01 00:00:00", sheet.getRow(2).getCell(0).getStringCellValue());
+        }
+    }
+
+    private byte[] writeReport(int rows, boolean streaming) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ReportWorkbook workbook = new ReportWorkbook(streaming, Integer.MAX_VALUE, 10, true);
+        try (XlsxReportWriter reportWriter = new XlsxReportWriter(workbook, outputStream, DATE_PATTERN,
+                TEMPLATES, ROWS_PER_SHEET)) {
+            reportWriter.startReport("movies", COLUMNS);
+            writeRows(reportWriter, rows);
+            reportWriter.finish();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void writeRows(ReportWriter reportWriter, int rows) throws IOException {
+        for (int id = 0; id < rows; id++) {
+            reportWriter.startRow();
+            reportWriter.writeInt(id);
+            reportWriter.writeString("Movie " + id);
+            reportWriter.endRow();
+        }
+    }
+
+    private void assertSheets(byte[] report, int... rowsPerSheet) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(report))) {
+            assertEquals(rowsPerSheet.length, workbook.getNumberOfSheets());
+            int id = 0;
+            for (int i = 0; i < rowsPerSheet.length; i++) {
+                Sheet sheet = workbook.getSheetAt(i);
+                assertEquals(i == 0 ? "movies" : "movies_" + (i + 1), sheet.getSheetName());
+                assertEquals(rowsPerSheet[i], sheet.getLastRowNum());
+                Row header = sheet.getRow(0);
+                assertEquals("Id", header.getCell(0).getStringCellValue());
+                assertEquals("Title", header.getCell(1).getStringCellValue());
+                for (int rowNumber = 1; rowNumber <= rowsPerSheet[i]; rowNumber++, id++) {
+                    Row row = sheet.getRow(rowNumber);
+                    assertEquals(id, (int) row.getCell(0).getNumericCellValue());
+                    assertEquals("Movie " + id, row.getCell(1).getStringCellValue());
+                }
+            }
+        }
+    }
+}